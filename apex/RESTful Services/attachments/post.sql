@@ -0,0 +1,75 @@
+-- POST /tickets_api/attachments?email_id=...&part_id=...&filename=...&mime_type=...&total_size=...&offset=...
+-- Body: raw bytes (application/octet-stream) of one chunk, starting at byte "offset" of the attachment.
+-- Chunks are appended to attachments.content. A chunk that does not start where the stored content
+-- ends (e.g. a retry of a chunk that was already stored) is ignored, and the response tells the
+-- client where to continue:
+-- {"received": <bytes stored>, "complete": true|false}
+DECLARE
+l_provided_key VARCHAR2(200) := owa_util.get_cgi_env('x-api-key');
+    l_expected_key VARCHAR2(200) := '1234-ABCD-5678-EFGH';
+    l_chunk        BLOB := :body;
+    l_offset       NUMBER;
+    l_total        NUMBER;
+    l_content      BLOB;
+    l_status       attachments.status%TYPE;
+    l_received     NUMBER;
+BEGIN
+    owa_util.mime_header('application/json; charset=utf-8', FALSE);
+    owa_util.http_header_close;
+    IF l_provided_key IS NULL OR l_provided_key <> l_expected_key THEN
+        owa_util.status_line(401, 'Unauthorized');
+        HTP.P('{"error":"Unauthorized"}');
+        RETURN;
+END IF;
+    IF :email_id IS NULL OR :part_id IS NULL OR :filename IS NULL OR :total_size IS NULL OR :offset IS NULL THEN
+        owa_util.status_line(400, 'Bad Request');
+        HTP.P('{"error":"email_id, part_id, filename, total_size and offset are required"}');
+        RETURN;
+END IF;
+    l_offset := TO_NUMBER(:offset);
+    l_total := TO_NUMBER(:total_size);
+
+    IF l_offset = 0 THEN
+        -- first chunk: start the row, or restart an upload that never completed
+        MERGE INTO attachments a
+        USING (SELECT :email_id AS email_id, :part_id AS part_id FROM dual) s
+        ON (a.email_id = s.email_id AND a.part_id = s.part_id)
+        WHEN MATCHED THEN
+            UPDATE SET a.content = EMPTY_BLOB(), a.total_size = l_total,
+                       a.filename = :filename, a.mime_type = :mime_type
+            WHERE a.status = 'UPLOADING'
+        WHEN NOT MATCHED THEN
+            INSERT (email_id, part_id, filename, mime_type, total_size, content)
+            VALUES (:email_id, :part_id, :filename, :mime_type, l_total, EMPTY_BLOB());
+END IF;
+
+SELECT content, status INTO l_content, l_status
+FROM attachments
+WHERE email_id = :email_id AND part_id = :part_id
+    FOR UPDATE;
+
+l_received := DBMS_LOB.getlength(l_content);
+    IF l_status = 'UPLOADING' AND l_offset = l_received AND l_chunk IS NOT NULL AND DBMS_LOB.getlength(l_chunk) > 0 THEN
+        DBMS_LOB.append(l_content, l_chunk);
+        l_received := DBMS_LOB.getlength(l_content);
+        IF l_received >= l_total THEN
+UPDATE attachments SET status = 'COMPLETE'
+WHERE email_id = :email_id AND part_id = :part_id;
+l_status := 'COMPLETE';
+END IF;
+END IF;
+COMMIT;
+
+    HTP.P('{"received":' || l_received || ',"complete":' || CASE WHEN l_status = 'COMPLETE' THEN 'true' ELSE 'false' END || '}');
+EXCEPTION
+    WHEN NO_DATA_FOUND THEN
+        -- a later chunk for an upload that was never started: the client restarts at 0
+        HTP.P('{"received":0,"complete":false}');
+    WHEN VALUE_ERROR OR INVALID_NUMBER THEN
+        owa_util.status_line(400, 'Bad Request');
+        HTP.P('{"error":"total_size and offset must be numbers"}');
+    WHEN OTHERS THEN
+        ROLLBACK;
+        owa_util.status_line(500, 'Internal Server Error');
+        HTP.P('{"error":"Internal Server Error","details":"' || REPLACE(SQLERRM, '"', '') || '"}');
+END;
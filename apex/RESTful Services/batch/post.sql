@@ -0,0 +1,226 @@
+-- POST /tickets_api/batch
+-- Body: {"tickets": [<same fields as POST /tickets>], "messages": [<same fields as POST /messages>]}
+-- Inserts the whole batch with bulk binds and answers with one result per item:
+-- {"tickets": [{"email_id", "status": created|duplicate|error, "ticket_id", "error"}], "messages": [...]}
+DECLARE
+l_provided_key VARCHAR2(200) := owa_util.get_cgi_env('x-api-key');
+    l_expected_key VARCHAR2(200) := '1234-ABCD-5678-EFGH';
+    l_json         CLOB;
+
+    e_bulk_errors EXCEPTION;
+    PRAGMA EXCEPTION_INIT(e_bulk_errors, -24381);
+
+    TYPE t_ticket IS RECORD (
+        email_id         tickets.email_id%TYPE,
+        email_thread_id  tickets.email_thread_id%TYPE,
+        email_message_id tickets.email_message_id%TYPE,
+        subject          tickets.subject%TYPE,
+        body             CLOB,
+        gmail_date       VARCHAR2(50),
+        user_id          tickets.user_id%TYPE,
+        duplicate        NUMBER
+    );
+    TYPE t_reply IS RECORD (
+        email_id         processed_replies.email_id%TYPE,
+        ticket_id        tickets.ticket_id%TYPE,
+        email_message_id messages.email_message_id%TYPE,
+        user_id          messages.user_id%TYPE,
+        body             CLOB,
+        duplicate        NUMBER
+    );
+    TYPE t_tickets IS TABLE OF t_ticket INDEX BY PLS_INTEGER;
+    TYPE t_replies IS TABLE OF t_reply INDEX BY PLS_INTEGER;
+    TYPE t_positions IS TABLE OF PLS_INTEGER INDEX BY PLS_INTEGER;
+    TYPE t_texts IS TABLE OF VARCHAR2(4000) INDEX BY PLS_INTEGER;
+
+    l_tickets        t_tickets;
+    l_ticket_rows    t_tickets;   -- dense copy of the tickets that get inserted
+    l_ticket_pos     t_positions; -- l_ticket_rows index -> l_tickets index
+    l_ticket_errors  t_texts;
+    l_replies        t_replies;
+    l_reply_rows     t_replies;
+    l_reply_pos      t_positions;
+    l_reply_errors   t_texts;
+    l_ticket_id      tickets.ticket_id%TYPE;
+BEGIN
+    l_json := TO_CLOB(:body);
+    APEX_DEBUG.INFO('Raw body length: %d', NVL(DBMS_LOB.getlength(l_json), 0));
+    owa_util.mime_header('application/json; charset=utf-8', FALSE);
+    owa_util.http_header_close;
+    IF l_provided_key IS NULL OR l_provided_key <> l_expected_key THEN
+        owa_util.status_line(401, 'Unauthorized');
+        HTP.P('{"error":"Unauthorized"}');
+        RETURN;
+END IF;
+    IF l_json IS NULL OR DBMS_LOB.getlength(l_json) = 0 OR l_json IS NOT JSON THEN
+        owa_util.status_line(400, 'Bad Request');
+        HTP.P('{"error":"A JSON request body is required"}');
+        RETURN;
+END IF;
+
+    -- Upsert every ticket sender in one statement
+MERGE INTO users u
+    USING (
+        SELECT jt.sender_email AS email, NVL(MAX(jt.sender_name), jt.sender_email) AS full_name
+        FROM JSON_TABLE(l_json, '$.tickets[*]' COLUMNS (
+                 sender_email VARCHAR2(255) PATH '$.sender_email',
+                 sender_name  VARCHAR2(100) TRUNCATE PATH '$.sender_name')) jt
+        WHERE REGEXP_LIKE(jt.sender_email, '^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\.[A-Za-z]{2,}$')
+        GROUP BY jt.sender_email
+    ) d
+    ON (u.email = d.email AND u.role = 'USER')
+    WHEN NOT MATCHED THEN
+        INSERT (full_name, email, role, creation_date, update_date)
+            VALUES (d.full_name, d.email, 'USER', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+    WHEN MATCHED THEN
+        UPDATE SET update_date = CURRENT_TIMESTAMP;
+
+-- Tickets: resolve users and already processed emails for the whole array at once
+SELECT jt.email_id, jt.email_thread_id, jt.email_message_id, jt.subject, jt.body, jt.gmail_date,
+       u.user_id,
+       CASE WHEN EXISTS (SELECT 1 FROM processed_emails p WHERE p.email_id = jt.email_id) THEN 1 ELSE 0 END
+    BULK COLLECT INTO l_tickets
+FROM JSON_TABLE(l_json, '$.tickets[*]' COLUMNS (
+         idx              FOR ORDINALITY,
+         email_id         VARCHAR2(255)  PATH '$.email_id',
+         email_thread_id  VARCHAR2(255)  PATH '$.email_thread_id',
+         email_message_id VARCHAR2(255)  PATH '$.email_message_id',
+         sender_email     VARCHAR2(255)  PATH '$.sender_email',
+         subject          VARCHAR2(1000) TRUNCATE PATH '$.subject',
+         body             CLOB           PATH '$.body',
+         gmail_date       VARCHAR2(50)   PATH '$.gmail_date')) jt
+LEFT JOIN users u ON u.email = jt.sender_email AND u.role = 'USER'
+ORDER BY jt.idx;
+
+FOR i IN 1 .. l_tickets.COUNT LOOP
+        IF l_tickets(i).duplicate = 0 THEN
+            l_ticket_rows(l_ticket_rows.COUNT + 1) := l_tickets(i);
+            l_ticket_pos(l_ticket_pos.COUNT + 1) := i;
+END IF;
+END LOOP;
+
+BEGIN
+        FORALL k IN 1 .. l_ticket_rows.COUNT SAVE EXCEPTIONS
+            INSERT INTO tickets (
+                email_id, email_thread_id, email_message_id, user_id, subject, body, status, creation_date, update_date
+            ) VALUES (
+                l_ticket_rows(k).email_id, l_ticket_rows(k).email_thread_id, l_ticket_rows(k).email_message_id,
+                l_ticket_rows(k).user_id, l_ticket_rows(k).subject, l_ticket_rows(k).body, 'NEW',
+                TO_TIMESTAMP_TZ(l_ticket_rows(k).gmail_date, 'YYYY-MM-DD"T"HH24:MI:SS"Z"'),
+                TO_TIMESTAMP_TZ(l_ticket_rows(k).gmail_date, 'YYYY-MM-DD"T"HH24:MI:SS"Z"')
+            );
+EXCEPTION
+        WHEN e_bulk_errors THEN
+            FOR j IN 1 .. SQL%BULK_EXCEPTIONS.COUNT LOOP
+                l_ticket_errors(l_ticket_pos(SQL%BULK_EXCEPTIONS(j).ERROR_INDEX)) :=
+                    SQLERRM(-SQL%BULK_EXCEPTIONS(j).ERROR_CODE);
+END LOOP;
+END;
+
+INSERT INTO processed_emails (email_id, creation_date, update_date)
+SELECT t.email_id, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+FROM tickets t
+WHERE t.email_id IN (
+          SELECT jt.email_id
+          FROM JSON_TABLE(l_json, '$.tickets[*]' COLUMNS (email_id VARCHAR2(255) PATH '$.email_id')) jt)
+  AND NOT EXISTS (SELECT 1 FROM processed_emails p WHERE p.email_id = t.email_id);
+
+-- Replies: same resolution rules as POST /messages (USER, then ADMIN, then the ticket owner)
+SELECT jt.email_id, t.ticket_id, jt.email_message_id,
+       COALESCE(uu.user_id, ua.user_id, t.user_id), jt.body,
+       CASE WHEN EXISTS (SELECT 1 FROM processed_replies p WHERE p.email_id = jt.email_id) THEN 1 ELSE 0 END
+    BULK COLLECT INTO l_replies
+FROM JSON_TABLE(l_json, '$.messages[*]' COLUMNS (
+         idx              FOR ORDINALITY,
+         email_id         VARCHAR2(255) PATH '$.email_id',
+         ticket_id        NUMBER        PATH '$.ticket_id' NULL ON ERROR,
+         email_message_id VARCHAR2(255) PATH '$.email_message_id',
+         sender_email     VARCHAR2(255) PATH '$.sender_email',
+         body             CLOB          PATH '$.body')) jt
+LEFT JOIN tickets t ON t.ticket_id = jt.ticket_id
+LEFT JOIN users uu ON uu.email = jt.sender_email AND uu.role = 'USER'
+LEFT JOIN users ua ON ua.email = jt.sender_email AND ua.role = 'ADMIN'
+ORDER BY jt.idx;
+
+FOR i IN 1 .. l_replies.COUNT LOOP
+        IF l_replies(i).duplicate = 1 THEN
+            NULL;
+        ELSIF l_replies(i).ticket_id IS NULL THEN
+            l_reply_errors(i) := 'Invalid ticket_id';
+        ELSIF l_replies(i).email_id IS NULL OR l_replies(i).email_message_id IS NULL OR l_replies(i).body IS NULL THEN
+            l_reply_errors(i) := 'email_id, email_message_id and body are required';
+ELSE
+            l_reply_rows(l_reply_rows.COUNT + 1) := l_replies(i);
+            l_reply_pos(l_reply_pos.COUNT + 1) := i;
+END IF;
+END LOOP;
+
+BEGIN
+        FORALL k IN 1 .. l_reply_rows.COUNT SAVE EXCEPTIONS
+            INSERT ALL
+                INTO messages (ticket_id, email_message_id, user_id, message_text)
+                    VALUES (ticket_id, email_message_id, user_id, body)
+                INTO processed_replies (email_id, ticket_id, creation_date, update_date)
+                    VALUES (email_id, ticket_id, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+            SELECT l_reply_rows(k).email_id AS email_id,
+                   l_reply_rows(k).ticket_id AS ticket_id,
+                   l_reply_rows(k).email_message_id AS email_message_id,
+                   l_reply_rows(k).user_id AS user_id,
+                   l_reply_rows(k).body AS body
+            FROM dual;
+EXCEPTION
+        WHEN e_bulk_errors THEN
+            FOR j IN 1 .. SQL%BULK_EXCEPTIONS.COUNT LOOP
+                l_reply_errors(l_reply_pos(SQL%BULK_EXCEPTIONS(j).ERROR_INDEX)) :=
+                    SQLERRM(-SQL%BULK_EXCEPTIONS(j).ERROR_CODE);
+END LOOP;
+END;
+
+COMMIT;
+
+APEX_JSON.initialize_clob_output;
+    APEX_JSON.open_object;
+    APEX_JSON.open_array('tickets');
+FOR i IN 1 .. l_tickets.COUNT LOOP
+        APEX_JSON.open_object;
+        APEX_JSON.write('email_id', l_tickets(i).email_id);
+        IF l_tickets(i).duplicate = 1 THEN
+            APEX_JSON.write('status', 'duplicate');
+        ELSIF l_ticket_errors.EXISTS(i) THEN
+            APEX_JSON.write('status', 'error');
+            APEX_JSON.write('error', l_ticket_errors(i));
+ELSE
+SELECT MAX(ticket_id) INTO l_ticket_id FROM tickets WHERE email_id = l_tickets(i).email_id;
+APEX_JSON.write('status', 'created');
+            APEX_JSON.write('ticket_id', l_ticket_id);
+END IF;
+        APEX_JSON.close_object;
+END LOOP;
+    APEX_JSON.close_array;
+
+    APEX_JSON.open_array('messages');
+FOR i IN 1 .. l_replies.COUNT LOOP
+        APEX_JSON.open_object;
+        APEX_JSON.write('email_id', l_replies(i).email_id);
+        IF l_replies(i).duplicate = 1 THEN
+            APEX_JSON.write('status', 'duplicate');
+        ELSIF l_reply_errors.EXISTS(i) THEN
+            APEX_JSON.write('status', 'error');
+            APEX_JSON.write('error', l_reply_errors(i));
+ELSE
+            APEX_JSON.write('status', 'created');
+            APEX_JSON.write('ticket_id', l_replies(i).ticket_id);
+END IF;
+        APEX_JSON.close_object;
+END LOOP;
+    APEX_JSON.close_array;
+    APEX_JSON.close_object;
+
+    HTP.P(APEX_JSON.get_clob_output);
+    APEX_JSON.free_output;
+EXCEPTION
+    WHEN OTHERS THEN
+        ROLLBACK;
+        owa_util.status_line(500, 'Internal Server Error');
+        HTP.P('{"error":"Internal Server Error","details":"' || REPLACE(SQLERRM, '"', '') || '"}');
+END;
@@ -1,6 +1,9 @@
 DECLARE
 l_provided_key VARCHAR2(200) := owa_util.get_cgi_env('x-api-key');
    l_expected_key VARCHAR2(200) := 'my-x-api-key';
+   l_since        TIMESTAMP;
+   l_watermark    TIMESTAMP;
+   l_total_count  NUMBER;
 BEGIN
    owa_util.mime_header('application/json; charset=utf-8', FALSE);
    owa_util.http_header_close;
@@ -11,6 +14,16 @@ BEGIN
      RETURN;
 END IF;
 
+   -- Optional ?since=<watermark from a previous response> for delta refreshes
+   IF :since IS NOT NULL THEN
+      l_since := TO_TIMESTAMP(:since, 'YYYY-MM-DD"T"HH24:MI:SS.FF6');
+END IF;
+
+   -- Total row count lets the client verify that its delta-refreshed copy is complete
+SELECT COUNT(*), MAX(creation_date)
+INTO l_total_count, l_watermark
+FROM processed_emails;
+
    APEX_JSON.initialize_clob_output;
    -- Open a top-level OBJECT so we can have "items": [...]
    APEX_JSON.open_object;
@@ -18,16 +31,23 @@ END IF;
    -- Then open the array property named "items"
    APEX_JSON.open_array('items');
 
-FOR rec IN (SELECT email_id FROM processed_emails) LOOP
+FOR rec IN (
+       SELECT email_id
+       FROM processed_emails
+       WHERE l_since IS NULL OR creation_date > l_since
+   ) LOOP
        APEX_JSON.open_object;
        APEX_JSON.write('email_id', rec.email_id);
        APEX_JSON.close_object;
 END LOOP;
 
    APEX_JSON.close_array;
+   APEX_JSON.write('watermark', TO_CHAR(l_watermark, 'YYYY-MM-DD"T"HH24:MI:SS.FF6'));
+   APEX_JSON.write('total_count', l_total_count);
    -- Close the top-level OBJECT
    APEX_JSON.close_object;
 
    htp.print(APEX_JSON.get_clob_output);
    APEX_JSON.free_output;
 END;
+
@@ -0,0 +1,63 @@
+-- POST /tickets_api/processed_ids
+-- Body: {"email_ids": ["...", ...]} (at most 500 IDs)
+-- Returns the subset that is already stored: {"processed_emails": [...], "processed_replies": [...]}
+DECLARE
+l_provided_key VARCHAR2(200) := owa_util.get_cgi_env('x-api-key');
+    l_expected_key VARCHAR2(200) := '1234-ABCD-5678-EFGH';
+    l_json         CLOB;
+    l_count        NUMBER;
+BEGIN
+    l_json := TO_CLOB(:body);
+    owa_util.mime_header('application/json; charset=utf-8', FALSE);
+    owa_util.http_header_close;
+    IF l_provided_key IS NULL OR l_provided_key <> l_expected_key THEN
+        owa_util.status_line(401, 'Unauthorized');
+        HTP.P('{"error":"Unauthorized"}');
+        RETURN;
+END IF;
+    IF l_json IS NULL OR DBMS_LOB.getlength(l_json) = 0 OR l_json IS NOT JSON THEN
+        owa_util.status_line(400, 'Bad Request');
+        HTP.P('{"error":"A JSON request body is required"}');
+        RETURN;
+END IF;
+
+SELECT COUNT(*) INTO l_count
+FROM JSON_TABLE(l_json, '$.email_ids[*]' COLUMNS (email_id VARCHAR2(255) PATH '$'));
+IF l_count > 500 THEN
+        owa_util.status_line(400, 'Bad Request');
+        HTP.P('{"error":"At most 500 email_ids per request"}');
+        RETURN;
+END IF;
+
+APEX_JSON.initialize_clob_output;
+    APEX_JSON.open_object;
+
+    -- Both lookups are index probes on the email_id columns, one pass over the requested IDs each
+    APEX_JSON.open_array('processed_emails');
+FOR rec IN (
+        SELECT DISTINCT p.email_id
+        FROM JSON_TABLE(l_json, '$.email_ids[*]' COLUMNS (email_id VARCHAR2(255) PATH '$')) jt
+        JOIN processed_emails p ON p.email_id = jt.email_id
+    ) LOOP
+        APEX_JSON.write(rec.email_id);
+END LOOP;
+    APEX_JSON.close_array;
+
+    APEX_JSON.open_array('processed_replies');
+FOR rec IN (
+        SELECT DISTINCT p.email_id
+        FROM JSON_TABLE(l_json, '$.email_ids[*]' COLUMNS (email_id VARCHAR2(255) PATH '$')) jt
+        JOIN processed_replies p ON p.email_id = jt.email_id
+    ) LOOP
+        APEX_JSON.write(rec.email_id);
+END LOOP;
+    APEX_JSON.close_array;
+
+    APEX_JSON.close_object;
+    HTP.P(APEX_JSON.get_clob_output);
+    APEX_JSON.free_output;
+EXCEPTION
+    WHEN OTHERS THEN
+        owa_util.status_line(500, 'Internal Server Error');
+        HTP.P('{"error":"Internal Server Error","details":"' || REPLACE(SQLERRM, '"', '') || '"}');
+END;
@@ -2,6 +2,9 @@ DECLARE
 l_provided_key VARCHAR2(200) := owa_util.get_cgi_env('x-api-key');
     l_expected_key VARCHAR2(200) := '1234-ABCD-5678-EFGH';
     l_first BOOLEAN := TRUE;
+    l_since        TIMESTAMP;
+    l_watermark    TIMESTAMP;
+    l_total_count  NUMBER;
 BEGIN
     owa_util.mime_header('application/json; charset=utf-8', FALSE);
     owa_util.http_header_close;
@@ -10,10 +13,18 @@ BEGIN
         HTP.P('{"error":"Unauthorized"}');
         RETURN;
 END IF;
+    -- Optional ?since=<watermark from a previous response> for delta refreshes
+    IF :since IS NOT NULL THEN
+        l_since := TO_TIMESTAMP(:since, 'YYYY-MM-DD"T"HH24:MI:SS.FF6');
+END IF;
+SELECT COUNT(*), MAX(creation_date)
+INTO l_total_count, l_watermark
+FROM processed_replies;
     HTP.P('{"items":[');
 FOR rec IN (
         SELECT email_id
         FROM processed_replies
+        WHERE l_since IS NULL OR creation_date > l_since
         ORDER BY creation_date
     ) LOOP
         IF NOT l_first THEN
@@ -22,11 +33,12 @@ END IF;
         HTP.P('"' || APEX_ESCAPE.json(rec.email_id) || '"');
         l_first := FALSE;
 END LOOP;
-    HTP.P(']}');
+    HTP.P('],"watermark":"' || TO_CHAR(l_watermark, 'YYYY-MM-DD"T"HH24:MI:SS.FF6') ||
+          '","total_count":' || l_total_count || '}');
     owa_util.status_line(200, 'OK');
 EXCEPTION
     WHEN OTHERS THEN
         owa_util.status_line(500, 'Internal Server Error');
         HTP.P('{"error":"Internal Server Error","details":"' || REPLACE(SQLERRM, '"', '') || '"}');
 END;
-/
\ No newline at end of file
+/
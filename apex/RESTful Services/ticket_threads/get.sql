@@ -0,0 +1,60 @@
+-- GET /tickets_api/ticket_threads?after_ticket_id=0&limit=500
+-- Lists the thread mappings of open tickets (NEW / IN PROGRESS) in ticket_id order, one page at a time.
+-- Returns {"tickets": [{"email_thread_id": "...", "ticket_id": 22}, ...], "has_more": true|false};
+-- pass the last ticket_id of a page as after_ticket_id to get the next one.
+DECLARE
+l_provided_key VARCHAR2(200) := owa_util.get_cgi_env('x-api-key');
+    l_expected_key VARCHAR2(200) := '1234-ABCD-5678-EFGH';
+    l_after        NUMBER;
+    l_limit        NUMBER;
+    l_written      NUMBER := 0;
+    l_has_more     BOOLEAN := FALSE;
+BEGIN
+    owa_util.mime_header('application/json; charset=utf-8', FALSE);
+    owa_util.http_header_close;
+    IF l_provided_key IS NULL OR l_provided_key <> l_expected_key THEN
+        owa_util.status_line(401, 'Unauthorized');
+        HTP.P('{"error":"Unauthorized"}');
+        RETURN;
+END IF;
+    -- parsed here rather than in DECLARE so a bad number reaches the handler below
+    l_after := NVL(TO_NUMBER(:after_ticket_id), 0);
+    l_limit := LEAST(NVL(TO_NUMBER(:limit), 500), 1000);
+
+APEX_JSON.initialize_clob_output;
+    APEX_JSON.open_object;
+    APEX_JSON.open_array('tickets');
+
+    -- Keyset paging over idx_tickets_status; one extra row tells whether another page follows
+FOR rec IN (
+        SELECT ticket_id, email_thread_id
+        FROM tickets
+        WHERE status IN ('NEW', 'IN PROGRESS')
+          AND ticket_id > l_after
+        ORDER BY ticket_id
+        FETCH FIRST l_limit + 1 ROWS ONLY
+    ) LOOP
+        IF l_written = l_limit THEN
+            l_has_more := TRUE;
+            EXIT;
+END IF;
+        APEX_JSON.open_object;
+        APEX_JSON.write('email_thread_id', rec.email_thread_id);
+        APEX_JSON.write('ticket_id', rec.ticket_id);
+        APEX_JSON.close_object;
+        l_written := l_written + 1;
+END LOOP;
+
+    APEX_JSON.close_array;
+    APEX_JSON.write('has_more', l_has_more);
+    APEX_JSON.close_object;
+    HTP.P(APEX_JSON.get_clob_output);
+    APEX_JSON.free_output;
+EXCEPTION
+    WHEN VALUE_ERROR OR INVALID_NUMBER THEN
+        owa_util.status_line(400, 'Bad Request');
+        HTP.P('{"error":"after_ticket_id and limit must be numbers"}');
+    WHEN OTHERS THEN
+        owa_util.status_line(500, 'Internal Server Error');
+        HTP.P('{"error":"Internal Server Error","details":"' || REPLACE(SQLERRM, '"', '') || '"}');
+END;
@@ -0,0 +1,57 @@
+-- POST /tickets_api/ticket_threads
+-- Body: {"email_thread_ids": ["...", ...]} (at most 500 IDs)
+-- Returns the tickets of the given threads: {"tickets": [{"email_thread_id": "...", "ticket_id": 22}, ...]}
+-- Threads without a ticket are left out.
+DECLARE
+l_provided_key VARCHAR2(200) := owa_util.get_cgi_env('x-api-key');
+    l_expected_key VARCHAR2(200) := '1234-ABCD-5678-EFGH';
+    l_json         CLOB;
+    l_count        NUMBER;
+BEGIN
+    l_json := TO_CLOB(:body);
+    owa_util.mime_header('application/json; charset=utf-8', FALSE);
+    owa_util.http_header_close;
+    IF l_provided_key IS NULL OR l_provided_key <> l_expected_key THEN
+        owa_util.status_line(401, 'Unauthorized');
+        HTP.P('{"error":"Unauthorized"}');
+        RETURN;
+END IF;
+    IF l_json IS NULL OR DBMS_LOB.getlength(l_json) = 0 OR l_json IS NOT JSON THEN
+        owa_util.status_line(400, 'Bad Request');
+        HTP.P('{"error":"A JSON request body is required"}');
+        RETURN;
+END IF;
+
+SELECT COUNT(*) INTO l_count
+FROM JSON_TABLE(l_json, '$.email_thread_ids[*]' COLUMNS (email_thread_id VARCHAR2(255) PATH '$'));
+IF l_count > 500 THEN
+        owa_util.status_line(400, 'Bad Request');
+        HTP.P('{"error":"At most 500 email_thread_ids per request"}');
+        RETURN;
+END IF;
+
+APEX_JSON.initialize_clob_output;
+    APEX_JSON.open_object;
+    APEX_JSON.open_array('tickets');
+
+    -- One probe of the unique email_thread_id index per requested thread
+FOR rec IN (
+        SELECT DISTINCT t.email_thread_id, t.ticket_id
+        FROM JSON_TABLE(l_json, '$.email_thread_ids[*]' COLUMNS (email_thread_id VARCHAR2(255) PATH '$')) jt
+        JOIN tickets t ON t.email_thread_id = jt.email_thread_id
+    ) LOOP
+        APEX_JSON.open_object;
+        APEX_JSON.write('email_thread_id', rec.email_thread_id);
+        APEX_JSON.write('ticket_id', rec.ticket_id);
+        APEX_JSON.close_object;
+END LOOP;
+
+    APEX_JSON.close_array;
+    APEX_JSON.close_object;
+    HTP.P(APEX_JSON.get_clob_output);
+    APEX_JSON.free_output;
+EXCEPTION
+    WHEN OTHERS THEN
+        owa_util.status_line(500, 'Internal Server Error');
+        HTP.P('{"error":"Internal Server Error","details":"' || REPLACE(SQLERRM, '"', '') || '"}');
+END;
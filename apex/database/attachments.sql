@@ -0,0 +1,23 @@
+CREATE TABLE attachments (
+                             attachment_id NUMBER GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+                             email_id VARCHAR2(255) NOT NULL,
+                             part_id VARCHAR2(50) NOT NULL,
+                             filename VARCHAR2(1000) NOT NULL,
+                             mime_type VARCHAR2(255),
+                             total_size NUMBER NOT NULL,
+                             content BLOB,
+                             status VARCHAR2(20) DEFAULT 'UPLOADING' CHECK (status IN ('UPLOADING', 'COMPLETE')),
+                             creation_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                             update_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                             CONSTRAINT uq_attachments_part UNIQUE (email_id, part_id)
+);
+
+CREATE OR REPLACE TRIGGER trg_attachments_update
+BEFORE UPDATE ON attachments
+                  FOR EACH ROW
+BEGIN
+    :NEW.update_date := CURRENT_TIMESTAMP;
+END;
+
+-- email_id is the Gmail message ID of the ticket (tickets.email_id) or reply (processed_replies.email_id).
+-- There is no foreign key: attachments may arrive before the ticket or reply they belong to.
@@ -2,4 +2,6 @@ CREATE TABLE processed_emails (
                                   email_id VARCHAR2(255) PRIMARY KEY,
                                   creation_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                                   update_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-);
\ No newline at end of file
+);
+
+CREATE INDEX idx_processed_emails_creation_date ON processed_emails (creation_date);
@@ -14,4 +14,6 @@ BEGIN
     :NEW.update_date := CURRENT_TIMESTAMP;
 END;
 
-CREATE INDEX idx_processed_replies_ticket_id ON processed_replies (ticket_id);
\ No newline at end of file
+CREATE INDEX idx_processed_replies_ticket_id ON processed_replies (ticket_id);
+CREATE INDEX idx_processed_replies_email_id ON processed_replies (email_id);
+CREATE INDEX idx_processed_replies_creation_date ON processed_replies (creation_date);
@@ -18,4 +18,6 @@ BEFORE UPDATE ON tickets
 BEGIN
     :NEW.update_date := CURRENT_TIMESTAMP;
 END;
-/
\ No newline at end of file
+/
+-- Startup preload pages through open tickets by status in ticket_id order
+CREATE INDEX idx_tickets_status ON tickets (status, ticket_id);
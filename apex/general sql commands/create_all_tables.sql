@@ -95,6 +95,8 @@ BEGIN
 END;
 /
 
+CREATE INDEX idx_processed_emails_creation_date ON processed_emails (creation_date);
+
 -- Create processed_replies table
 CREATE TABLE processed_replies (
                                    email_id VARCHAR2(255) PRIMARY KEY,
@@ -113,6 +115,7 @@ END;
 /
 
 CREATE INDEX idx_processed_replies_ticket_id ON processed_replies (ticket_id);
+CREATE INDEX idx_processed_replies_creation_date ON processed_replies (creation_date);
 
 -- Create messages table
 CREATE TABLE messages (
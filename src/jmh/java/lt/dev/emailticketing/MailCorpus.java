@@ -0,0 +1,293 @@
+package lt.dev.emailticketing;
+
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartBody;
+import com.google.api.services.gmail.model.MessagePartHeader;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Gmail messages shaped like the ones the service sees in production, built deterministically so
+ * benchmark runs are comparable:
+ * <ul>
+ *     <li>{@link #SMALL_PLAIN}: a short single-part text/plain request;</li>
+ *     <li>{@link #LARGE_MULTIPART}: a newsletter-sized multipart/mixed message with text and HTML
+ *     alternatives, an inline image and a PDF stored as a separate attachment;</li>
+ *     <li>{@link #LONG_THREAD}: a reply at the bottom of a long conversation, every earlier message
+ *     quoted one level deeper, with the Gmail HTML alternative.</li>
+ * </ul>
+ * Every message carries the full Received/ARC/DKIM header block Gmail returns, with From, Subject
+ * and Message-ID near the end as in real messages.
+ */
+public enum MailCorpus {
+    SMALL_PLAIN {
+        @Override
+        Message build(Random random) {
+            String text = paragraphs(random, 3, 40);
+            MessagePart payload = part("text/plain; charset=\"UTF-8\"", text);
+            payload.setHeaders(headers(random, "Ona Petraitienė <ona.petraitiene@example.lt>",
+                    "Printer on the 3rd floor is offline", null, "text/plain; charset=\"UTF-8\""));
+            return newMessage("18e4f1a2b3c4d5e6", payload);
+        }
+    },
+    LARGE_MULTIPART {
+        @Override
+        Message build(Random random) {
+            String text = paragraphs(random, 400, 90);
+            MessagePart alternative = container("multipart/alternative",
+                    part("text/plain; charset=\"UTF-8\"", text),
+                    part("text/html; charset=\"UTF-8\"", html(text)));
+            MessagePart image = part("image/png", new String(randomBytes(random, 6 * 1024), StandardCharsets.ISO_8859_1));
+            image.setFilename("logo.png");
+            MessagePart pdf = new MessagePart()
+                    .setMimeType("application/pdf")
+                    .setFilename("Quarterly report.pdf")
+                    .setBody(new MessagePartBody().setAttachmentId("ANGjdJ8" + "x".repeat(400)).setSize(2_400_000));
+            MessagePart payload = container("multipart/mixed", container("multipart/related", alternative, image), pdf);
+            payload.setHeaders(headers(random, "\"IT Service Desk, Vilnius\" <servicedesk@example.com>",
+                    "=?UTF-8?Q?Savaitės_apžvalga_/_Weekly_digest?=", null, "multipart/mixed; boundary=\"000000000000a1b2c3\""));
+            return newMessage("18e4f1a2b3c4d5e7", payload);
+        }
+    },
+    LONG_THREAD {
+        @Override
+        Message build(Random random) {
+            String text = thread(random, 25);
+            MessagePart payload = container("multipart/alternative",
+                    part("text/plain; charset=\"UTF-8\"", text),
+                    part("text/html; charset=\"UTF-8\"", html(text)));
+            StringBuilder references = new StringBuilder();
+            for (int i = 0; i < 25; i++) {
+                references.append(i == 0 ? "" : " ").append(messageId(random));
+            }
+            payload.setHeaders(headers(random, "Jonas Jonaitis <jonas@example.org>",
+                    "Re: VPN access for the new contractors", references.toString(),
+                    "multipart/alternative; boundary=\"000000000000d4e5f6\""));
+            return newMessage("18e4f1a2b3c4d5e8", payload);
+        }
+    };
+
+    private static final String[] WORDS = {
+            "the", "ticket", "printer", "access", "please", "we", "have", "been", "waiting", "for", "a",
+            "reply", "since", "Monday", "and", "the", "issue", "is", "still", "not", "resolved", "VPN",
+            "account", "password", "reset", "laptop", "could", "you", "check", "again", "server", "error",
+            "after", "update", "meeting", "room", "screen", "attached", "report", "thanks", "regards",
+            "urgent", "deadline", "contract", "invoice", "ačiū", "labai", "prašau", "sveiki", "žinoma"
+    };
+    private static final DateTimeFormatter RFC_1123 = DateTimeFormatter.RFC_1123_DATE_TIME;
+    private static final ZonedDateTime SENT = ZonedDateTime.of(2025, 3, 3, 9, 41, 0, 0, ZoneOffset.ofHours(2));
+
+    private Message message;
+
+    abstract Message build(Random random);
+
+    /**
+     * The message, built once per JVM from a fixed seed.
+     */
+    public synchronized Message message() {
+        if (message == null) {
+            message = build(new Random(ordinal() + 20250303L));
+        }
+        return message;
+    }
+
+    public String header(String name) {
+        return message().getPayload().getHeaders().stream()
+                .filter(h -> name.equalsIgnoreCase(h.getName()))
+                .findFirst()
+                .map(MessagePartHeader::getValue)
+                .orElse(null);
+    }
+
+    /**
+     * Base64url data of the first text/plain part, as Gmail returns it.
+     */
+    public String plainTextData() {
+        return firstPlainText(message().getPayload()).getBody().getData();
+    }
+
+    private static MessagePart firstPlainText(MessagePart part) {
+        if (part.getMimeType().startsWith("text/plain")) {
+            return part;
+        }
+        if (part.getParts() != null) {
+            for (MessagePart child : part.getParts()) {
+                MessagePart found = firstPlainText(child);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Message newMessage(String id, MessagePart payload) {
+        return new Message()
+                .setId(id)
+                .setThreadId(id)
+                .setInternalDate(SENT.toInstant().toEpochMilli())
+                .setLabelIds(List.of("INBOX", "UNREAD", "CATEGORY_PERSONAL"))
+                .setPayload(payload);
+    }
+
+    private static MessagePart part(String contentType, String content) {
+        boolean text = contentType.startsWith("text/");
+        byte[] bytes = content.getBytes(text ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+        String mimeType = contentType.contains(";") ? contentType.substring(0, contentType.indexOf(';')) : contentType;
+        return new MessagePart()
+                .setMimeType(mimeType)
+                .setFilename("")
+                .setHeaders(List.of(
+                        header("Content-Type", contentType),
+                        header("Content-Transfer-Encoding", text ? "quoted-printable" : "base64")))
+                .setBody(new MessagePartBody()
+                        .setSize(bytes.length)
+                        .setData(Base64.getUrlEncoder().encodeToString(bytes)));
+    }
+
+    private static MessagePart container(String mimeType, MessagePart... parts) {
+        for (int i = 0; i < parts.length; i++) {
+            parts[i].setPartId(String.valueOf(i));
+        }
+        return new MessagePart()
+                .setMimeType(mimeType)
+                .setFilename("")
+                .setBody(new MessagePartBody().setSize(0))
+                .setParts(List.of(parts));
+    }
+
+    private static List<MessagePartHeader> headers(Random random, String from, String subject, String references,
+                                                   String contentType) {
+        List<MessagePartHeader> headers = new ArrayList<>();
+        headers.add(header("Delivered-To", "support@example.com"));
+        headers.add(header("Received", "by 2002:a05:7300:8c0b:b0:f1:2a3b:4c5d with SMTP id z11csp1234567dyq; "
+                + RFC_1123.format(SENT)));
+        headers.add(header("X-Google-Smtp-Source", "AGHT+IF" + token(random, 80)));
+        headers.add(header("X-Received", "by 2002:a17:906:1b4a:b0:a44:1234:5678 with SMTP id r10mr123456ejf.45."
+                + SENT.toEpochSecond() + "; " + RFC_1123.format(SENT)));
+        headers.add(header("ARC-Seal", "i=1; a=rsa-sha256; t=" + SENT.toEpochSecond() + "; cv=none; d=google.com; s=arc-20160816; b="
+                + token(random, 340)));
+        headers.add(header("ARC-Message-Signature", "i=1; a=rsa-sha256; c=relaxed/relaxed; d=google.com; s=arc-20160816; "
+                + "h=to:subject:message-id:date:from:mime-version:dkim-signature; bh=" + token(random, 44) + "; b=" + token(random, 340)));
+        headers.add(header("ARC-Authentication-Results", "i=1; mx.google.com; dkim=pass header.i=@example.lt; "
+                + "spf=pass (google.com: domain of sender designates 209.85.220.41 as permitted sender); dmarc=pass (p=NONE sp=NONE dis=NONE)"));
+        headers.add(header("Return-Path", "<bounce-" + token(random, 12) + "@example.lt>"));
+        headers.add(header("Received", "from mail-sor-f41.google.com (mail-sor-f41.google.com. [209.85.220.41]) "
+                + "by mx.google.com with SMTPS id a12sor1234567edx.12.2025.03.03.07.41.00; " + RFC_1123.format(SENT)));
+        headers.add(header("Received-SPF", "pass (google.com: domain of sender designates 209.85.220.41 as permitted sender) client-ip=209.85.220.41;"));
+        headers.add(header("Authentication-Results", "mx.google.com; dkim=pass header.i=@example.lt header.s=20230601 header.b="
+                + token(random, 8) + "; spf=pass smtp.mailfrom=example.lt; dmarc=pass (p=NONE sp=NONE dis=NONE) header.from=example.lt"));
+        headers.add(header("DKIM-Signature", "v=1; a=rsa-sha256; c=relaxed/relaxed; d=example.lt; s=20230601; t="
+                + SENT.toEpochSecond() + "; x=" + (SENT.toEpochSecond() + 604800)
+                + "; h=to:subject:message-id:date:from:mime-version:from:to:cc:subject:date:message-id:reply-to; bh="
+                + token(random, 44) + "; b=" + token(random, 340)));
+        headers.add(header("X-Google-DKIM-Signature", "v=1; a=rsa-sha256; c=relaxed/relaxed; d=1e100.net; s=20230601; bh="
+                + token(random, 44) + "; b=" + token(random, 340)));
+        headers.add(header("X-Gm-Message-State", "AOJu0Y" + token(random, 120)));
+        headers.add(header("MIME-Version", "1.0"));
+        if (references != null) {
+            headers.add(header("References", references));
+            headers.add(header("In-Reply-To", references.substring(references.lastIndexOf(' ') + 1)));
+        }
+        headers.add(header("From", from));
+        headers.add(header("Date", RFC_1123.format(SENT)));
+        headers.add(header("Message-ID", messageId(random)));
+        headers.add(header("Subject", subject));
+        headers.add(header("To", "IT Support <support@example.com>"));
+        headers.add(header("Content-Type", contentType));
+        return headers;
+    }
+
+    private static MessagePartHeader header(String name, String value) {
+        return new MessagePartHeader().setName(name).setValue(value);
+    }
+
+    private static String messageId(Random random) {
+        return "<CA+" + token(random, 48) + "@mail.gmail.com>";
+    }
+
+    private static String token(Random random, int length) {
+        byte[] bytes = randomBytes(random, length);
+        return Base64.getEncoder().withoutPadding().encodeToString(bytes).substring(0, length);
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Text wrapped at 76 columns with CRLF line endings and blank lines between paragraphs.
+     */
+    private static String paragraphs(Random random, int count, int wordsPerParagraph) {
+        StringBuilder out = new StringBuilder();
+        for (int p = 0; p < count; p++) {
+            int column = 0;
+            int words = wordsPerParagraph / 2 + random.nextInt(wordsPerParagraph);
+            for (int w = 0; w < words; w++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                if (column > 0 && column + word.length() + 1 > 76) {
+                    out.append("\r\n");
+                    column = 0;
+                } else if (column > 0) {
+                    out.append(' ');
+                    column++;
+                }
+                out.append(word);
+                column += word.length();
+            }
+            out.append(".\r\n\r\n");
+        }
+        return out.toString();
+    }
+
+    /**
+     * A fresh answer followed by {@code depth} earlier messages, each under its own attribution line
+     * and quoted one level deeper than the one before it.
+     */
+    private static String thread(Random random, int depth) {
+        StringBuilder out = new StringBuilder(paragraphs(random, 2, 30));
+        out.append("Jonas\r\n\r\n");
+        for (int level = 1; level <= depth; level++) {
+            String prefix = ">".repeat(level - 1) + (level > 1 ? " " : "");
+            String quote = ">".repeat(level) + " ";
+            out.append(prefix).append("On ").append(RFC_1123.format(SENT.minusHours(level * 3L)))
+                    .append(", ").append(level % 2 == 0 ? "Jonas Jonaitis <jonas@example.org>" : "IT Support <support@example.com>")
+                    .append(" wrote:\r\n").append(quote.stripTrailing()).append("\r\n");
+            for (String line : paragraphs(random, 2, 30).split("\r\n", -1)) {
+                out.append(line.isEmpty() ? quote.stripTrailing() : quote + line).append("\r\n");
+            }
+        }
+        return out.toString();
+    }
+
+    private static String html(String text) {
+        StringBuilder out = new StringBuilder(text.length() * 2)
+                .append("<div dir=\"ltr\">");
+        int quoteAt = text.indexOf("\r\nOn ");
+        String answer = quoteAt < 0 ? text : text.substring(0, quoteAt);
+        for (String paragraph : answer.split("\r\n\r\n")) {
+            out.append("<div>").append(paragraph.replace("\r\n", " ")).append("</div><div><br></div>");
+        }
+        out.append("</div>");
+        if (quoteAt >= 0) {
+            out.append("<br><div class=\"gmail_quote\"><div dir=\"ltr\" class=\"gmail_attr\">")
+                    .append(text, quoteAt + 2, text.indexOf("\r\n", quoteAt + 2))
+                    .append("<br></div><blockquote class=\"gmail_quote\" style=\"margin:0px 0px 0px 0.8ex;"
+                            + "border-left:1px solid rgb(204,204,204);padding-left:1ex\">")
+                    .append(text.substring(quoteAt).replace("&", "&amp;").replace("<", "&lt;")
+                            .replace(">", "&gt;").replace("\r\n", "<br>\r\n"))
+                    .append("</blockquote></div>");
+        }
+        return out.toString();
+    }
+}
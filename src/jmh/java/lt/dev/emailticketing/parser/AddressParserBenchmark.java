@@ -0,0 +1,62 @@
+package lt.dev.emailticketing.parser;
+
+import lt.dev.emailticketing.internal.SenderInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * From header parsing: the earlier indexOf/substring implementation, kept below as {@link #legacy},
+ * against the {@link AddressParser} scanner and the cached lookup the service actually does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddressParserBenchmark {
+
+    @Param({
+            "jane@example.com",
+            "Ona Petraitienė <ona.petraitiene@example.lt>",
+            "\"IT Service Desk, Vilnius\" <servicedesk@example.com>",
+            "=?UTF-8?Q?Savait=C4=97s_ap=C5=BEvalga?= <news@example.lt>"
+    })
+    private String fromHeader;
+
+    private final AddressParser scanner = new AddressParser();
+    private final EmailParserService service = new EmailParserService(10_000);
+
+    @Benchmark
+    public SenderInfo legacy() {
+        return legacy(fromHeader);
+    }
+
+    @Benchmark
+    public SenderInfo scanner() {
+        return scanner.parse(fromHeader);
+    }
+
+    @Benchmark
+    public SenderInfo cached() {
+        return service.extractSenderInfo(fromHeader);
+    }
+
+    private static SenderInfo legacy(String fromHeader) {
+        String name = "Unknown";
+        String email = "unknown@unknown.com";
+
+        if (fromHeader != null && !fromHeader.isEmpty()) {
+            if (fromHeader.contains("<")) {
+                name = fromHeader.substring(0, fromHeader.indexOf("<")).trim();
+                email = fromHeader.substring(fromHeader.indexOf("<") + 1, fromHeader.indexOf(">")).trim();
+            } else {
+                email = fromHeader.trim();
+                name = email.contains("@") ? email.substring(0, email.indexOf("@")) : email;
+            }
+        }
+
+        return new SenderInfo(name, email);
+    }
+}
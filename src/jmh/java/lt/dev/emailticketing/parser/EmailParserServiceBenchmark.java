@@ -0,0 +1,46 @@
+package lt.dev.emailticketing.parser;
+
+import lt.dev.emailticketing.MailCorpus;
+import lt.dev.emailticketing.internal.SenderInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Body and sender extraction as done for every fetched message. {@code extractBody} walks the whole
+ * MIME tree, so the multipart and thread corpora also measure the recursive part walk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailParserServiceBenchmark {
+
+    @Param({"SMALL_PLAIN", "LARGE_MULTIPART", "LONG_THREAD"})
+    private MailCorpus corpus;
+
+    private final EmailParserService parser = new EmailParserService(100);
+    private String fromHeader;
+
+    @Setup
+    public void setUp() {
+        fromHeader = corpus.header("From");
+    }
+
+    @Benchmark
+    public String extractBody() {
+        return parser.extractBody(corpus.message());
+    }
+
+    @Benchmark
+    public String extractReplyBody() {
+        return parser.extractReplyBody(corpus.message());
+    }
+
+    @Benchmark
+    public SenderInfo extractSenderInfo() {
+        return parser.extractSenderInfo(fromHeader);
+    }
+}
@@ -0,0 +1,61 @@
+package lt.dev.emailticketing.parser;
+
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import lt.dev.emailticketing.MailCorpus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The five header lookups done per message while triaging it and building its APEX payload: one
+ * stream scan per header, as before {@link ParsedMessage}, against the view's single-pass index.
+ * The headers sit behind the Received/ARC/DKIM block, so each scan walks most of the list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsedMessageBenchmark {
+
+    private static final String[] HEADERS = {"References", "In-Reply-To", "From", "Subject", "Message-ID"};
+
+    @Param({"SMALL_PLAIN", "LONG_THREAD"})
+    private MailCorpus corpus;
+
+    private final EmailParserService parser = new EmailParserService(100);
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        message = corpus.message();
+    }
+
+    @Benchmark
+    public void streamScan(Blackhole blackhole) {
+        for (String name : HEADERS) {
+            blackhole.consume(message.getPayload().getHeaders().stream()
+                    .filter(h -> name.equalsIgnoreCase(h.getName()))
+                    .findFirst()
+                    .map(MessagePartHeader::getValue)
+                    .orElse(null));
+        }
+    }
+
+    @Benchmark
+    public void headerIndex(Blackhole blackhole) {
+        ParsedMessage parsed = new ParsedMessage(message, parser);
+        for (String name : HEADERS) {
+            blackhole.consume(parsed.header(name));
+        }
+    }
+
+    // what a message dropped by the dedupe check costs
+    @Benchmark
+    public boolean isReply() {
+        return new ParsedMessage(message, parser).isReply();
+    }
+}
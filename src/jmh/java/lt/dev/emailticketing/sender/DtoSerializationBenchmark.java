@@ -0,0 +1,79 @@
+package lt.dev.emailticketing.sender;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lt.dev.emailticketing.MailCorpus;
+import lt.dev.emailticketing.dto.ApexBatchRequestDto;
+import lt.dev.emailticketing.dto.EmailRequestDto;
+import lt.dev.emailticketing.dto.MessageReplyDto;
+import lt.dev.emailticketing.parser.EmailParserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the payloads posted to APEX, single and batched. Bodies come from the
+ * parsed corpus so string escaping (CRLFs, quotes, non-ASCII text) costs what it does in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoSerializationBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    @Param({"SMALL_PLAIN", "LARGE_MULTIPART", "LONG_THREAD"})
+    private MailCorpus corpus;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private EmailRequestDto ticket;
+    private MessageReplyDto reply;
+    private ApexBatchRequestDto batch;
+
+    @Setup
+    public void setUp() {
+        EmailParserService parser = new EmailParserService(100);
+        String body = parser.extractBody(corpus.message());
+        String replyBody = parser.extractReplyBody(corpus.message());
+        String messageId = corpus.header("Message-ID");
+
+        ticket = new EmailRequestDto(corpus.message().getId(), "Ona Petraitienė", "ona.petraitiene@example.lt",
+                corpus.header("Subject"), body, "2025-03-03T07:41:00Z", messageId, corpus.message().getThreadId());
+        reply = new MessageReplyDto(corpus.message().getId(), "ona.petraitiene@example.lt", corpus.header("Subject"),
+                replyBody, "2025-03-03T07:41:00Z", messageId, corpus.message().getThreadId(), "1042");
+
+        List<EmailRequestDto> tickets = new ArrayList<>(BATCH_SIZE);
+        List<MessageReplyDto> messages = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            tickets.add(ticket);
+            messages.add(reply);
+        }
+        batch = new ApexBatchRequestDto(tickets, messages);
+    }
+
+    @Benchmark
+    public String ticket() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(ticket);
+    }
+
+    @Benchmark
+    public String reply() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(reply);
+    }
+
+    @Benchmark
+    public String batch() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(batch);
+    }
+
+    // what the outbox journals for each payload
+    @Benchmark
+    public byte[] ticketBytes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(ticket);
+    }
+}
@@ -0,0 +1,40 @@
+package lt.dev.emailticketing.util;
+
+import lt.dev.emailticketing.MailCorpus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base64url decoding and paragraph normalization of the text/plain part of each corpus message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GmailUtilsBenchmark {
+
+    @Param({"SMALL_PLAIN", "LARGE_MULTIPART", "LONG_THREAD"})
+    private MailCorpus corpus;
+
+    private String encoded;
+    private String decoded;
+
+    @Setup
+    public void setUp() {
+        encoded = corpus.plainTextData();
+        decoded = GmailUtils.decodeBase64(encoded);
+    }
+
+    @Benchmark
+    public String decodeBase64() {
+        return GmailUtils.decodeBase64(encoded);
+    }
+
+    @Benchmark
+    public String normalizeParagraphs() {
+        return GmailUtils.normalizeParagraphs(decoded);
+    }
+}
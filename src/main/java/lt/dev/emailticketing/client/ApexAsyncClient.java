@@ -0,0 +1,106 @@
+package lt.dev.emailticketing.client;
+
+import lt.dev.emailticketing.sender.ApexSenderService;
+import lt.dev.emailticketing.service.ProcessedCheckService;
+import lt.dev.emailticketing.service.TicketService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link CompletableFuture} variants of the APEX calls.
+ * <p>
+ * Every call runs on its own virtual thread over the pooled {@code RestTemplate}, so a request waiting
+ * on APEX parks a virtual thread rather than a platform thread. The calls get their own executor so
+ * they never wait for permits held by the scan tasks that compose them.
+ * <p>
+ * All calls go to the one APEX host, so at most {@code apex.http.max-connections-per-route} of them
+ * run at once: more would only queue for a pooled connection and fail once the lease times out.
+ */
+@Component
+public class ApexAsyncClient implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ApexAsyncClient.class);
+
+    private final ApexSenderService apexSenderService;
+    private final ProcessedCheckService processedCheckService;
+    private final TicketService ticketService;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    public ApexAsyncClient(
+            ApexSenderService apexSenderService,
+            ProcessedCheckService processedCheckService,
+            TicketService ticketService,
+            @Value("${apex.async.max-in-flight:${apex.http.max-connections-per-route:20}}") int maxInFlight,
+            @Value("${apex.http.max-connections-per-route:20}") int maxConnectionsPerRoute
+    ) {
+        this.apexSenderService = apexSenderService;
+        this.processedCheckService = processedCheckService;
+        this.ticketService = ticketService;
+        if (maxInFlight > maxConnectionsPerRoute) {
+            logger.warn("⚠️ apex.async.max-in-flight={} exceeds the {} pooled APEX connections, capping it",
+                    maxInFlight, maxConnectionsPerRoute);
+        }
+        this.maxInFlight = Math.max(1, Math.min(maxInFlight, maxConnectionsPerRoute));
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("apex-async-", 0).factory());
+        this.inFlight = new Semaphore(this.maxInFlight);
+    }
+
+    public CompletableFuture<Boolean> sendToApex(Object dto) {
+        return call(() -> apexSenderService.sendToApex(dto));
+    }
+
+    public CompletableFuture<Boolean> isEmailProcessed(String emailId) {
+        return call(() -> processedCheckService.isEmailProcessed(emailId));
+    }
+
+    public CompletableFuture<Boolean> isReplyProcessed(String emailId) {
+        return call(() -> processedCheckService.isReplyProcessed(emailId));
+    }
+
+    public CompletableFuture<Long> getTicketIdByThreadId(String threadId) {
+        return call(() -> ticketService.getTicketIdByThreadId(threadId));
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    private <T> CompletableFuture<T> call(Supplier<T> request) {
+        return CompletableFuture.supplyAsync(() -> {
+            inFlight.acquireUninterruptibly();
+            try {
+                return request.get();
+            } finally {
+                inFlight.release();
+            }
+        }, executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("⚠️ APEX calls still running at shutdown, interrupting");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
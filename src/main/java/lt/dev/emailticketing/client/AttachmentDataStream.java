@@ -0,0 +1,95 @@
+package lt.dev.emailticketing.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * Streams the decoded content of an {@code attachments.get} response. The response is
+ * {@code {"data": "<base64url>", ...}}; this finds the {@code data} value in the raw JSON and feeds
+ * it through {@link Base64#getUrlDecoder()} as it is read, so the encoded text is never buffered.
+ * Base64url values contain no quotes or escapes, which keeps the scan this simple.
+ */
+final class AttachmentDataStream extends InputStream {
+
+    private static final byte[] DATA_KEY = "\"data\"".getBytes();
+
+    private final InputStream json;
+    private boolean ended;
+
+    private AttachmentDataStream(InputStream json) {
+        this.json = json;
+    }
+
+    /**
+     * Decoded bytes of the {@code data} field of the given JSON response.
+     *
+     * @throws IOException if the response has no {@code data} string
+     */
+    static InputStream decode(InputStream json) throws IOException {
+        skipToValue(json);
+        return Base64.getUrlDecoder().wrap(new AttachmentDataStream(json));
+    }
+
+    private static void skipToValue(InputStream json) throws IOException {
+        int matched = 0;
+        int b;
+        while (matched < DATA_KEY.length && (b = json.read()) >= 0) {
+            matched = b == DATA_KEY[matched] ? matched + 1 : (b == DATA_KEY[0] ? 1 : 0);
+        }
+        if (matched < DATA_KEY.length) {
+            throw new IOException("No data field in attachment response");
+        }
+        while ((b = json.read()) >= 0 && b != '"') {
+            if (b != ':' && !Character.isWhitespace(b)) {
+                throw new IOException("data field of attachment response is not a string");
+            }
+        }
+        if (b < 0) {
+            throw new IOException("Truncated attachment response");
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (ended) {
+            return -1;
+        }
+        int b = json.read();
+        if (b < 0) {
+            throw new IOException("Truncated attachment response");
+        }
+        if (b == '"') {
+            ended = true;
+            return -1;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (ended) {
+            return -1;
+        }
+        if (length == 0) {
+            return 0;
+        }
+        int read = json.read(buffer, offset, length);
+        if (read < 0) {
+            throw new IOException("Truncated attachment response");
+        }
+        for (int i = offset; i < offset + read; i++) {
+            if (buffer[i] == '"') {
+                // the rest of the JSON is read past but not needed
+                ended = true;
+                return i - offset == 0 ? -1 : i - offset;
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+}
@@ -1,24 +1,53 @@
 package lt.dev.emailticketing.client;
 
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponse;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.History;
+import com.google.api.services.gmail.model.HistoryMessageAdded;
+import com.google.api.services.gmail.model.ListHistoryResponse;
+import com.google.api.services.gmail.model.ListMessagesResponse;
 import com.google.api.services.gmail.model.Message;
 import com.google.api.client.auth.oauth2.Credential;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Getter;
 import lt.dev.emailticketing.auth.GmailAuthService;
+import lt.dev.emailticketing.internal.HistoryDelta;
+import lt.dev.emailticketing.util.StageTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class GmailClientService {
 
+    private static final Logger logger = LoggerFactory.getLogger(GmailClientService.class);
     private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    private static final List<String> TRIAGE_HEADERS =
+            List.of("From", "Subject", "Message-ID", "References", "In-Reply-To");
+    private static final String TRIAGE_FIELDS = "id,threadId,internalDate,payload/headers";
 
     private final GmailAuthService gmailAuthService;
+    private final MeterRegistry meterRegistry;
     @Getter
     private Gmail gmail;
 
@@ -31,8 +60,13 @@ public class GmailClientService {
     @Value("${gmail.max-results}")
     private long maxResults;
 
-    public GmailClientService(GmailAuthService gmailAuthService) {
+    // Gmail accepts at most 100 calls in one batch request
+    @Value("${gmail.batch-size:100}")
+    private int batchSize;
+
+    public GmailClientService(GmailAuthService gmailAuthService, MeterRegistry meterRegistry) {
         this.gmailAuthService = gmailAuthService;
+        this.meterRegistry = meterRegistry;
     }
 
     public void initClient() throws Exception {
@@ -42,19 +76,160 @@ public class GmailClientService {
                 .build();
     }
 
-    public List<Message> fetchInboxMessages() throws Exception {
-        return gmail.users().messages()
+    public ListMessagesResponse fetchInboxPage(String pageToken) throws Exception {
+        return StageTimer.time(meterRegistry, StageTimer.GMAIL_FETCH, () -> gmail.users().messages()
                 .list(gmailUserId)
                 .setQ(gmailQuery)
                 .setMaxResults(maxResults)
+                .setPageToken(pageToken)
+                .execute(), "operation", "inbox");
+    }
+
+    public BigInteger fetchCurrentHistoryId() throws Exception {
+        return gmail.users()
+                .getProfile(gmailUserId)
                 .execute()
-                .getMessages();
+                .getHistoryId();
+    }
+
+    /**
+     * Returns the inbox messages added since {@code startHistoryId}, oldest first, at most about
+     * {@code maxMessages} of them. When the cap cuts the history short, the returned history ID is that
+     * of the last record taken, so the next call continues right after it.
+     * Gmail answers 404 when the start id is too old; callers should fall back to a full listing.
+     */
+    public HistoryDelta fetchHistorySince(BigInteger startHistoryId, int maxMessages) throws Exception {
+        Set<String> seenIds = new LinkedHashSet<>();
+        List<Message> added = new ArrayList<>();
+        BigInteger latestHistoryId = startHistoryId;
+        String pageToken = null;
+
+        do {
+            String page = pageToken;
+            ListHistoryResponse response = StageTimer.time(meterRegistry, StageTimer.GMAIL_FETCH, () -> gmail.users().history()
+                    .list(gmailUserId)
+                    .setStartHistoryId(startHistoryId)
+                    .setHistoryTypes(List.of("messageAdded"))
+                    .setLabelId("INBOX")
+                    .setMaxResults(maxResults)
+                    .setPageToken(page)
+                    .execute(), "operation", "history");
+
+            if (response.getHistory() != null) {
+                for (History history : response.getHistory()) {
+                    if (history.getMessagesAdded() != null) {
+                        for (HistoryMessageAdded messageAdded : history.getMessagesAdded()) {
+                            Message message = messageAdded.getMessage();
+                            if (message != null && seenIds.add(message.getId())) {
+                                added.add(message);
+                            }
+                        }
+                    }
+                    if (added.size() >= maxMessages && history.getId() != null) {
+                        logger.info("📜 History cap of {} messages reached at {}, the rest follows next scan",
+                                maxMessages, history.getId());
+                        return new HistoryDelta(added, history.getId());
+                    }
+                }
+            }
+            if (response.getHistoryId() != null) {
+                latestHistoryId = response.getHistoryId();
+            }
+            pageToken = response.getNextPageToken();
+        } while (pageToken != null);
+
+        return new HistoryDelta(added, latestHistoryId);
     }
 
     public Message fetchFullMessage(String messageId) throws Exception {
-        return gmail.users().messages()
+        return StageTimer.time(meterRegistry, StageTimer.GMAIL_FETCH, () -> gmail.users().messages()
                 .get(gmailUserId, messageId)
-                .execute();
+                .execute(), "operation", "full");
+    }
+
+    /**
+     * Fetches the given messages with one multipart batch request per {@code gmail.batch-size} IDs.
+     * Messages that failed inside the batch are left out of the result; callers can retry them
+     * with {@link #fetchFullMessage(String)}.
+     */
+    public Map<String, Message> fetchFullMessages(List<String> messageIds) throws Exception {
+        return fetchInBatches("full_batch", messageIds, messageId -> gmail.users().messages()
+                .get(gmailUserId, messageId));
+    }
+
+    /**
+     * Batch-fetches only the headers needed to triage a message (no body, parts or attachments).
+     */
+    public Map<String, Message> fetchMessageMetadata(List<String> messageIds) throws Exception {
+        return fetchInBatches("metadata_batch", messageIds, messageId -> gmail.users().messages()
+                .get(gmailUserId, messageId)
+                .setFormat("metadata")
+                .setMetadataHeaders(TRIAGE_HEADERS)
+                .setFields(TRIAGE_FIELDS));
+    }
+
+    private Map<String, Message> fetchInBatches(String operation, List<String> messageIds,
+                                                MessageRequestFactory requestFactory) throws Exception {
+        Map<String, Message> fetched = new LinkedHashMap<>();
+        int chunkSize = Math.min(Math.max(batchSize, 1), 100);
+
+        for (int from = 0; from < messageIds.size(); from += chunkSize) {
+            List<String> chunk = messageIds.subList(from, Math.min(from + chunkSize, messageIds.size()));
+            Map<String, Message> results = new ConcurrentHashMap<>();
+            BatchRequest batch = gmail.batch();
+
+            for (String messageId : chunk) {
+                requestFactory.create(messageId).queue(batch, new JsonBatchCallback<Message>() {
+                    @Override
+                    public void onSuccess(Message message, HttpHeaders responseHeaders) {
+                        results.put(messageId, message);
+                    }
+
+                    @Override
+                    public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+                        logger.warn("⚠️ Batch fetch failed for message {}: {} {}",
+                                messageId, error.getCode(), error.getMessage());
+                    }
+                });
+            }
+
+            StageTimer.time(meterRegistry, StageTimer.GMAIL_FETCH, () -> {
+                batch.execute();
+                return null;
+            }, "operation", operation);
+            // keep the caller's order, the batch callbacks may arrive in any order
+            for (String messageId : chunk) {
+                Message message = results.get(messageId);
+                if (message != null) {
+                    fetched.put(messageId, message);
+                }
+            }
+        }
+        return fetched;
+    }
+
+    /**
+     * Downloads an attachment with {@code users.messages.attachments.get} and writes the decoded bytes
+     * to {@code out}. The JSON response is read as a stream and its {@code data} field is decoded
+     * as it arrives, so neither the base64 text nor the content is ever held in memory as a whole.
+     *
+     * @return the number of bytes written
+     */
+    public long downloadAttachment(String messageId, String attachmentId, OutputStream out) throws IOException {
+        HttpResponse response = gmail.users().messages().attachments()
+                .get(gmailUserId, messageId, attachmentId)
+                .setFields("data")
+                .executeUnparsed();
+        try (InputStream data = AttachmentDataStream.decode(response.getContent())) {
+            return data.transferTo(out);
+        } finally {
+            response.disconnect();
+        }
+    }
+
+    @FunctionalInterface
+    private interface MessageRequestFactory {
+        Gmail.Users.Messages.Get create(String messageId) throws IOException;
     }
 
     public void reauthorize() throws Exception {
@@ -0,0 +1,102 @@
+package lt.dev.emailticketing.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Persists the Gmail {@code historyId} reached by the last successful inbox sync, together with the
+ * messages before it that still have to be processed, so incremental sync survives restarts without
+ * losing them. The file holds the history ID on its first line and one pending message ID per line after it.
+ */
+@Component
+public class HistoryCheckpointStore {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryCheckpointStore.class);
+
+    private final Path checkpointFile;
+
+    public HistoryCheckpointStore(@Value("${gmail.history.checkpoint-file:tokens/history_id}") String checkpointFile) {
+        this.checkpointFile = Paths.get(checkpointFile);
+    }
+
+    public Optional<BigInteger> load() {
+        List<String> lines = readLines();
+        if (lines.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new BigInteger(lines.get(0)));
+        } catch (NumberFormatException e) {
+            logger.warn("⚠️ Could not read history checkpoint {}: {}", checkpointFile, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Message IDs saved with the checkpoint that were listed but not processed yet.
+     */
+    public List<String> loadPendingRetries() {
+        List<String> lines = readLines();
+        return lines.size() > 1 ? List.copyOf(lines.subList(1, lines.size())) : List.of();
+    }
+
+    public void save(BigInteger historyId, Collection<String> pendingRetryIds) {
+        if (historyId == null) {
+            return;
+        }
+        StringBuilder content = new StringBuilder(historyId.toString());
+        for (String emailId : pendingRetryIds) {
+            content.append('\n').append(emailId);
+        }
+        try {
+            Path parent = checkpointFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            Files.writeString(tmp, content, StandardCharsets.UTF_8);
+            Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("❌ Failed to persist history checkpoint {}: {}", historyId, e.getMessage(), e);
+        }
+    }
+
+    public void clear() {
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            logger.warn("⚠️ Could not delete history checkpoint {}: {}", checkpointFile, e.getMessage());
+        }
+    }
+
+    private List<String> readLines() {
+        if (!Files.exists(checkpointFile)) {
+            return List.of();
+        }
+        try {
+            List<String> lines = new ArrayList<>();
+            for (String line : Files.readAllLines(checkpointFile, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    lines.add(line.trim());
+                }
+            }
+            return lines;
+        } catch (IOException e) {
+            logger.warn("⚠️ Could not read history checkpoint {}: {}", checkpointFile, e.getMessage());
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package lt.dev.emailticketing.client;
+
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.Message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Lazily walks the inbox listing page by page, following {@code nextPageToken}.
+ * <p>
+ * Only one page of message stubs is held at a time. The walk ends when the listing is exhausted
+ * or when a page contains nothing but already processed messages (we have caught up).
+ */
+public class InboxPageIterator implements Iterator<List<Message>> {
+
+    private final GmailClientService gmailClientService;
+    private final Predicate<String> alreadyProcessed;
+
+    private String pageToken;
+    private boolean started;
+    private boolean finished;
+    private List<Message> nextPage;
+
+    public InboxPageIterator(GmailClientService gmailClientService, Predicate<String> alreadyProcessed) {
+        this.gmailClientService = gmailClientService;
+        this.alreadyProcessed = alreadyProcessed;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPage != null) {
+            return true;
+        }
+        if (finished || (started && pageToken == null)) {
+            return false;
+        }
+
+        ListMessagesResponse response;
+        try {
+            response = gmailClientService.fetchInboxPage(pageToken);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to list inbox page", e);
+        }
+        started = true;
+        pageToken = response.getNextPageToken();
+
+        List<Message> messages = response.getMessages();
+        if (messages == null || messages.isEmpty()) {
+            finished = true;
+            return false;
+        }
+        if (messages.stream().map(Message::getId).allMatch(alreadyProcessed)) {
+            finished = true;
+            return false;
+        }
+
+        List<Message> page = new ArrayList<>(messages);
+        // the listing is newest first, process each page oldest first
+        Collections.reverse(page);
+        nextPage = page;
+        return true;
+    }
+
+    @Override
+    public List<Message> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<Message> page = nextPage;
+        nextPage = null;
+        return page;
+    }
+}
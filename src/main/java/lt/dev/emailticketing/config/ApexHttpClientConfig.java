@@ -0,0 +1,94 @@
+package lt.dev.emailticketing.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * HTTP transport shared by every APEX caller. Connections are pooled and kept alive per route,
+ * TLS sessions are resumed through one shared {@code SSLContext}, and every call has a connect,
+ * read and pool-lease timeout so a stalled APEX response cannot pin a worker forever.
+ * Pool usage is published as the {@code httpcomponents.httpclient.pool.*} gauges tagged {@code httpclient=apex}.
+ */
+@Configuration
+public class ApexHttpClientConfig {
+
+    @Value("${apex.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${apex.http.max-connections-per-route:20}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${apex.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMillis;
+
+    @Value("${apex.http.read-timeout-ms:30000}")
+    private long readTimeoutMillis;
+
+    @Value("${apex.http.pool-timeout-ms:5000}")
+    private long poolTimeoutMillis;
+
+    @Value("${apex.http.idle-evict-seconds:30}")
+    private long idleEvictSeconds;
+
+    @Value("${apex.http.connection-ttl-seconds:300}")
+    private long connectionTtlSeconds;
+
+    @Bean
+    public PoolingHttpClientConnectionManager apexConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setTlsSocketStrategy(new DefaultClientTlsStrategy(SSLContexts.createSystemDefault()))
+                // LIFO keeps reusing the warmest connections and lets the rest idle out
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMillis))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+                        .setTimeToLive(TimeValue.ofSeconds(connectionTtlSeconds))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public CloseableHttpClient apexHttpClient(PoolingHttpClientConnectionManager apexConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(apexConnectionManager)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMillis))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient apexHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(apexHttpClient));
+    }
+
+    // leased, available and pending connections plus the limits, bound by Spring Boot like any MeterBinder
+    @Bean
+    public MeterBinder apexConnectionPoolMetrics(PoolingHttpClientConnectionManager apexConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(apexConnectionManager, "apex");
+    }
+}
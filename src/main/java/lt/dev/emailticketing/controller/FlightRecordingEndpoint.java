@@ -0,0 +1,60 @@
+package lt.dev.emailticketing.controller;
+
+import lt.dev.emailticketing.jfr.FlightRecording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@code GET /actuator/flightrecording}: downloads the continuous {@link FlightRecording} as a
+ * {@code .jfr} file for JDK Mission Control or {@code jfr print}. 404 while recording is disabled.
+ * Each request gets a fresh dump, deleted once the response has been streamed.
+ */
+@Component
+@WebEndpoint(id = "flightrecording")
+public class FlightRecordingEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordingEndpoint.class);
+
+    private final FlightRecording flightRecording;
+
+    public FlightRecordingEndpoint(FlightRecording flightRecording) {
+        this.flightRecording = flightRecording;
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> flightRecording() {
+        if (!flightRecording.isRecording()) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        try {
+            return new WebEndpointResponse<>(new DeleteOnCloseResource(flightRecording.dump()));
+        } catch (IOException e) {
+            logger.error("❌ Failed to dump flight recording: {}", e.getMessage(), e);
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    static final class DeleteOnCloseResource extends FileSystemResource {
+
+        DeleteOnCloseResource(Path file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(getFile().toPath(), StandardOpenOption.DELETE_ON_CLOSE);
+        }
+    }
+}
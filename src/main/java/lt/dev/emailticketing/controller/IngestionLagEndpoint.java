@@ -0,0 +1,27 @@
+package lt.dev.emailticketing.controller;
+
+import lt.dev.emailticketing.internal.IngestionLagReport;
+import lt.dev.emailticketing.util.IngestionLagTracker;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/ingestionlag}: p50, p99 and max ingestion lag, SLO breaches and the slowest
+ * messages of the last window, see {@link IngestionLagTracker}.
+ */
+@Component
+@Endpoint(id = "ingestionlag")
+public class IngestionLagEndpoint {
+
+    private final IngestionLagTracker ingestionLagTracker;
+
+    public IngestionLagEndpoint(IngestionLagTracker ingestionLagTracker) {
+        this.ingestionLagTracker = ingestionLagTracker;
+    }
+
+    @ReadOperation
+    public IngestionLagReport ingestionLag() {
+        return ingestionLagTracker.report();
+    }
+}
@@ -0,0 +1,13 @@
+package lt.dev.emailticketing.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+@Data
+public class ApexAttachmentChunkResponseDto {
+    @JsonProperty("received")
+    private long received;
+
+    @JsonProperty("complete")
+    private boolean complete;
+}
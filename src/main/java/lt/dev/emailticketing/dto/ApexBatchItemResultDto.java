@@ -0,0 +1,54 @@
+package lt.dev.emailticketing.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ApexBatchItemResultDto {
+    public static final String CREATED = "created";
+    public static final String DUPLICATE = "duplicate";
+    public static final String ERROR = "error";
+    // refused for good: APEX will answer the same way however often the item is posted
+    public static final String REJECTED = "rejected";
+
+    @JsonProperty("email_id")
+    private String emailId;
+
+    @JsonProperty("status")
+    private String status; // created, duplicate or error; rejected is only set locally
+
+    @JsonProperty("ticket_id")
+    private Long ticketId;
+
+    @JsonProperty("error")
+    private String error;
+
+    public static ApexBatchItemResultDto failed(String emailId, String error) {
+        return new ApexBatchItemResultDto(emailId, ERROR, null, error);
+    }
+
+    public static ApexBatchItemResultDto rejected(String emailId, String error) {
+        return new ApexBatchItemResultDto(emailId, REJECTED, null, error);
+    }
+
+    /**
+     * True when APEX holds the item after this call, whether it was created now or earlier.
+     */
+    @JsonIgnore
+    public boolean isDelivered() {
+        return CREATED.equals(status) || DUPLICATE.equals(status);
+    }
+
+    /**
+     * True when posting the item again cannot succeed, e.g. APEX answered 400 for an unknown ticket.
+     */
+    @JsonIgnore
+    public boolean isRejected() {
+        return REJECTED.equals(status);
+    }
+}
@@ -0,0 +1,19 @@
+package lt.dev.emailticketing.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ApexBatchRequestDto {
+    @JsonProperty("tickets")
+    private List<EmailRequestDto> tickets;
+
+    @JsonProperty("messages")
+    private List<MessageReplyDto> messages;
+}
@@ -0,0 +1,15 @@
+package lt.dev.emailticketing.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ApexBatchResponseDto {
+    @JsonProperty("tickets")
+    private List<ApexBatchItemResultDto> tickets;
+
+    @JsonProperty("messages")
+    private List<ApexBatchItemResultDto> messages;
+}
@@ -2,8 +2,10 @@ package lt.dev.emailticketing.dto;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor
 public class EmailRequestDto {
 
     @JsonProperty("email_id")
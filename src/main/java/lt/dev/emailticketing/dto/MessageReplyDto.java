@@ -3,9 +3,11 @@ package lt.dev.emailticketing.dto;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
 @AllArgsConstructor
+@NoArgsConstructor
 public class MessageReplyDto {
     @JsonProperty("email_id")
     private String emailId;
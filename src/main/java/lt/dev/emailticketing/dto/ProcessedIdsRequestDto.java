@@ -0,0 +1,16 @@
+package lt.dev.emailticketing.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProcessedIdsRequestDto {
+    @JsonProperty("email_ids")
+    private List<String> emailIds;
+}
@@ -0,0 +1,15 @@
+package lt.dev.emailticketing.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ProcessedIdsResponseDto {
+    @JsonProperty("processed_emails")
+    private List<String> processedEmails;
+
+    @JsonProperty("processed_replies")
+    private List<String> processedReplies;
+}
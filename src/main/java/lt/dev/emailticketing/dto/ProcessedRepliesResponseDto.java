@@ -0,0 +1,16 @@
+package lt.dev.emailticketing.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class ProcessedRepliesResponseDto {
+    private List<String> items;
+
+    @JsonProperty("watermark")
+    private String watermark; // newest creation_date in processed_replies, pass back as ?since=
+
+    @JsonProperty("total_count")
+    private Long totalCount;
+}
@@ -0,0 +1,16 @@
+package lt.dev.emailticketing.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TicketThreadsRequestDto {
+    @JsonProperty("email_thread_ids")
+    private List<String> emailThreadIds;
+}
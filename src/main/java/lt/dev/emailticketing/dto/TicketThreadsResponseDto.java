@@ -0,0 +1,15 @@
+package lt.dev.emailticketing.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TicketThreadsResponseDto {
+    @JsonProperty("tickets")
+    private List<TicketByThreadDto> tickets;
+
+    @JsonProperty("has_more")
+    private boolean hasMore;
+}
@@ -0,0 +1,9 @@
+package lt.dev.emailticketing.internal;
+
+/**
+ * An attachment part of a fetched message. Large attachments only carry an {@code attachmentId}
+ * and are downloaded separately; small ones may come with their base64url {@code inlineData}.
+ */
+public record AttachmentInfo(String partId, String filename, String mimeType, long size,
+                             String attachmentId, String inlineData) {
+}
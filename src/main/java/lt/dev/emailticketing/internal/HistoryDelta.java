@@ -0,0 +1,9 @@
+package lt.dev.emailticketing.internal;
+
+import com.google.api.services.gmail.model.Message;
+
+import java.math.BigInteger;
+import java.util.List;
+
+public record HistoryDelta(List<Message> messages, BigInteger historyId) {
+}
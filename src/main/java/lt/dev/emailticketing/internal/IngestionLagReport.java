@@ -0,0 +1,15 @@
+package lt.dev.emailticketing.internal;
+
+import java.util.List;
+
+/**
+ * Ingestion lag as served by {@code /actuator/ingestionlag}, all durations in seconds. The percentiles
+ * and max cover roughly the last window; {@code delivered} and {@code breaches} count since startup and
+ * {@code slowest} lists the slowest messages of the last completed window, slowest first.
+ */
+public record IngestionLagReport(double sloSeconds, long windowSeconds, double p50Seconds, double p99Seconds,
+                                 double maxSeconds, long delivered, long breaches, List<SlowEmail> slowest) {
+
+    public record SlowEmail(String emailId, double lagSeconds) {
+    }
+}
@@ -0,0 +1,11 @@
+package lt.dev.emailticketing.internal;
+
+import java.util.Set;
+
+/**
+ * The subset of looked-up message IDs that APEX already holds, as tickets or as replies.
+ */
+public record ProcessedIds(Set<String> emails, Set<String> replies) {
+
+    public static final ProcessedIds NONE = new ProcessedIds(Set.of(), Set.of());
+}
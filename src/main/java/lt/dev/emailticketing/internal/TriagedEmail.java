@@ -0,0 +1,12 @@
+package lt.dev.emailticketing.internal;
+
+/**
+ * A message that passed header triage and still has to be posted to APEX.
+ * {@code ticketId} is set for replies to a known ticket and {@code null} for new tickets.
+ */
+public record TriagedEmail(String emailId, String threadId, Long ticketId) {
+
+    public boolean isReply() {
+        return ticketId != null;
+    }
+}
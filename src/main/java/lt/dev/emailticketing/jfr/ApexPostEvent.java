@@ -0,0 +1,15 @@
+package lt.dev.emailticketing.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.dev.emailticketing.ApexPost")
+@Label("APEX Post")
+@Description("Posting tickets or replies to APEX, until APEX answers")
+public final class ApexPostEvent extends PipelineEvent {
+
+    public ApexPostEvent() {
+        begin();
+    }
+}
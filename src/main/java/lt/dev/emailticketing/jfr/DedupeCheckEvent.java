@@ -0,0 +1,15 @@
+package lt.dev.emailticketing.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.dev.emailticketing.DedupeCheck")
+@Label("Dedupe Check")
+@Description("Asking APEX whether messages were already processed")
+public final class DedupeCheckEvent extends PipelineEvent {
+
+    public DedupeCheckEvent() {
+        begin();
+    }
+}
@@ -0,0 +1,15 @@
+package lt.dev.emailticketing.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.dev.emailticketing.Fetch")
+@Label("Gmail Fetch")
+@Description("Download of message metadata or full messages from Gmail")
+public final class FetchEvent extends PipelineEvent {
+
+    public FetchEvent() {
+        begin();
+    }
+}
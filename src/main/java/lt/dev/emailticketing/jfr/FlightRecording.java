@@ -0,0 +1,94 @@
+package lt.dev.emailticketing.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Continuous Flight Recorder recording kept in a ring buffer on disk, with the JDK's low-overhead
+ * {@code default} settings plus the pipeline events, so a slow scan can be examined afterwards
+ * without attaching anything. Off unless {@code jfr.recording.enabled=true}; dumped through
+ * {@code /actuator/flightrecording}.
+ */
+@Component
+public final class FlightRecording implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecording.class);
+
+    // events carrying environment variables, system properties, JVM arguments and OS command lines,
+    // which may hold the API key and should not leave the host through the endpoint
+    private static final String[] SENSITIVE_EVENTS = {
+            "jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation", "jdk.SystemProcess"
+    };
+
+    private final Recording recording;
+    private final Path dumpDirectory;
+
+    public FlightRecording(
+            @Value("${jfr.recording.enabled:false}") boolean enabled,
+            @Value("${jfr.recording.settings:default}") String settings,
+            @Value("${jfr.recording.max-age-minutes:30}") long maxAgeMinutes,
+            @Value("${jfr.recording.max-size-mb:100}") long maxSizeMb,
+            @Value("${jfr.recording.dump-dir:${java.io.tmpdir}}") String dumpDirectory
+    ) throws IOException, ParseException {
+        this.dumpDirectory = Paths.get(dumpDirectory);
+        if (!enabled) {
+            this.recording = null;
+            return;
+        }
+        recording = new Recording(Configuration.getConfiguration(settings));
+        recording.setName("emailticketing");
+        recording.setToDisk(true);
+        recording.setMaxAge(Duration.ofMinutes(maxAgeMinutes));
+        recording.setMaxSize(maxSizeMb * 1024 * 1024);
+        for (String event : SENSITIVE_EVENTS) {
+            recording.disable(event);
+        }
+        recording.start();
+        logger.info("🎥 Flight recording started, keeping the last {} min / {} MB", maxAgeMinutes, maxSizeMb);
+    }
+
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Writes what the recording currently holds to a new file in {@code jfr.recording.dump-dir}.
+     * Every dump gets its own file, so concurrent downloads do not interfere; the caller deletes
+     * it when done with it.
+     */
+    public Path dump() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("Flight recording is not enabled");
+        }
+        Files.createDirectories(dumpDirectory);
+        String timestamp = Instant.now().truncatedTo(ChronoUnit.SECONDS).toString().replace(':', '-');
+        Path file = Files.createTempFile(dumpDirectory, "emailticketing-" + timestamp + "-", ".jfr");
+        try {
+            recording.dump(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        logger.info("🎥 Dumped flight recording to {}", file);
+        return file;
+    }
+
+    @Override
+    public void close() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+}
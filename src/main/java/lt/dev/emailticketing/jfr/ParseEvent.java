@@ -0,0 +1,15 @@
+package lt.dev.emailticketing.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.dev.emailticketing.Parse")
+@Label("Parse")
+@Description("Building the ticket or reply DTO from a full message")
+public final class ParseEvent extends PipelineEvent {
+
+    public ParseEvent() {
+        begin();
+    }
+}
@@ -0,0 +1,85 @@
+package lt.dev.emailticketing.jfr;
+
+import com.google.api.services.gmail.model.Message;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+import java.util.Collection;
+
+/**
+ * Base of the pipeline's Flight Recorder events. Timing starts when the event is created (each
+ * event class calls {@code begin()} in its constructor) and ends in {@link #finish}, which fills in
+ * the fields only if the event is going to be recorded, so an event costs next to nothing while no
+ * recording is running.
+ * <p>
+ * {@code bytes} is Gmail's size estimate of the messages involved; bulk events (a page, a batch
+ * request) carry their message count instead of an email ID.
+ */
+@Category({"Email Ticketing", "Pipeline"})
+@StackTrace(false)
+public abstract class PipelineEvent extends Event {
+
+    // outcomes besides StageTimer.SUCCESS and StageTimer.ERROR
+    public static final String PROCESSED = "processed";
+    public static final String NEW = "new";
+    public static final String FOUND = "found";
+    public static final String NO_TICKET = "no_ticket";
+    public static final String FAILED = "failed";
+    public static final String PARTIAL = "partial";
+
+    // not private: Flight Recorder only records superclass fields that subclasses can see
+    @Label("Email ID")
+    protected String emailId;
+
+    @Label("Thread ID")
+    protected String threadId;
+
+    @Label("Messages")
+    protected int messages;
+
+    @Label("Bytes")
+    @Description("Gmail's size estimate of the messages involved")
+    @DataAmount
+    protected long bytes;
+
+    @Label("Outcome")
+    protected String outcome;
+
+    public final void finish(String emailId, String threadId, long bytes, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.emailId = emailId;
+            this.threadId = threadId;
+            this.messages = 1;
+            this.bytes = bytes;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+
+    public final void finishBulk(int messages, long bytes, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.messages = messages;
+            this.bytes = bytes;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+
+    public static long sizeOf(Message message) {
+        return message != null && message.getSizeEstimate() != null ? message.getSizeEstimate() : 0;
+    }
+
+    public static long sizeOf(Collection<Message> messages) {
+        long bytes = 0;
+        for (Message message : messages) {
+            bytes += sizeOf(message);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,15 @@
+package lt.dev.emailticketing.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.dev.emailticketing.Scan")
+@Label("Inbox Scan")
+@Description("One scheduled inbox scan, from listing new messages to the last post")
+public final class ScanEvent extends PipelineEvent {
+
+    public ScanEvent() {
+        begin();
+    }
+}
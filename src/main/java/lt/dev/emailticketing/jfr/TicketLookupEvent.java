@@ -0,0 +1,15 @@
+package lt.dev.emailticketing.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lt.dev.emailticketing.TicketLookup")
+@Label("Ticket Lookup")
+@Description("Resolving the ticket a reply's thread belongs to")
+public final class TicketLookupEvent extends PipelineEvent {
+
+    public TicketLookupEvent() {
+        begin();
+    }
+}
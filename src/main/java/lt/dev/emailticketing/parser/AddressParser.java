@@ -0,0 +1,320 @@
+package lt.dev.emailticketing.parser;
+
+import lt.dev.emailticketing.internal.SenderInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Single-pass scanner for the first mailbox of an RFC 5322 address header such as From. Handles
+ * <ul>
+ *     <li>{@code Name <addr>}, {@code "Quoted, Name" <addr>}, a bare {@code addr} and {@code addr (Name)};</li>
+ *     <li>quoted strings containing {@code <}, {@code >}, {@code ,} or escaped quotes;</li>
+ *     <li>nested comments, which are dropped or, lacking a display name, used as the name;</li>
+ *     <li>RFC 2047 encoded-words ({@code =?UTF-8?Q?...?=}, {@code =?ISO-8859-13?B?...?=}), also inside
+ *     quoted strings as many clients write them, with the whitespace between adjacent words removed
+ *     and multi-byte characters split over two words put back together;</li>
+ *     <li>a {@code <} without its closing {@code >}, taking the rest of the header as the address.</li>
+ * </ul>
+ * Anything else is read as leniently as possible: the scanner never throws on malformed input.
+ * Without a display name the local part of the address is used as the name.
+ */
+public final class AddressParser {
+
+    /**
+     * @return the sender, with an empty email if the header only holds a name, or {@code null} if it
+     * holds nothing usable
+     */
+    public SenderInfo parse(String header) {
+        if (header == null) {
+            return null;
+        }
+        StringBuilder phrase = new StringBuilder(header.length());
+        StringBuilder comment = null;
+        int addressStart = -1;
+        int addressEnd = -1;
+        boolean pendingSpace = false;
+
+        int n = header.length();
+        scan:
+        for (int i = 0; i < n; i++) {
+            char c = header.charAt(i);
+            switch (c) {
+                case '"' -> {
+                    int close = closingQuote(header, i);
+                    if (close < 0) {
+                        // an unbalanced quote is dropped rather than swallowing the address after it
+                        continue;
+                    }
+                    if (pendingSpace && !phrase.isEmpty()) {
+                        phrase.append(' ');
+                    }
+                    pendingSpace = false;
+                    for (i++; i < close; i++) {
+                        if (header.charAt(i) == '\\') {
+                            i++;
+                        }
+                        phrase.append(header.charAt(i));
+                    }
+                }
+                case '(' -> {
+                    int close = closingParenthesis(header, i);
+                    if (close < 0) {
+                        continue;
+                    }
+                    if (comment == null) {
+                        comment = new StringBuilder(close - i);
+                        for (int j = i + 1; j < close; j++) {
+                            if (header.charAt(j) == '\\') {
+                                j++;
+                            }
+                            comment.append(header.charAt(j));
+                        }
+                    }
+                    i = close;
+                    pendingSpace = true;
+                }
+                case '<' -> {
+                    addressStart = i + 1;
+                    int close = header.indexOf('>', addressStart);
+                    addressEnd = close < 0 ? n : close;
+                    break scan;
+                }
+                case ',' -> {
+                    // a list: only the first mailbox counts, unless nothing came before the comma
+                    if (!phrase.isEmpty()) {
+                        break scan;
+                    }
+                }
+                case ':' -> {
+                    // group syntax "Team: a@b, c@d;" - the group name is not the sender's name
+                    phrase.setLength(0);
+                    pendingSpace = false;
+                }
+                case ';' -> {
+                    if (!phrase.isEmpty()) {
+                        break scan;
+                    }
+                }
+                case ' ', '\t', '\r', '\n' -> pendingSpace = true;
+                default -> {
+                    if (pendingSpace && !phrase.isEmpty()) {
+                        phrase.append(' ');
+                    }
+                    pendingSpace = false;
+                    phrase.append(c);
+                }
+            }
+        }
+
+        String email;
+        String name;
+        if (addressStart >= 0) {
+            email = stripSpaces(header, addressStart, addressEnd);
+            name = decodeEncodedWords(phrase).strip();
+        } else if (indexOf(phrase, "@", 0) >= 0) {
+            // no angle brackets: the phrase is the address itself
+            email = stripSpaces(phrase, 0, phrase.length());
+            name = "";
+        } else {
+            // a name and no address at all
+            email = "";
+            name = decodeEncodedWords(phrase).strip();
+        }
+        if (name.isEmpty() && comment != null) {
+            name = decodeEncodedWords(comment).strip();
+        }
+        if (email.isEmpty()) {
+            return name.isEmpty() ? null : new SenderInfo(name, "");
+        }
+        if (name.isEmpty()) {
+            int at = email.indexOf('@');
+            name = at > 0 ? email.substring(0, at) : email;
+        }
+        return new SenderInfo(name, email);
+    }
+
+    /**
+     * Replaces RFC 2047 encoded-words with their text. Words that cannot be decoded are kept as they are.
+     */
+    static String decodeEncodedWords(CharSequence text) {
+        int first = indexOf(text, "=?", 0);
+        if (first < 0) {
+            return text.toString();
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        out.append(text, 0, first);
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        Charset pendingCharset = null;
+        int i = first;
+        int n = text.length();
+        while (i < n) {
+            EncodedWord word = i + 1 < n && text.charAt(i) == '=' && text.charAt(i + 1) == '?'
+                    ? EncodedWord.read(text, i)
+                    : null;
+            if (word == null) {
+                int next = indexOf(text, "=?", i + 1);
+                int end = next < 0 ? n : next;
+                if (pendingCharset != null && next >= 0 && isBlank(text, i, end) && EncodedWord.read(text, next) != null) {
+                    // whitespace between two encoded-words is not part of the text
+                    i = end;
+                    continue;
+                }
+                pendingCharset = flush(pending, pendingCharset, out);
+                out.append(text, i, end);
+                i = end;
+                continue;
+            }
+            if (pendingCharset != null && !pendingCharset.equals(word.charset)) {
+                pendingCharset = flush(pending, pendingCharset, out);
+            }
+            pending.writeBytes(word.bytes);
+            pendingCharset = word.charset;
+            i = word.end;
+        }
+        flush(pending, pendingCharset, out);
+        return out.toString();
+    }
+
+    private static Charset flush(ByteArrayOutputStream pending, Charset charset, StringBuilder out) {
+        if (charset != null) {
+            out.append(new String(pending.toByteArray(), charset));
+            pending.reset();
+        }
+        return null;
+    }
+
+    private record EncodedWord(Charset charset, byte[] bytes, int end) {
+
+        static EncodedWord read(CharSequence text, int start) {
+            int charsetEnd = indexOf(text, "?", start + 2);
+            if (charsetEnd < 0 || charsetEnd + 2 >= text.length() || text.charAt(charsetEnd + 2) != '?') {
+                return null;
+            }
+            int dataStart = charsetEnd + 3;
+            int dataEnd = indexOf(text, "?=", dataStart);
+            if (dataEnd < 0) {
+                return null;
+            }
+            Charset charset = charset(text.subSequence(start + 2, charsetEnd).toString());
+            if (charset == null) {
+                return null;
+            }
+            char encoding = Character.toUpperCase(text.charAt(charsetEnd + 1));
+            byte[] bytes = switch (encoding) {
+                case 'B' -> base64(text, dataStart, dataEnd);
+                case 'Q' -> quotedPrintable(text, dataStart, dataEnd);
+                default -> null;
+            };
+            return bytes == null ? null : new EncodedWord(charset, bytes, dataEnd + 2);
+        }
+
+        private static Charset charset(String name) {
+            // RFC 2231 allows a language suffix: =?UTF-8*lt?Q?...?=
+            int star = name.indexOf('*');
+            try {
+                return Charset.forName(star < 0 ? name : name.substring(0, star));
+            } catch (IllegalArgumentException e) {
+                return name.equalsIgnoreCase("unknown-8bit") ? StandardCharsets.ISO_8859_1 : null;
+            }
+        }
+
+        private static byte[] base64(CharSequence text, int start, int end) {
+            try {
+                return Base64.getMimeDecoder().decode(text.subSequence(start, end).toString());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static byte[] quotedPrintable(CharSequence text, int start, int end) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(end - start);
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c == '_') {
+                    bytes.write(' ');
+                } else if (c == '=' && i + 2 < end && hex(text, i + 1) >= 0 && hex(text, i + 2) >= 0) {
+                    bytes.write(hex(text, i + 1) << 4 | hex(text, i + 2));
+                    i += 2;
+                } else if (c > 0xff) {
+                    return null;
+                } else {
+                    bytes.write(c);
+                }
+            }
+            return bytes.toByteArray();
+        }
+
+        private static int hex(CharSequence text, int i) {
+            return Character.digit(text.charAt(i), 16);
+        }
+    }
+
+    private static int closingQuote(String text, int open) {
+        for (int i = open + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int closingParenthesis(String text, int open) {
+        int depth = 0;
+        for (int i = open; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String stripSpaces(CharSequence text, int start, int end) {
+        StringBuilder out = null;
+        for (int i = start; i < end; i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                if (out == null) {
+                    out = new StringBuilder(end - start).append(text, start, i);
+                }
+            } else if (out != null) {
+                out.append(text.charAt(i));
+            }
+        }
+        return out != null ? out.toString() : text.subSequence(start, end).toString();
+    }
+
+    private static boolean isBlank(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence text, String needle, int from) {
+        if (text instanceof String s) {
+            return s.indexOf(needle, from);
+        }
+        outer:
+        for (int i = from, last = text.length() - needle.length(); i <= last; i++) {
+            for (int j = 0; j < needle.length(); j++) {
+                if (text.charAt(i + j) != needle.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -1,54 +1,215 @@
 package lt.dev.emailticketing.parser;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.api.services.gmail.model.Message;
 import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import lt.dev.emailticketing.internal.AttachmentInfo;
 import lt.dev.emailticketing.internal.SenderInfo;
+import lt.dev.emailticketing.util.DecodedBodyBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 import static lt.dev.emailticketing.util.GmailUtils.*;
 
 @Service
 public class EmailParserService {
+    private static final Logger logger = LoggerFactory.getLogger(EmailParserService.class);
 
+    private static final int DEFAULT_MAX_BODY_BYTES = 256 * 1024;
+    private static final int INITIAL_BUFFER_BYTES = 8 * 1024;
+    // forwarded messages nest a few levels at most; this only guards against malformed payloads
+    private static final int MAX_PART_DEPTH = 32;
+    private static final SenderInfo UNKNOWN_SENDER = new SenderInfo("Unknown", "unknown@unknown.com");
+
+    @Value("${gmail.parser.max-body-bytes:262144}")
+    private int maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+
+    @Value("${gmail.parser.strip-quoted-history:true}")
+    private boolean stripQuotedHistory = true;
+
+    private final QuotedHistoryStripper quotedHistoryStripper = new QuotedHistoryStripper();
+    private final AddressParser addressParser = new AddressParser();
+    private final Cache<String, SenderInfo> senderCache;
+
+    public EmailParserService(@Value("${gmail.parser.sender-cache-size:10000}") int senderCacheSize) {
+        this.senderCache = Caffeine.newBuilder()
+                .maximumSize(senderCacheSize)
+                .build();
+    }
+
+    /**
+     * Name and address of the first mailbox in a From header, see {@link AddressParser}. Results are
+     * cached by raw header value, as most mail comes from customers who have written before.
+     */
     public SenderInfo extractSenderInfo(String fromHeader) {
-        String name = "Unknown";
-        String email = "unknown@unknown.com";
-
-        if (fromHeader != null && !fromHeader.isEmpty()) {
-            if (fromHeader.contains("<")) {
-                name = fromHeader.substring(0, fromHeader.indexOf("<")).trim();
-                email = fromHeader.substring(fromHeader.indexOf("<") + 1, fromHeader.indexOf(">")).trim();
-            } else {
-                email = fromHeader.trim();
-                name = email.contains("@") ? email.substring(0, email.indexOf("@")) : email;
-            }
+        if (fromHeader == null || fromHeader.isBlank()) {
+            return UNKNOWN_SENDER;
         }
+        return senderCache.get(fromHeader, this::parseSender);
+    }
 
-        return new SenderInfo(name, email);
+    private SenderInfo parseSender(String fromHeader) {
+        SenderInfo sender = addressParser.parse(fromHeader);
+        if (sender == null) {
+            logger.debug("No sender address in From header: {}", fromHeader);
+            return UNKNOWN_SENDER;
+        }
+        if (sender.email().isEmpty()) {
+            return new SenderInfo(sender.name(), UNKNOWN_SENDER.email());
+        }
+        return sender;
     }
 
+    /**
+     * Collects the plain-text body of a message: the payload's own data for single-part messages,
+     * otherwise every inline text/plain part at any depth (multipart/alternative, multipart/mixed,
+     * forwarded message/rfc822). Each part is decoded with its declared charset, and decoding stops
+     * once {@code gmail.parser.max-body-bytes} have been collected.
+     */
     public String extractBody(Message message) {
+        return normalizeParagraphs(extractRawBody(message));
+    }
+
+    /**
+     * Body of a reply in a known ticket thread. The earlier messages of the thread are already stored
+     * with the ticket, so the quoted history is stripped before the text is normalized, unless
+     * {@code gmail.parser.strip-quoted-history} is off.
+     */
+    public String extractReplyBody(Message message) {
+        StringBuilder raw = extractRawBody(message);
+        if (!stripQuotedHistory) {
+            return normalizeParagraphs(raw);
+        }
+        String stripped = quotedHistoryStripper.strip(raw.toString());
+        if (stripped.length() < raw.length()) {
+            logger.debug("Stripped quoted history from reply {} in thread {}: {} -> {} chars",
+                    message.getId(), message.getThreadId(), raw.length(), stripped.length());
+        }
+        return normalizeParagraphs(stripped);
+    }
+
+    private StringBuilder extractRawBody(Message message) {
         StringBuilder body = new StringBuilder();
 
         if (message.getPayload() != null) {
-            if (message.getPayload().getBody() != null && message.getPayload().getBody().getData() != null) {
-                body.append(decodeBase64(message.getPayload().getBody().getData()));
+            DecodedBodyBuffer buffer = new DecodedBodyBuffer(INITIAL_BUFFER_BYTES, maxBodyBytes);
+            appendText(message.getPayload(), true, 0, buffer, body);
+            if (buffer.isTruncated()) {
+                logger.debug("Body of message {} truncated to {} bytes", message.getId(), maxBodyBytes);
             }
+        }
 
-            List<MessagePart> parts = message.getPayload().getParts();
-            if (parts != null) {
-                for (MessagePart part : parts) {
-                    if ("text/plain".equals(part.getMimeType())
-                            && part.getBody() != null
-                            && part.getBody().getData() != null) {
-                        body.append(decodeBase64(part.getBody().getData()));
-                    }
-                }
-            }
+        return body;
+    }
+
+    /**
+     * Lists the attachment parts of a message at any depth, i.e. parts with a file name. Only their
+     * metadata is read here; the content is fetched and stored by the attachment service.
+     */
+    public List<AttachmentInfo> findAttachments(Message message) {
+        List<AttachmentInfo> attachments = new ArrayList<>();
+        if (message.getPayload() != null) {
+            collectAttachments(message.getPayload(), 0, attachments);
         }
+        return attachments;
+    }
 
-        return normalizeParagraphs(body.toString());
+    private void collectAttachments(MessagePart part, int depth, List<AttachmentInfo> attachments) {
+        if (part.getFilename() != null && !part.getFilename().isEmpty() && part.getBody() != null
+                && (part.getBody().getAttachmentId() != null || part.getBody().getData() != null)) {
+            Integer size = part.getBody().getSize();
+            attachments.add(new AttachmentInfo(part.getPartId(), part.getFilename(), part.getMimeType(),
+                    size == null ? -1 : size, part.getBody().getAttachmentId(), part.getBody().getData()));
+        }
+        if (part.getParts() == null || depth >= MAX_PART_DEPTH) {
+            return;
+        }
+        for (MessagePart child : part.getParts()) {
+            collectAttachments(child, depth + 1, attachments);
+        }
+    }
+
+    private void appendText(MessagePart part, boolean root, int depth, DecodedBodyBuffer buffer, StringBuilder body) {
+        if (buffer.isTruncated()) {
+            return;
+        }
+        if (root || isInlinePlainText(part)) {
+            appendData(part, buffer, body);
+        }
+
+        List<MessagePart> parts = part.getParts();
+        if (parts == null) {
+            return;
+        }
+        if (depth >= MAX_PART_DEPTH) {
+            logger.warn("⚠️ MIME structure deeper than {} levels, ignoring the rest", MAX_PART_DEPTH);
+            return;
+        }
+        for (MessagePart child : parts) {
+            appendText(child, false, depth + 1, buffer, body);
+        }
+    }
+
+    private void appendData(MessagePart part, DecodedBodyBuffer buffer, StringBuilder body) {
+        if (part.getBody() == null || part.getBody().getData() == null) {
+            return;
+        }
+        int start = buffer.length();
+        try {
+            buffer.appendBase64(part.getBody().getData());
+        } catch (IllegalArgumentException e) {
+            logger.error("Failed to decode part {} ({}): {}", part.getPartId(), part.getMimeType(), e.getMessage());
+            buffer.truncate(start);
+            return;
+        }
+        body.append(buffer.toString(start, charsetOf(part)));
+    }
+
+    private static boolean isInlinePlainText(MessagePart part) {
+        return part.getMimeType() != null
+                && part.getMimeType().equalsIgnoreCase("text/plain")
+                && (part.getFilename() == null || part.getFilename().isEmpty());
+    }
+
+    /**
+     * The charset parameter of the part's Content-Type header, UTF-8 if it is missing or unknown.
+     */
+    static Charset charsetOf(MessagePart part) {
+        if (part.getHeaders() == null) {
+            return StandardCharsets.UTF_8;
+        }
+        for (MessagePartHeader header : part.getHeaders()) {
+            if (!"Content-Type".equalsIgnoreCase(header.getName()) || header.getValue() == null) {
+                continue;
+            }
+            String value = header.getValue();
+            int at = value.toLowerCase(Locale.ROOT).indexOf("charset=");
+            if (at < 0) {
+                return StandardCharsets.UTF_8;
+            }
+            int start = at + "charset=".length();
+            int end = start;
+            while (end < value.length() && value.charAt(end) != ';' && !Character.isWhitespace(value.charAt(end))) {
+                end++;
+            }
+            String name = value.substring(start, end).replace("\"", "").replace("'", "");
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                logger.debug("Unknown charset '{}' in part {}, using UTF-8", name, part.getPartId());
+                return StandardCharsets.UTF_8;
+            }
+        }
+        return StandardCharsets.UTF_8;
     }
 }
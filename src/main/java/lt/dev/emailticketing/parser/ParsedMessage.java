@@ -0,0 +1,102 @@
+package lt.dev.emailticketing.parser;
+
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePartHeader;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Read-only view of a Gmail {@link Message} for the processing pipeline. The top-level headers are
+ * indexed in one pass, on first use, into a map keyed by lower-case name, so any number of header
+ * lookups cost one scan of the header list. The body is only decoded when it is asked for, i.e. when
+ * a DTO is built, and then at most once; messages dropped by the dedupe checks never decode it.
+ * <p>
+ * Not thread-safe; a view belongs to the task processing its message.
+ */
+public final class ParsedMessage {
+
+    private final Message message;
+    private final EmailParserService parser;
+    private Map<String, String> headers;
+    private String body;
+    private String replyBody;
+
+    public ParsedMessage(Message message, EmailParserService parser) {
+        this.message = message;
+        this.parser = parser;
+    }
+
+    public Message message() {
+        return message;
+    }
+
+    public String id() {
+        return message.getId();
+    }
+
+    public String threadId() {
+        return message.getThreadId();
+    }
+
+    public Long internalDate() {
+        return message.getInternalDate();
+    }
+
+    /**
+     * Value of the first header with this name, compared case-insensitively, or {@code null}.
+     */
+    public String header(String name) {
+        return headers().get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * True if the message answers an earlier one, i.e. has a non-empty References or In-Reply-To header.
+     */
+    public boolean isReply() {
+        String references = header("References");
+        String inReplyTo = header("In-Reply-To");
+        return (references != null && !references.isEmpty()) ||
+                (inReplyTo != null && !inReplyTo.isEmpty());
+    }
+
+    /**
+     * Full plain-text body, see {@link EmailParserService#extractBody}.
+     */
+    public String body() {
+        if (body == null) {
+            body = parser.extractBody(message);
+        }
+        return body;
+    }
+
+    /**
+     * Body without the quoted thread history, see {@link EmailParserService#extractReplyBody}.
+     */
+    public String replyBody() {
+        if (replyBody == null) {
+            replyBody = parser.extractReplyBody(message);
+        }
+        return replyBody;
+    }
+
+    private Map<String, String> headers() {
+        if (headers == null) {
+            List<MessagePartHeader> list = message.getPayload() != null ? message.getPayload().getHeaders() : null;
+            if (list == null) {
+                headers = Map.of();
+            } else {
+                headers = new HashMap<>(list.size() * 2);
+                for (MessagePartHeader header : list) {
+                    if (header.getName() != null) {
+                        // the first occurrence wins, as with repeated Received headers
+                        headers.putIfAbsent(header.getName().toLowerCase(Locale.ROOT), header.getValue());
+                    }
+                }
+            }
+        }
+        return headers;
+    }
+}
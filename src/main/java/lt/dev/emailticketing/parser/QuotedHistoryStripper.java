@@ -0,0 +1,161 @@
+package lt.dev.emailticketing.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the quoted conversation that mail clients append to replies, so a reply stored in APEX
+ * holds only what the sender wrote. Works on the raw decoded body, before lines are joined into
+ * paragraphs, and recognises:
+ * <ul>
+ *     <li>attribution lines ("On Mon, 3 Mar 2025, Ana &lt;ana@example.com&gt; wrote:") together with the
+ *     {@code >} quoted block that follows them, even when the client wrapped the attribution over two lines;</li>
+ *     <li>a block of {@code >} quoted lines at the end of the message;</li>
+ *     <li>Outlook's "-----Original Message-----" separator and everything after it;</li>
+ *     <li>Gmail's {@code gmail_quote} div or blockquote in HTML-only bodies and everything after it.</li>
+ * </ul>
+ * Quotes interleaved with answers are left alone. If nothing but quoted text would remain, the
+ * body is returned unchanged.
+ */
+public final class QuotedHistoryStripper {
+
+    private static final String[] ATTRIBUTION_SUFFIXES = {
+            "wrote:", "rašė:", "schrieb:", "a écrit :", "a écrit:", "escribió:", "написал:", "napisał:"
+    };
+    private static final String ORIGINAL_MESSAGE = "-----original message-----";
+    private static final String[] GMAIL_QUOTE_MARKERS = {
+            "<div class=\"gmail_quote", "<blockquote class=\"gmail_quote"
+    };
+
+    public String strip(String body) {
+        if (body == null || body.isEmpty()) {
+            return body;
+        }
+        String stripped = stripHtmlQuote(body);
+        List<int[]> lines = lines(stripped);
+
+        List<int[]> kept = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            int[] line = lines.get(i);
+            if (isOriginalMessageSeparator(stripped, line)) {
+                break;
+            }
+            int quoteStart = isAttribution(stripped, line) ? nextNonBlank(stripped, lines, i + 1) : -1;
+            if (quoteStart >= 0 && isQuoted(stripped, lines.get(quoteStart))) {
+                // a wrapped attribution starts on the previous line
+                if (!kept.isEmpty() && startsWithOn(stripped, kept.get(kept.size() - 1)) && !startsWithOn(stripped, line)) {
+                    kept.remove(kept.size() - 1);
+                }
+                int end = quoteStart;
+                while (end < lines.size() && (isQuoted(stripped, lines.get(end)) || isBlank(stripped, lines.get(end)))) {
+                    end++;
+                }
+                i = end - 1;
+                continue;
+            }
+            kept.add(line);
+        }
+
+        // trailing quoted block, with the blank lines around it
+        int end = kept.size();
+        while (end > 0 && (isQuoted(stripped, kept.get(end - 1)) || isBlank(stripped, kept.get(end - 1)))) {
+            end--;
+        }
+        kept = kept.subList(0, end);
+
+        if (kept.stream().allMatch(line -> isBlank(stripped, line))) {
+            return body;
+        }
+        StringBuilder out = new StringBuilder(stripped.length());
+        for (int[] line : kept) {
+            out.append(stripped, line[0], line[1]).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String stripHtmlQuote(String body) {
+        int cut = -1;
+        for (String marker : GMAIL_QUOTE_MARKERS) {
+            int at = body.indexOf(marker);
+            if (at >= 0 && (cut < 0 || at < cut)) {
+                cut = at;
+            }
+        }
+        return cut < 0 ? body : body.substring(0, cut);
+    }
+
+    /**
+     * Line ranges as {start, end} offsets, without the line terminator.
+     */
+    private static List<int[]> lines(String text) {
+        List<int[]> lines = new ArrayList<>();
+        int start = 0;
+        while (start <= text.length()) {
+            int newline = text.indexOf('\n', start);
+            int end = newline < 0 ? text.length() : newline;
+            int lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            if (newline >= 0 || start < text.length()) {
+                lines.add(new int[]{start, lineEnd});
+            }
+            if (newline < 0) {
+                break;
+            }
+            start = newline + 1;
+        }
+        return lines;
+    }
+
+    private static int nextNonBlank(String text, List<int[]> lines, int from) {
+        for (int i = from; i < lines.size(); i++) {
+            if (!isBlank(text, lines.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isQuoted(String text, int[] line) {
+        int i = firstNonSpace(text, line);
+        return i < line[1] && text.charAt(i) == '>';
+    }
+
+    private static boolean isBlank(String text, int[] line) {
+        return firstNonSpace(text, line) == line[1];
+    }
+
+    private static boolean startsWithOn(String text, int[] line) {
+        int i = firstNonSpace(text, line);
+        return text.startsWith("On ", i);
+    }
+
+    private static boolean isAttribution(String text, int[] line) {
+        int end = line[1];
+        while (end > line[0] && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end == line[0] || text.charAt(end - 1) != ':') {
+            return false;
+        }
+        for (String suffix : ATTRIBUTION_SUFFIXES) {
+            int start = end - suffix.length();
+            if (start >= line[0] && text.regionMatches(start, suffix, 0, suffix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOriginalMessageSeparator(String text, int[] line) {
+        int i = firstNonSpace(text, line);
+        return line[1] - i >= ORIGINAL_MESSAGE.length()
+                && text.regionMatches(true, i, ORIGINAL_MESSAGE, 0, ORIGINAL_MESSAGE.length());
+    }
+
+    private static int firstNonSpace(String text, int[] line) {
+        int i = line[0];
+        while (i < line[1] && text.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,125 @@
+package lt.dev.emailticketing.sender;
+
+import lt.dev.emailticketing.dto.ApexAttachmentChunkResponseDto;
+import lt.dev.emailticketing.internal.AttachmentInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Uploads spooled attachment files to APEX in fixed-size chunks. Only one chunk is in memory per
+ * upload. APEX answers every chunk with the number of bytes it has stored, and the upload continues
+ * from there, so a retried or lost chunk is simply resent and a failed upload resumes from scratch.
+ */
+@Service
+public class ApexAttachmentSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApexAttachmentSender.class);
+    // resyncs tolerated per upload before giving up
+    private static final int MAX_RESYNCS = 3;
+
+    private final RestTemplate restTemplate;
+
+    @Value("${apex.attachments.endpoint:${apex.root.endpoint}/attachments}")
+    private String apexAttachmentsEndpoint;
+
+    @Value("${apex.attachments.chunk-bytes:1048576}")
+    private int chunkBytes;
+
+    @Value("${apex.api.key}")
+    private String apexApiKey;
+
+    public ApexAttachmentSender(RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    /**
+     * Uploads {@code file} as the content of the given attachment of message {@code emailId}.
+     *
+     * @return true once APEX reports the attachment complete
+     */
+    public boolean upload(String emailId, AttachmentInfo attachment, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long total = channel.size();
+            if (total == 0) {
+                throw new IllegalArgumentException("Empty attachment file " + file);
+            }
+            byte[] chunk = new byte[(int) Math.min(chunkBytes, total)];
+            long offset = 0;
+            int resyncs = 0;
+            do {
+                int length = read(channel, offset, chunk);
+                byte[] body = length == chunk.length ? chunk : Arrays.copyOf(chunk, length);
+                ApexAttachmentChunkResponseDto response = postChunk(emailId, attachment, total, offset, body);
+                if (response.isComplete()) {
+                    logger.info("📎 Uploaded attachment {} ({} bytes) of {}", attachment.filename(), total, emailId);
+                    return true;
+                }
+                long expected = offset + length;
+                if (response.getReceived() != expected) {
+                    if (++resyncs > MAX_RESYNCS) {
+                        logger.warn("⚠️ Giving up on attachment {} of {}: APEX has {} of {} bytes",
+                                attachment.filename(), emailId, response.getReceived(), total);
+                        return false;
+                    }
+                    logger.debug("Attachment {} of {}: APEX has {} bytes, expected {}, continuing from there",
+                            attachment.filename(), emailId, response.getReceived(), expected);
+                }
+                offset = Math.min(response.getReceived(), total);
+            } while (offset < total);
+            logger.warn("⚠️ APEX did not mark attachment {} of {} complete after {} bytes",
+                    attachment.filename(), emailId, total);
+            return false;
+        }
+    }
+
+    private ApexAttachmentChunkResponseDto postChunk(String emailId, AttachmentInfo attachment, long total,
+                                                     long offset, byte[] body) {
+        // values go in as URI variables so that characters like '+' in file names are encoded too
+        URI uri = UriComponentsBuilder.fromUriString(apexAttachmentsEndpoint)
+                .queryParam("email_id", "{email_id}")
+                .queryParam("part_id", "{part_id}")
+                .queryParam("filename", "{filename}")
+                .queryParam("mime_type", "{mime_type}")
+                .queryParam("total_size", total)
+                .queryParam("offset", offset)
+                .encode()
+                .buildAndExpand(emailId, attachment.partId(), attachment.filename(),
+                        attachment.mimeType() == null ? "application/octet-stream" : attachment.mimeType())
+                .toUri();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.set("x-api-key", apexApiKey);
+
+        ResponseEntity<ApexAttachmentChunkResponseDto> response = restTemplate.exchange(
+                uri, HttpMethod.POST, new HttpEntity<>(body, headers), ApexAttachmentChunkResponseDto.class);
+        if (response.getBody() == null) {
+            throw new IllegalStateException("Empty response from APEX attachment upload");
+        }
+        return response.getBody();
+    }
+
+    private static int read(FileChannel channel, long offset, byte[] chunk) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+}
@@ -0,0 +1,399 @@
+package lt.dev.emailticketing.sender;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import lt.dev.emailticketing.dto.ApexBatchItemResultDto;
+import lt.dev.emailticketing.dto.EmailRequestDto;
+import lt.dev.emailticketing.dto.MessageReplyDto;
+import lt.dev.emailticketing.internal.AttachmentInfo;
+import lt.dev.emailticketing.service.AttachmentService;
+import lt.dev.emailticketing.util.IngestionLagTracker;
+import lt.dev.emailticketing.util.OutboxJournal;
+import lt.dev.emailticketing.util.ProcessedIdFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Durable outbox for APEX posts that failed. The parsed DTO is journaled on local disk and
+ * retried in the background with exponential backoff, so a message is read from Gmail only
+ * once no matter how long APEX is unavailable. Pending entries survive restarts.
+ * <p>
+ * Attachment uploads are journaled here too, once APEX has the ticket or reply they belong to; for
+ * a post that is still queued they wait until it is delivered, then upload in the background.
+ * <p>
+ * Entries APEX rejects for good, or that still fail after {@code apex.outbox.max-attempts}, are
+ * moved to {@code dead-letter.jsonl} in the outbox directory, one JSON object per line, for
+ * manual replay. Attempts are counted from the last restart.
+ */
+@Component
+public class ApexOutbox implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ApexOutbox.class);
+
+    private static final byte KIND_TICKET = 1;
+    private static final byte KIND_REPLY = 2;
+    private static final byte KIND_ATTACHMENTS = 3;
+    private static final int DRAIN_CHUNK_SIZE = 100;
+    private static final String DEAD_LETTER_FILE = "dead-letter.jsonl";
+
+    private final ApexSenderService apexSenderService;
+    private final AttachmentService attachmentService;
+    private final ProcessedIdFilter processedIdFilter;
+    private final IngestionLagTracker ingestionLagTracker;
+    private final ObjectMapper objectMapper;
+    private final OutboxJournal journal;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxAttempts;
+    private final Path deadLetterFile;
+
+    private final Map<Long, PendingDelivery> pending = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> seqByEmailId = new ConcurrentHashMap<>();
+    private final Map<Long, PendingUpload> uploads = new ConcurrentSkipListMap<>();
+
+    public ApexOutbox(
+            ApexSenderService apexSenderService,
+            AttachmentService attachmentService,
+            ProcessedIdFilter processedIdFilter,
+            IngestionLagTracker ingestionLagTracker,
+            ObjectMapper objectMapper,
+            @Value("${apex.outbox.enabled:true}") boolean enabled,
+            @Value("${apex.outbox.dir:tokens/outbox}") String directory,
+            @Value("${apex.outbox.segment-bytes:4194304}") int segmentBytes,
+            @Value("${apex.outbox.retry-initial-ms:15000}") long initialBackoffMillis,
+            @Value("${apex.outbox.retry-max-ms:900000}") long maxBackoffMillis,
+            @Value("${apex.outbox.max-attempts:20}") int maxAttempts
+    ) throws IOException {
+        this.apexSenderService = apexSenderService;
+        this.attachmentService = attachmentService;
+        this.processedIdFilter = processedIdFilter;
+        this.ingestionLagTracker = ingestionLagTracker;
+        this.objectMapper = objectMapper;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.deadLetterFile = Paths.get(directory).resolve(DEAD_LETTER_FILE);
+        this.journal = enabled ? new OutboxJournal(Paths.get(directory), segmentBytes) : null;
+        if (journal != null) {
+            restore();
+        }
+    }
+
+    /**
+     * Journals a DTO whose post to APEX failed. Returns false if the outbox is disabled or the
+     * journal could not be written, in which case the caller has to treat the message as unprocessed.
+     */
+    public boolean enqueue(Object dto) {
+        return enqueue(dto, List.of());
+    }
+
+    /**
+     * Like {@link #enqueue(Object)}, also journaling the message's attachments, which are uploaded
+     * once the post has gone through. Synchronized so the same message queued twice at once is
+     * journaled only once.
+     */
+    public synchronized boolean enqueue(Object dto, List<AttachmentInfo> attachments) {
+        if (journal == null) {
+            return false;
+        }
+        byte kind;
+        String emailId;
+        if (dto instanceof EmailRequestDto ticket) {
+            kind = KIND_TICKET;
+            emailId = ticket.getEmailId();
+        } else if (dto instanceof MessageReplyDto reply) {
+            kind = KIND_REPLY;
+            emailId = reply.getEmailId();
+        } else {
+            logger.error("Unsupported DTO type for outbox: {}", dto.getClass().getName());
+            return false;
+        }
+        if (seqByEmailId.containsKey(emailId)) {
+            return true;
+        }
+
+        try {
+            long seq = journal.append(kind, objectMapper.writeValueAsBytes(dto));
+            track(new PendingDelivery(seq, emailId, dto));
+            logger.info("📮 Queued {} in outbox for retry, {} pending", emailId, pending.size());
+        } catch (IOException e) {
+            logger.error("❌ Failed to journal {} in outbox: {}", emailId, e.getMessage(), e);
+            return false;
+        }
+        if (!attachments.isEmpty() && journalUpload(emailId, attachments) == null) {
+            // the post is queued, so the message will not be read again; its attachments are lost
+            logger.error("❌ Attachments of {} could not be queued and will not be uploaded", emailId);
+        }
+        return true;
+    }
+
+    /**
+     * Uploads the attachments of a message APEX has just accepted. They are journaled first, so an
+     * upload that fails or is cut short by a restart is retried like a queued post.
+     */
+    public void uploadAttachments(String emailId, List<AttachmentInfo> attachments) {
+        if (attachments.isEmpty()) {
+            return;
+        }
+        PendingUpload upload = journal != null ? journalUpload(emailId, attachments) : null;
+        if (upload == null) {
+            attachmentService.uploadAsync(emailId, attachments).thenAccept(uploaded -> {
+                if (!uploaded) {
+                    logger.warn("⚠️ Attachments of {} were not all uploaded and will not be retried", emailId);
+                }
+            });
+            return;
+        }
+        startUpload(upload);
+    }
+
+    public boolean isPending(String emailId) {
+        return seqByEmailId.containsKey(emailId);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    public int pendingUploads() {
+        return uploads.size();
+    }
+
+    /**
+     * Retries due entries oldest first, in bulk requests. Stops after a chunk APEX answered for none
+     * of the entries, since it is most likely still down. Then starts the attachment uploads that
+     * are due and whose post has gone through.
+     */
+    @Scheduled(fixedDelayString = "${apex.outbox.drain-interval-ms:15000}")
+    public void drain() {
+        if (pending.isEmpty() && uploads.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<PendingDelivery> due = pending.values().stream()
+                .filter(d -> d.nextAttemptAt <= now)
+                .toList();
+        int delivered = 0;
+        for (List<PendingDelivery> chunk : Lists.partition(due, DRAIN_CHUNK_SIZE)) {
+            Map<String, ApexBatchItemResultDto> results = apexSenderService.sendBatch(
+                    chunk.stream().map(d -> d.dto).toList());
+            int chunkSettled = 0;
+            for (PendingDelivery delivery : chunk) {
+                ApexBatchItemResultDto result = results.get(delivery.emailId);
+                delivery.attempts++;
+                if (result != null && result.isDelivered()) {
+                    complete(delivery);
+                    delivered++;
+                    chunkSettled++;
+                } else if (result != null && result.isRejected()) {
+                    park(delivery, result.getError(), now);
+                    chunkSettled++;
+                } else if (delivery.attempts >= maxAttempts) {
+                    park(delivery, result != null ? result.getError() : "No result from APEX", now);
+                } else {
+                    delivery.nextAttemptAt = now + backoff(delivery.attempts);
+                    logger.warn("⚠️ Outbox delivery of {} failed (attempt {}), next try in {} s",
+                            delivery.emailId, delivery.attempts, (delivery.nextAttemptAt - now) / 1000);
+                }
+            }
+            if (chunkSettled == 0) {
+                break;
+            }
+        }
+        if (delivered > 0) {
+            logger.info("📮 Delivered {} queued messages to APEX, {} still pending", delivered, pending.size());
+        }
+        for (PendingUpload upload : uploads.values()) {
+            if (!upload.inFlight && upload.nextAttemptAt <= now && !seqByEmailId.containsKey(upload.emailId)) {
+                startUpload(upload);
+            }
+        }
+    }
+
+    private void complete(PendingDelivery delivery) {
+        journal.acknowledge(delivery.seq);
+        pending.remove(delivery.seq);
+        seqByEmailId.remove(delivery.emailId);
+        // retried messages are the tail of the ingestion lag, so they count too
+        if (delivery.dto instanceof MessageReplyDto reply) {
+            processedIdFilter.recordReply(delivery.emailId);
+            ingestionLagTracker.recordDelivered(delivery.emailId, reply.getGmailDate());
+        } else {
+            processedIdFilter.recordEmail(delivery.emailId);
+            ingestionLagTracker.recordDelivered(delivery.emailId, ((EmailRequestDto) delivery.dto).getGmailDate());
+        }
+    }
+
+    /**
+     * Moves a delivery that will not go through to the dead-letter file, together with the
+     * attachments waiting on it. If that file cannot be written the delivery stays queued and is
+     * tried again after the maximum backoff.
+     */
+    private void park(PendingDelivery delivery, String reason, long now) {
+        if (!deadLetter(delivery.emailId, delivery.attempts, reason, "dto", delivery.dto)) {
+            delivery.nextAttemptAt = now + maxBackoffMillis;
+            return;
+        }
+        for (PendingUpload upload : uploads.values()) {
+            if (upload.emailId.equals(delivery.emailId)
+                    && deadLetter(upload.emailId, 0, reason, "attachments", upload.attachments)) {
+                journal.acknowledge(upload.seq);
+                uploads.remove(upload.seq);
+            }
+        }
+        journal.acknowledge(delivery.seq);
+        pending.remove(delivery.seq);
+        seqByEmailId.remove(delivery.emailId);
+        logger.error("❌ Gave up on {} after {} attempts ({}), moved to {}",
+                delivery.emailId, delivery.attempts, reason, deadLetterFile);
+    }
+
+    private boolean deadLetter(String emailId, int attempts, String reason, String kind, Object payload) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("emailId", emailId);
+        record.put("attempts", attempts);
+        record.put("reason", reason);
+        record.put(kind, payload);
+        try {
+            Files.writeString(deadLetterFile, objectMapper.writeValueAsString(record) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            return true;
+        } catch (IOException e) {
+            logger.error("❌ Could not dead-letter {}, keeping it queued: {}", emailId, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private PendingUpload journalUpload(String emailId, List<AttachmentInfo> attachments) {
+        try {
+            QueuedAttachments queued = new QueuedAttachments(emailId, attachments);
+            long seq = journal.append(KIND_ATTACHMENTS, objectMapper.writeValueAsBytes(queued));
+            PendingUpload upload = new PendingUpload(seq, queued);
+            uploads.put(seq, upload);
+            return upload;
+        } catch (IOException e) {
+            logger.error("❌ Failed to journal attachments of {} in outbox: {}", emailId, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private void startUpload(PendingUpload upload) {
+        upload.inFlight = true;
+        upload.attempts++;
+        attachmentService.uploadAsync(upload.emailId, upload.attachments).whenComplete((uploaded, e) -> {
+            long now = System.currentTimeMillis();
+            if (e == null && uploaded) {
+                journal.acknowledge(upload.seq);
+                uploads.remove(upload.seq);
+            } else if (upload.attempts >= maxAttempts) {
+                String reason = e != null ? e.getMessage() : "Attachment upload failed";
+                if (deadLetter(upload.emailId, upload.attempts, reason, "attachments", upload.attachments)) {
+                    journal.acknowledge(upload.seq);
+                    uploads.remove(upload.seq);
+                    logger.error("❌ Gave up on the attachments of {} after {} attempts, moved to {}",
+                            upload.emailId, upload.attempts, deadLetterFile);
+                } else {
+                    upload.nextAttemptAt = now + maxBackoffMillis;
+                }
+            } else {
+                upload.nextAttemptAt = now + backoff(upload.attempts);
+                logger.warn("⚠️ Attachment upload of {} failed (attempt {}), next try in {} s",
+                        upload.emailId, upload.attempts, (upload.nextAttemptAt - now) / 1000);
+            }
+            upload.inFlight = false;
+        });
+    }
+
+    @Override
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void restore() {
+        for (OutboxJournal.Entry entry : journal.pending()) {
+            if (entry.kind() == KIND_ATTACHMENTS) {
+                try {
+                    uploads.put(entry.seq(), new PendingUpload(entry.seq(),
+                            objectMapper.readValue(entry.payload(), QueuedAttachments.class)));
+                } catch (IOException e) {
+                    logger.error("❌ Dropping unreadable outbox record {}: {}", entry.seq(), e.getMessage());
+                    journal.acknowledge(entry.seq());
+                }
+                continue;
+            }
+            Class<?> type = entry.kind() == KIND_REPLY ? MessageReplyDto.class : EmailRequestDto.class;
+            try {
+                Object dto = objectMapper.readValue(entry.payload(), type);
+                String emailId = dto instanceof MessageReplyDto reply
+                        ? reply.getEmailId()
+                        : ((EmailRequestDto) dto).getEmailId();
+                track(new PendingDelivery(entry.seq(), emailId, dto));
+            } catch (IOException e) {
+                logger.error("❌ Dropping unreadable outbox record {}: {}", entry.seq(), e.getMessage());
+                journal.acknowledge(entry.seq());
+            }
+        }
+        if (!pending.isEmpty() || !uploads.isEmpty()) {
+            logger.info("📮 Restored {} undelivered messages and {} attachment uploads from outbox",
+                    pending.size(), uploads.size());
+        }
+    }
+
+    private void track(PendingDelivery delivery) {
+        pending.put(delivery.seq, delivery);
+        seqByEmailId.put(delivery.emailId, delivery.seq);
+    }
+
+    private long backoff(int attempts) {
+        long delay = initialBackoffMillis << Math.min(attempts - 1, 20);
+        return Math.min(delay, maxBackoffMillis);
+    }
+
+    record QueuedAttachments(String emailId, List<AttachmentInfo> attachments) {
+    }
+
+    private static final class PendingUpload {
+        final long seq;
+        final String emailId;
+        final List<AttachmentInfo> attachments;
+        volatile int attempts;
+        volatile long nextAttemptAt;
+        volatile boolean inFlight;
+
+        PendingUpload(long seq, QueuedAttachments queued) {
+            this.seq = seq;
+            this.emailId = queued.emailId();
+            this.attachments = queued.attachments();
+        }
+    }
+
+    private static final class PendingDelivery {
+        final long seq;
+        final String emailId;
+        final Object dto;
+        int attempts;
+        long nextAttemptAt;
+
+        PendingDelivery(long seq, String emailId, Object dto) {
+            this.seq = seq;
+            this.emailId = emailId;
+            this.dto = dto;
+        }
+    }
+}
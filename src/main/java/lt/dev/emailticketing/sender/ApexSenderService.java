@@ -1,9 +1,17 @@
 package lt.dev.emailticketing.sender;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
 import lombok.Setter;
+import lt.dev.emailticketing.dto.ApexBatchItemResultDto;
+import lt.dev.emailticketing.dto.ApexBatchRequestDto;
+import lt.dev.emailticketing.dto.ApexBatchResponseDto;
 import lt.dev.emailticketing.dto.EmailRequestDto;
 import lt.dev.emailticketing.dto.MessageReplyDto;
+import lt.dev.emailticketing.util.StageTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,13 +20,20 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.*;
+
 @Service
 public class ApexSenderService {
 
     private static final Logger logger = LoggerFactory.getLogger(ApexSenderService.class);
+    private static final String REJECTED = "rejected";
+    // answers about the payload itself; auth, routing and throttling errors (401, 403, 404, 408, 429)
+    // say nothing about the message and are worth retrying
+    private static final Set<Integer> PERMANENT_STATUSES = Set.of(400, 409, 413, 422);
 
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
 
     @Setter
     @Value("${apex.tickets.endpoint}")
@@ -28,25 +43,60 @@ public class ApexSenderService {
     @Value("${apex.messages.endpoint}")
     private String apexMessagesEndpoint;
 
+    @Setter
+    @Value("${apex.batch.endpoint:${apex.root.endpoint}/batch}")
+    private String apexBatchEndpoint;
+
+    @Getter
+    @Setter
+    @Value("${apex.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Setter
+    @Value("${apex.batch.max-items:100}")
+    private int maxBatchItems;
+
     @Value("${apex.api.key}")
     private String apexApiKey;
 
-    public ApexSenderService(RestTemplate restTemplate, ObjectMapper objectMapper) {
+    public ApexSenderService(RestTemplate restTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
         this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
     }
 
     public boolean sendToApex(Object dto) {
+        return send(dto).isDelivered();
+    }
+
+    /**
+     * Posts one ticket or reply and reports how it went: {@code created}, {@code duplicate} (a reply
+     * APEX already has), {@code rejected} (a 4xx APEX would repeat for the same payload) or {@code error}.
+     * Timed per DTO type with the same outcome, {@code created} being recorded as {@code success}.
+     */
+    public ApexBatchItemResultDto send(Object dto) {
         String endpoint;
+        String type;
         if (dto instanceof EmailRequestDto) {
             endpoint = apexTicketsEndpoint;
+            type = "ticket";
         } else if (dto instanceof MessageReplyDto) {
             endpoint = apexMessagesEndpoint;
+            type = "reply";
         } else {
             logger.error("Unsupported DTO type: {}", dto.getClass().getName());
-            return false;
+            return ApexBatchItemResultDto.rejected(emailIdOf(dto), "Unsupported DTO type");
         }
 
+        Timer.Sample sample = Timer.start(meterRegistry);
+        ApexBatchItemResultDto result = post(dto, endpoint);
+        String outcome = ApexBatchItemResultDto.CREATED.equals(result.getStatus()) ? StageTimer.SUCCESS : result.getStatus();
+        sample.stop(meterRegistry.timer(StageTimer.APEX_SEND, "type", type, StageTimer.OUTCOME, outcome));
+        return result;
+    }
+
+    private ApexBatchItemResultDto post(Object dto, String endpoint) {
+        String emailId = emailIdOf(dto);
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
@@ -60,21 +110,136 @@ public class ApexSenderService {
 
             if (response.getStatusCode().is2xxSuccessful()) {
                 logger.info("Successfully sent to APEX: {}", endpoint);
-                return true;
+                return new ApexBatchItemResultDto(emailId, ApexBatchItemResultDto.CREATED, null, null);
             } else {
                 logger.warn("APEX returned non-2xx status: {}", response.getStatusCode());
-                return false;
+                return ApexBatchItemResultDto.failed(emailId, "APEX returned " + response.getStatusCode());
             }
         } catch (HttpClientErrorException e) {
             if (e.getStatusCode() == HttpStatus.CONFLICT && dto instanceof MessageReplyDto) {
-                logger.info("Reply already processed by APEX: {}", ((MessageReplyDto) dto).getEmailId());
-                return true;
+                logger.info("Reply already processed by APEX: {}", emailId);
+                return new ApexBatchItemResultDto(emailId, ApexBatchItemResultDto.DUPLICATE, null, null);
             }
             logger.error("HTTP error sending to APEX: {}", e.getResponseBodyAsString(), e);
-            return false;
+            String error = e.getStatusCode() + " " + e.getResponseBodyAsString();
+            return isPermanent(e.getStatusCode())
+                    ? ApexBatchItemResultDto.rejected(emailId, error)
+                    : ApexBatchItemResultDto.failed(emailId, error);
         } catch (Exception e) {
             logger.error("Unexpected error sending to APEX: {}", e.getMessage(), e);
-            return false;
+            return ApexBatchItemResultDto.failed(emailId, e.getMessage());
+        }
+    }
+
+    private static boolean isPermanent(HttpStatusCode status) {
+        return PERMANENT_STATUSES.contains(status.value());
+    }
+
+    /**
+     * Posts tickets and replies in bulk, at most {@code apex.batch.max-items} per request, and returns
+     * one result per DTO keyed by email ID. Items in a request that failed as a whole are reported as
+     * errors, except that a request APEX refused with a permanent 4xx is posted again item by item, so
+     * only the offending items come back {@code rejected}. With {@code apex.batch.enabled=false} the
+     * DTOs are posted one by one instead.
+     */
+    public Map<String, ApexBatchItemResultDto> sendBatch(List<?> dtos) {
+        Map<String, ApexBatchItemResultDto> results = new LinkedHashMap<>();
+        if (!batchEnabled) {
+            return sendEach(dtos);
+        }
+        for (List<?> chunk : Lists.partition(dtos, Math.max(1, maxBatchItems))) {
+            results.putAll(postBatch(chunk));
+        }
+        return results;
+    }
+
+    private Map<String, ApexBatchItemResultDto> postBatch(List<?> dtos) {
+        List<EmailRequestDto> tickets = new ArrayList<>();
+        List<MessageReplyDto> messages = new ArrayList<>();
+        Map<String, ApexBatchItemResultDto> results = new LinkedHashMap<>();
+        for (Object dto : dtos) {
+            if (dto instanceof EmailRequestDto ticket) {
+                tickets.add(ticket);
+            } else if (dto instanceof MessageReplyDto reply) {
+                messages.add(reply);
+            } else {
+                logger.error("Unsupported DTO type: {}", dto.getClass().getName());
+            }
+        }
+
+        ApexBatchResponseDto response;
+        boolean rejectedAsWhole = false;
+        String outcome = StageTimer.SUCCESS;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.set("x-api-key", apexApiKey);
+            String json = objectMapper.writeValueAsString(new ApexBatchRequestDto(tickets, messages));
+            HttpEntity<String> entity = new HttpEntity<>(json, headers);
+
+            logger.debug("Sending batch to APEX: {} tickets, {} messages", tickets.size(), messages.size());
+            ResponseEntity<ApexBatchResponseDto> reply = restTemplate.exchange(
+                    apexBatchEndpoint, HttpMethod.POST, entity, ApexBatchResponseDto.class);
+            response = reply.getStatusCode().is2xxSuccessful() ? reply.getBody() : null;
+            if (response == null) {
+                logger.warn("APEX batch returned status {} without results", reply.getStatusCode());
+                outcome = REJECTED;
+            }
+        } catch (HttpClientErrorException e) {
+            logger.error("HTTP error sending batch to APEX: {}", e.getResponseBodyAsString(), e);
+            response = null;
+            rejectedAsWhole = isPermanent(e.getStatusCode());
+            outcome = REJECTED;
+        } catch (Exception e) {
+            logger.error("Unexpected error sending batch to APEX: {}", e.getMessage(), e);
+            response = null;
+            outcome = StageTimer.ERROR;
+        }
+        sample.stop(meterRegistry.timer(StageTimer.APEX_SEND, "type", "batch", StageTimer.OUTCOME, outcome));
+
+        if (rejectedAsWhole) {
+            logger.warn("APEX refused a batch of {}, posting its items one by one", dtos.size());
+            return sendEach(dtos);
+        }
+        if (response != null) {
+            Optional.ofNullable(response.getTickets()).orElse(List.of())
+                    .forEach(r -> results.put(r.getEmailId(), r));
+            Optional.ofNullable(response.getMessages()).orElse(List.of())
+                    .forEach(r -> results.put(r.getEmailId(), r));
+        }
+        int failed = 0;
+        for (Object dto : dtos) {
+            String emailId = emailIdOf(dto);
+            ApexBatchItemResultDto result = results.get(emailId);
+            if (result == null) {
+                result = ApexBatchItemResultDto.failed(emailId, "No result from APEX");
+                results.put(emailId, result);
+            }
+            if (!result.isDelivered()) {
+                failed++;
+                logger.warn("APEX rejected {}: {}", emailId, result.getError());
+            }
+        }
+        logger.info("Sent batch of {} to APEX, {} failed", dtos.size(), failed);
+        return results;
+    }
+
+    private Map<String, ApexBatchItemResultDto> sendEach(List<?> dtos) {
+        Map<String, ApexBatchItemResultDto> results = new LinkedHashMap<>();
+        for (Object dto : dtos) {
+            results.put(emailIdOf(dto), send(dto));
+        }
+        return results;
+    }
+
+    private static String emailIdOf(Object dto) {
+        if (dto instanceof EmailRequestDto ticket) {
+            return ticket.getEmailId();
+        }
+        if (dto instanceof MessageReplyDto reply) {
+            return reply.getEmailId();
         }
+        return String.valueOf(dto);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,190 @@
+package lt.dev.emailticketing.service;
+
+import com.google.api.services.gmail.model.Message;
+import lt.dev.emailticketing.client.GmailClientService;
+import lt.dev.emailticketing.internal.AttachmentInfo;
+import lt.dev.emailticketing.parser.EmailParserService;
+import lt.dev.emailticketing.sender.ApexAttachmentSender;
+import lt.dev.emailticketing.util.DecodedBodyBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies message attachments to APEX. Each attachment is streamed from Gmail into a spool file on
+ * local disk and uploaded from there in chunks, so heap use per attachment is one download buffer
+ * plus one upload chunk, whatever the attachment size. Uploads run in the background, at most
+ * {@code gmail.attachments.max-concurrent} at a time, and are keyed by email and part ID, so an
+ * upload that is retried does not store its attachments twice.
+ * <p>
+ * Uploads start once APEX has accepted the ticket or reply they belong to; the
+ * {@link lt.dev.emailticketing.sender.ApexOutbox} journals them until they are done.
+ */
+@Service
+public class AttachmentService implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentService.class);
+
+    private static final int SPOOL_BUFFER_BYTES = 64 * 1024;
+
+    private final GmailClientService gmailClientService;
+    private final EmailParserService emailParserService;
+    private final ApexAttachmentSender apexAttachmentSender;
+    private final boolean enabled;
+    private final Path spoolDirectory;
+    private final long maxAttachmentBytes;
+    private final ExecutorService executor;
+    private final Semaphore uploads;
+
+    public AttachmentService(
+            GmailClientService gmailClientService,
+            EmailParserService emailParserService,
+            ApexAttachmentSender apexAttachmentSender,
+            @Value("${gmail.attachments.enabled:false}") boolean enabled,
+            @Value("${gmail.attachments.spool-dir:${java.io.tmpdir}/emailticketing-attachments}") String spoolDirectory,
+            @Value("${gmail.attachments.max-bytes:52428800}") long maxAttachmentBytes,
+            @Value("${gmail.attachments.max-concurrent:4}") int maxConcurrent
+    ) {
+        this.gmailClientService = gmailClientService;
+        this.emailParserService = emailParserService;
+        this.apexAttachmentSender = apexAttachmentSender;
+        this.enabled = enabled;
+        this.spoolDirectory = Paths.get(spoolDirectory);
+        this.maxAttachmentBytes = maxAttachmentBytes;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("attachment-", 0).factory());
+        this.uploads = new Semaphore(maxConcurrent);
+        if (enabled) {
+            deleteLeftoverSpoolFiles();
+        }
+    }
+
+    /**
+     * Attachments of a fully fetched message that are to be uploaded; empty when uploads are disabled.
+     * Empty attachments and those over {@code gmail.attachments.max-bytes} are left out.
+     */
+    public List<AttachmentInfo> findAttachments(Message message) {
+        if (!enabled) {
+            return List.of();
+        }
+        return emailParserService.findAttachments(message).stream()
+                .filter(attachment -> isUploadable(message.getId(), attachment))
+                .toList();
+    }
+
+    /**
+     * Uploads the attachments in the background. The future completes with {@code true} once all of
+     * them are stored in APEX, or {@code false} if any failed and the upload should be retried.
+     */
+    public CompletableFuture<Boolean> uploadAsync(String emailId, List<AttachmentInfo> attachments) {
+        List<CompletableFuture<Boolean>> results = attachments.stream()
+                .map(attachment -> CompletableFuture.supplyAsync(() -> {
+                    uploads.acquireUninterruptibly();
+                    try {
+                        return ingest(emailId, attachment);
+                    } finally {
+                        uploads.release();
+                    }
+                }, executor))
+                .toList();
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> results.stream().allMatch(CompletableFuture::join));
+    }
+
+    /**
+     * Spools one attachment to disk and uploads it. Failures are logged; the ticket or reply itself
+     * is delivered independently of its attachments.
+     */
+    boolean ingest(String emailId, AttachmentInfo attachment) {
+        if (!isUploadable(emailId, attachment)) {
+            return false;
+        }
+        Path file = null;
+        try {
+            Files.createDirectories(spoolDirectory);
+            file = Files.createTempFile(spoolDirectory, emailId + "-", ".part");
+            long written = spool(emailId, attachment, file);
+            if (written == 0) {
+                return false;
+            }
+            return apexAttachmentSender.upload(emailId, attachment, file);
+        } catch (Exception e) {
+            logger.error("❌ Failed to ingest attachment {} of {}: {}", attachment.filename(), emailId, e.getMessage(), e);
+            return false;
+        } finally {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.warn("⚠️ Could not delete spool file {}: {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private boolean isUploadable(String emailId, AttachmentInfo attachment) {
+        if (attachment.size() == 0) {
+            return false;
+        }
+        if (attachment.size() > maxAttachmentBytes) {
+            logger.warn("⚠️ Skipping attachment {} of {}: {} bytes exceeds the {} byte limit",
+                    attachment.filename(), emailId, attachment.size(), maxAttachmentBytes);
+            return false;
+        }
+        return true;
+    }
+
+    private long spool(String emailId, AttachmentInfo attachment, Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), SPOOL_BUFFER_BYTES)) {
+            if (attachment.attachmentId() != null) {
+                return gmailClientService.downloadAttachment(emailId, attachment.attachmentId(), out);
+            }
+            // small attachments come inline with the message and are already in memory
+            DecodedBodyBuffer buffer = new DecodedBodyBuffer(attachment.inlineData().length() / 4 * 3 + 3, Integer.MAX_VALUE);
+            buffer.appendBase64(attachment.inlineData());
+            buffer.writeTo(out);
+            return buffer.length();
+        }
+    }
+
+    // spool files of uploads cut short by a restart; the outbox still holds those uploads and retries them
+    private void deleteLeftoverSpoolFiles() {
+        if (!Files.isDirectory(spoolDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(spoolDirectory, "*.part")) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        } catch (IOException e) {
+            logger.warn("⚠️ Could not clean attachment spool directory {}: {}", spoolDirectory, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("⚠️ Attachment uploads still running at shutdown, interrupting");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,23 +1,39 @@
 package lt.dev.emailticketing.service;
 
 import com.google.api.services.gmail.model.Message;
-import com.google.api.services.gmail.model.MessagePartHeader;
+import io.micrometer.core.instrument.MeterRegistry;
+import lt.dev.emailticketing.client.ApexAsyncClient;
 import lt.dev.emailticketing.client.GmailClientService;
 import lt.dev.emailticketing.dto.EmailRequestDto;
 import lt.dev.emailticketing.dto.MessageReplyDto;
+import lt.dev.emailticketing.internal.ProcessedIds;
 import lt.dev.emailticketing.internal.SenderInfo;
+import lt.dev.emailticketing.internal.TriagedEmail;
+import lt.dev.emailticketing.jfr.ApexPostEvent;
+import lt.dev.emailticketing.jfr.DedupeCheckEvent;
+import lt.dev.emailticketing.jfr.FetchEvent;
+import lt.dev.emailticketing.jfr.ParseEvent;
+import lt.dev.emailticketing.jfr.PipelineEvent;
+import lt.dev.emailticketing.jfr.TicketLookupEvent;
 import lt.dev.emailticketing.parser.EmailParserService;
+import lt.dev.emailticketing.parser.ParsedMessage;
+import lt.dev.emailticketing.sender.ApexOutbox;
 import lt.dev.emailticketing.sender.ApexSenderService;
+import lt.dev.emailticketing.util.IngestionLagTracker;
+import lt.dev.emailticketing.util.ProcessedIdFilter;
+import lt.dev.emailticketing.util.StageTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 @Service
 public class EmailProcessingService {
@@ -27,175 +43,427 @@ public class EmailProcessingService {
     private final GmailClientService gmailClientService;
     private final EmailParserService emailParserService;
     private final ApexSenderService apexSenderService;
+    private final ApexOutbox apexOutbox;
     private final TicketService ticketService;
-    private final RestTemplate restTemplate;
-
-    @Value("${apex.api.key}")
-    private String apexApiKey;
-
-    @Value("${apex.processed_replies.endpoint}")
-    private String processedRepliesEndpoint;
+    private final ProcessedIdFilter processedIdFilter;
+    private final ProcessedCheckService processedCheckService;
+    private final ApexAsyncClient apexAsyncClient;
+    private final AttachmentService attachmentService;
+    private final MeterRegistry meterRegistry;
+    private final IngestionLagTracker ingestionLagTracker;
 
     public EmailProcessingService(
             GmailClientService gmailClientService,
             EmailParserService emailParserService,
             ApexSenderService apexSenderService,
+            ApexOutbox apexOutbox,
             TicketService ticketService,
-            RestTemplate restTemplate
+            ProcessedIdFilter processedIdFilter,
+            ProcessedCheckService processedCheckService,
+            ApexAsyncClient apexAsyncClient,
+            AttachmentService attachmentService,
+            MeterRegistry meterRegistry,
+            IngestionLagTracker ingestionLagTracker
     ) {
         this.gmailClientService = gmailClientService;
         this.emailParserService = emailParserService;
         this.apexSenderService = apexSenderService;
+        this.apexOutbox = apexOutbox;
         this.ticketService = ticketService;
-        this.restTemplate = restTemplate;
+        this.processedIdFilter = processedIdFilter;
+        this.processedCheckService = processedCheckService;
+        this.apexAsyncClient = apexAsyncClient;
+        this.attachmentService = attachmentService;
+        this.meterRegistry = meterRegistry;
+        this.ingestionLagTracker = ingestionLagTracker;
     }
 
     public void processEmail(String emailId, Set<String> processedEmailIds) {
+        if (processedEmailIds.contains(emailId)) {
+            logger.debug("Email {} already processed locally, skipping", emailId);
+            return;
+        }
+        if (apexOutbox.isPending(emailId)) {
+            logger.debug("Email {} is waiting in the outbox, skipping", emailId);
+            return;
+        }
+
+        Message fullMsg;
+        FetchEvent fetch = new FetchEvent();
+        try {
+            fullMsg = gmailClientService.fetchFullMessage(emailId);
+        } catch (Exception e) {
+            fetch.finish(emailId, null, 0, StageTimer.ERROR);
+            logger.error("Error fetching email ID {}: {}", emailId, e.getMessage(), e);
+            return;
+        }
+        fetch.finish(emailId, fullMsg.getThreadId(), PipelineEvent.sizeOf(fullMsg), StageTimer.SUCCESS);
+        processEmail(fullMsg, processedEmailIds);
+    }
+
+    /**
+     * Processes a message that has already been downloaded, e.g. as part of a batch fetch.
+     */
+    public void processEmail(Message fullMsg, Set<String> processedEmailIds) {
+        processEmailAsync(fullMsg, processedEmailIds).join();
+    }
+
+    /**
+     * Dedupe check, ticket lookup and post chained on {@link ApexAsyncClient} futures, so no thread
+     * is held while APEX answers. The returned future never completes exceptionally.
+     */
+    public CompletableFuture<Void> processEmailAsync(Message fullMsg, Set<String> processedEmailIds) {
+        String emailId = fullMsg.getId();
+        if (processedEmailIds.contains(emailId) || apexOutbox.isPending(emailId)) {
+            logger.debug("Email {} already processed locally, skipping", emailId);
+            return CompletableFuture.completedFuture(null);
+        }
+        ParsedMessage parsed = parse(fullMsg);
+        String emailThreadId = parsed.threadId();
+        boolean isReply = parsed.isReply();
+
+        CompletableFuture<Boolean> alreadyProcessed;
+        if (isReply) {
+            alreadyProcessed = processedIdFilter.mightContainReply(emailId)
+                    ? recorded(new DedupeCheckEvent(), parsed, apexAsyncClient.isReplyProcessed(emailId),
+                            EmailProcessingService::dedupeOutcome)
+                    : CompletableFuture.completedFuture(false);
+        } else {
+            alreadyProcessed = processedIdFilter.mightContainEmail(emailId)
+                    ? recorded(new DedupeCheckEvent(), parsed, apexAsyncClient.isEmailProcessed(emailId),
+                            EmailProcessingService::dedupeOutcome)
+                    : CompletableFuture.completedFuture(false);
+        }
+
+        return alreadyProcessed
+                .thenCompose(processed -> {
+                    if (processed) {
+                        logger.debug("Email {} already processed in database, skipping", emailId);
+                        processedEmailIds.add(emailId);
+                        return CompletableFuture.completedFuture(Optional.<TriagedEmail>empty());
+                    }
+                    if (!isReply) {
+                        return CompletableFuture.completedFuture(Optional.of(new TriagedEmail(emailId, emailThreadId, null)));
+                    }
+                    return recorded(new TicketLookupEvent(), parsed, apexAsyncClient.getTicketIdByThreadId(emailThreadId),
+                            EmailProcessingService::ticketOutcome).thenApply(ticketId -> {
+                        if (ticketId == null) {
+                            logger.warn("No ticket found for thread {}", emailThreadId);
+                            return Optional.<TriagedEmail>empty();
+                        }
+                        return Optional.of(new TriagedEmail(emailId, emailThreadId, ticketId));
+                    });
+                })
+                .thenCompose(triaged -> {
+                    if (triaged.isEmpty()) {
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    Object dto = buildDto(triaged.get(), parsed);
+                    return recorded(new ApexPostEvent(), parsed, apexAsyncClient.sendToApex(dto),
+                            EmailProcessingService::postOutcome)
+                            .thenAccept(success -> recordDelivery(dto, fullMsg, success, processedEmailIds));
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    logger.error("Error processing email ID {}: {}", emailId, cause.getMessage(), cause);
+                    return null;
+                });
+    }
+
+    /**
+     * Decides from headers alone whether a message still has to be posted to APEX, so the full
+     * payload is only downloaded for those. Works on both metadata-only and full messages.
+     */
+    public Optional<TriagedEmail> triage(Message message, Set<String> processedEmailIds) {
+        String emailId = message.getId();
         try {
             if (processedEmailIds.contains(emailId)) {
                 logger.debug("Email {} already processed locally, skipping", emailId);
-                return;
+                return Optional.empty();
+            }
+            if (apexOutbox.isPending(emailId)) {
+                logger.debug("Email {} is waiting in the outbox, skipping", emailId);
+                return Optional.empty();
             }
 
-            Message fullMsg = gmailClientService.fetchFullMessage(emailId);
-            String fromHeader = getHeaderValue(fullMsg, "From");
-            String subject = getHeaderValue(fullMsg, "Subject");
-            String messageId = getHeaderValue(fullMsg, "Message-ID");
-            String references = getHeaderValue(fullMsg, "References");
-            String inReplyTo = getHeaderValue(fullMsg, "In-Reply-To");
-            SenderInfo senderInfo = emailParserService.extractSenderInfo(fromHeader);
-            String body = emailParserService.extractBody(fullMsg);
-            String gmailDate = formatDate(fullMsg.getInternalDate());
-            String emailThreadId = fullMsg.getThreadId();
-
-            boolean isReply = (references != null && !references.isEmpty()) ||
-                    (inReplyTo != null && !inReplyTo.isEmpty());
+            String emailThreadId = message.getThreadId();
+            ParsedMessage parsed = parse(message);
 
-            if (isReply) {
-                if (isReplyProcessed(emailId)) {
+            if (parsed.isReply()) {
+                if (processedIdFilter.mightContainReply(emailId) && checkProcessed(parsed, true)) {
                     logger.debug("Reply email {} already processed in database, skipping", emailId);
                     processedEmailIds.add(emailId);
-                    return;
+                    return Optional.empty();
                 }
 
-                Long ticketId = ticketService.getTicketIdByThreadId(emailThreadId);
-                if (ticketId != null) {
-                    MessageReplyDto replyDto = new MessageReplyDto(
-                            emailId, senderInfo.email(), subject, body, gmailDate,
-                            messageId, emailThreadId, ticketId.toString());
-                    boolean success = apexSenderService.sendToApex(replyDto);
-                    if (success) {
-                        processedEmailIds.add(emailId);
-                        logger.info("✅ Reply processed ({}): {}", emailId);
-                    } else {
-                        logger.warn("⚠️ Failed to process reply: {}", emailId);
-                    }
-                } else {
+                Long ticketId = lookUpTicket(parsed);
+                if (ticketId == null) {
                     logger.warn("No ticket found for thread {}", emailThreadId);
+                    return Optional.empty();
                 }
-            } else {
-                if (isEmailProcessed(emailId)) {
-                    logger.debug("Initial email {} already processed in database, skipping", emailId);
-                    processedEmailIds.add(emailId);
-                    return;
-                }
+                return Optional.of(new TriagedEmail(emailId, emailThreadId, ticketId));
+            }
 
-                EmailRequestDto dto = new EmailRequestDto(
-                        emailId, senderInfo.name(), senderInfo.email(), subject,
-                        body, gmailDate, messageId, emailThreadId);
-                boolean success = apexSenderService.sendToApex(dto);
-                if (success) {
-                    processedEmailIds.add(emailId);
-                    logger.info("✅ New ticket processed ({}): {}", emailId);
-                } else {
-                    logger.warn("⚠️ Failed to process new ticket: {}", emailId);
-                }
+            if (processedIdFilter.mightContainEmail(emailId) && checkProcessed(parsed, false)) {
+                logger.debug("Initial email {} already processed in database, skipping", emailId);
+                processedEmailIds.add(emailId);
+                return Optional.empty();
             }
+            return Optional.of(new TriagedEmail(emailId, emailThreadId, null));
         } catch (Exception e) {
             logger.error("Error processing email ID {}: {}", emailId, e.getMessage(), e);
+            return Optional.empty();
         }
     }
 
-    private boolean isEmailProcessed(String emailId) {
+    /**
+     * Batch variant of {@link #triage}: the APEX dedupe check for all messages is a single bulk
+     * lookup, and the tickets of all reply threads are resolved with one bulk request. Falls back to
+     * per-message triage if the processed lookup fails, and to concurrent per-thread ticket lookups
+     * if the bulk ticket lookup fails.
+     */
+    public List<TriagedEmail> triageBatch(List<Message> messages, Set<String> processedEmailIds) {
+        List<ParsedMessage> candidates = new ArrayList<>();
+        List<String> toCheck = new ArrayList<>();
+        for (Message message : messages) {
+            String emailId = message.getId();
+            if (processedEmailIds.contains(emailId) || apexOutbox.isPending(emailId)) {
+                continue;
+            }
+            ParsedMessage parsed = parse(message);
+            candidates.add(parsed);
+            boolean maybeProcessed = parsed.isReply()
+                    ? processedIdFilter.mightContainReply(emailId)
+                    : processedIdFilter.mightContainEmail(emailId);
+            if (maybeProcessed) {
+                toCheck.add(emailId);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        ProcessedIds processed;
+        DedupeCheckEvent dedupe = new DedupeCheckEvent();
         try {
-            String endpoint = "https://apex.oracle.com/pls/apex/request_system/tickets_api/processed_emails/" + emailId;
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("x-api-key", apexApiKey);
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-            restTemplate.getForEntity(endpoint, String.class);
-            return true;
-        } catch (HttpClientErrorException e) {
-            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
-                return false;
+            if (toCheck.isEmpty()) {
+                processed = ProcessedIds.NONE;
+            } else {
+                processed = processedCheckService.findProcessed(toCheck);
+                dedupe.finishBulk(toCheck.size(), 0, StageTimer.SUCCESS);
+            }
+        } catch (Exception e) {
+            dedupe.finishBulk(toCheck.size(), 0, StageTimer.ERROR);
+            logger.warn("⚠️ Bulk processed lookup failed, checking {} messages one by one: {}",
+                    candidates.size(), e.getMessage());
+            return candidates.stream()
+                    .map(parsed -> triage(parsed.message(), processedEmailIds))
+                    .flatMap(Optional::stream)
+                    .toList();
+        }
+
+        List<ParsedMessage> unprocessed = new ArrayList<>(candidates.size());
+        List<String> replyThreadIds = new ArrayList<>();
+        for (ParsedMessage message : candidates) {
+            String emailId = message.id();
+            boolean isReply = message.isReply();
+            if (isReply ? processed.replies().contains(emailId) : processed.emails().contains(emailId)) {
+                logger.debug("Email {} already processed in database, skipping", emailId);
+                processedEmailIds.add(emailId);
+                continue;
             }
-            logger.error("Error checking processed email {}: {}", emailId, e.getMessage());
-            return true;
+            unprocessed.add(message);
+            if (isReply) {
+                replyThreadIds.add(message.threadId());
+            }
+        }
+
+        Map<String, Long> ticketIds = null;
+        if (!replyThreadIds.isEmpty()) {
+            TicketLookupEvent lookup = new TicketLookupEvent();
+            try {
+                ticketIds = ticketService.resolveTicketIds(replyThreadIds);
+                lookup.finishBulk(replyThreadIds.size(), 0, StageTimer.SUCCESS);
+            } catch (Exception e) {
+                lookup.finishBulk(replyThreadIds.size(), 0, StageTimer.ERROR);
+                logger.warn("⚠️ Bulk ticket lookup failed, resolving {} threads one by one: {}",
+                        replyThreadIds.size(), e.getMessage());
+            }
+        }
+
+        List<CompletableFuture<Optional<TriagedEmail>>> results = new ArrayList<>(unprocessed.size());
+        for (ParsedMessage message : unprocessed) {
+            String emailId = message.id();
+            String emailThreadId = message.threadId();
+            if (!message.isReply()) {
+                results.add(CompletableFuture.completedFuture(Optional.of(new TriagedEmail(emailId, emailThreadId, null))));
+                continue;
+            }
+            CompletableFuture<Long> ticketId = ticketIds != null
+                    ? CompletableFuture.completedFuture(ticketIds.get(emailThreadId))
+                    : recorded(new TicketLookupEvent(), message, apexAsyncClient.getTicketIdByThreadId(emailThreadId),
+                            EmailProcessingService::ticketOutcome);
+            results.add(ticketId.handle((id, e) -> {
+                if (e != null) {
+                    logger.error("Error processing email ID {}: {}", emailId, e.getMessage(), e);
+                    return Optional.empty();
+                }
+                if (id == null) {
+                    logger.warn("No ticket found for thread {}", emailThreadId);
+                    return Optional.empty();
+                }
+                return Optional.of(new TriagedEmail(emailId, emailThreadId, id));
+            }));
+        }
+        return results.stream()
+                .map(CompletableFuture::join)
+                .flatMap(Optional::stream)
+                .toList();
+    }
+
+    /**
+     * Builds the ticket or reply DTO from the full message and posts it to APEX.
+     */
+    public void deliver(TriagedEmail triaged, Message fullMsg, Set<String> processedEmailIds) {
+        try {
+            ParsedMessage parsed = parse(fullMsg);
+            Object dto = buildDto(triaged, parsed);
+            ApexPostEvent post = new ApexPostEvent();
+            boolean success = apexSenderService.sendToApex(dto);
+            post.finish(triaged.emailId(), triaged.threadId(), PipelineEvent.sizeOf(fullMsg), postOutcome(success));
+            recordDelivery(dto, fullMsg, success, processedEmailIds);
         } catch (Exception e) {
-            logger.error("Unexpected error checking processed email {}: {}", emailId, e.getMessage());
-            return true;
+            logger.error("Error processing email ID {}: {}", triaged.emailId(), e.getMessage(), e);
         }
     }
 
-    private boolean isReplyProcessed(String emailId) {
+    /**
+     * Parses a triaged message into the {@link EmailRequestDto} or {@link MessageReplyDto} posted to APEX.
+     */
+    public Object buildDto(TriagedEmail triaged, Message fullMsg) {
+        return buildDto(triaged, parse(fullMsg));
+    }
+
+    private Object buildDto(TriagedEmail triaged, ParsedMessage fullMsg) {
+        ParseEvent event = new ParseEvent();
+        String outcome = StageTimer.ERROR;
         try {
-            String endpoint = processedRepliesEndpoint + "/" + emailId;
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("x-api-key", apexApiKey);
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-            // Log the request for debugging
-            logger.debug("Calling endpoint: {} with x-api-key: {}", endpoint, apexApiKey);
-
-            // Use exchange to include the HttpEntity with headers
-            ResponseEntity<String> response = restTemplate.exchange(endpoint, HttpMethod.GET, entity, String.class);
-
-            // Log the response status and body
-            logger.debug("Received response for emailId {}: Status={}, Body={}", emailId, response.getStatusCode(), response.getBody());
-
-            // Check the response status and body
-            if (response.getStatusCode() == HttpStatus.OK) {
-                String responseBody = response.getBody();
-                if (responseBody != null && responseBody.contains("\"status\":\"processed\"")) {
-                    logger.debug("Reply processed for emailId {}", emailId);
-                    return true;
-                } else {
-                    logger.warn("Unexpected response body for emailId {}: {}", emailId, responseBody);
-                    return false; // Changed from true to false for consistency
-                }
+            Object dto = StageTimer.time(meterRegistry, StageTimer.PARSE, () -> toDto(triaged, fullMsg),
+                    "type", triaged.isReply() ? "reply" : "ticket");
+            outcome = StageTimer.SUCCESS;
+            return dto;
+        } finally {
+            event.finish(triaged.emailId(), triaged.threadId(), PipelineEvent.sizeOf(fullMsg.message()), outcome);
+        }
+    }
+
+    private Object toDto(TriagedEmail triaged, ParsedMessage fullMsg) {
+        String subject = fullMsg.header("Subject");
+        String messageId = fullMsg.header("Message-ID");
+        SenderInfo senderInfo = emailParserService.extractSenderInfo(fullMsg.header("From"));
+        String body = triaged.isReply() ? fullMsg.replyBody() : fullMsg.body();
+        String gmailDate = formatDate(fullMsg.internalDate());
+
+        if (triaged.isReply()) {
+            return new MessageReplyDto(
+                    triaged.emailId(), senderInfo.email(), subject, body, gmailDate,
+                    messageId, triaged.threadId(), triaged.ticketId().toString());
+        }
+        return new EmailRequestDto(
+                triaged.emailId(), senderInfo.name(), senderInfo.email(), subject,
+                body, gmailDate, messageId, triaged.threadId());
+    }
+
+    /**
+     * Books the outcome of posting a DTO: delivered messages are marked processed, their ingestion
+     * lag is recorded and their attachments start uploading; failed ones go to the outbox, together
+     * with their attachments. {@code fullMsg} is the message the DTO was built from.
+     */
+    public void recordDelivery(Object dto, Message fullMsg, boolean success, Set<String> processedEmailIds) {
+        if (dto instanceof MessageReplyDto replyDto) {
+            String emailId = replyDto.getEmailId();
+            if (success) {
+                processedEmailIds.add(emailId);
+                processedIdFilter.recordReply(emailId);
+                ingestionLagTracker.recordDelivered(emailId, replyDto.getGmailDate());
+                // attachments are matched to the reply by email ID
+                apexOutbox.uploadAttachments(emailId, attachmentService.findAttachments(fullMsg));
+                logger.info("✅ Reply processed ({}): {}", emailId, replyDto.getSubject());
+            } else if (apexOutbox.enqueue(replyDto, attachmentService.findAttachments(fullMsg))) {
+                processedEmailIds.add(emailId);
+                logger.warn("⚠️ Failed to process reply {}, queued for retry", emailId);
             } else {
-                logger.warn("Unexpected status code for emailId {}: {}", emailId, response.getStatusCode());
-                return false; // Fallback for unexpected status codes
+                logger.warn("⚠️ Failed to process reply: {}", emailId);
             }
-        } catch (HttpClientErrorException e) {
-            logger.debug("HttpClientErrorException for emailId {}: Status={}, Body={}", emailId, e.getStatusCode(), e.getResponseBodyAsString());
-            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
-                String responseBody = e.getResponseBodyAsString();
-                if (responseBody != null && responseBody.contains("\"status\":\"not_processed\"")) {
-                    logger.debug("Reply not processed for emailId {}", emailId);
-                    return false;
-                } else {
-                    logger.warn("Unexpected 404 response body for emailId {}: {}", emailId, responseBody);
-                    return false; // Still return false, but log the anomaly
-                }
-            } else if (e.getStatusCode() == HttpStatus.UNAUTHORIZED) {
-                logger.error("Unauthorized access for emailId {}: {}", emailId, e.getMessage());
-                throw new RuntimeException("Unauthorized access to processed replies API", e);
+        } else if (dto instanceof EmailRequestDto ticketDto) {
+            String emailId = ticketDto.getEmailId();
+            if (success) {
+                processedEmailIds.add(emailId);
+                processedIdFilter.recordEmail(emailId);
+                ingestionLagTracker.recordDelivered(emailId, ticketDto.getGmailDate());
+                // replies in this thread may have cached "no ticket" while it was being created
+                ticketService.invalidate(ticketDto.getEmailThreadId());
+                apexOutbox.uploadAttachments(emailId, attachmentService.findAttachments(fullMsg));
+                logger.info("✅ New ticket processed ({}): {}", emailId, ticketDto.getSubject());
+            } else if (apexOutbox.enqueue(ticketDto, attachmentService.findAttachments(fullMsg))) {
+                processedEmailIds.add(emailId);
+                logger.warn("⚠️ Failed to process new ticket {}, queued for retry", emailId);
             } else {
-                logger.error("HTTP error checking processed reply for emailId {}: {} - {}", emailId, e.getStatusCode(), e.getMessage());
-                throw new RuntimeException("Failed to check processed reply for emailId " + emailId, e);
+                logger.warn("⚠️ Failed to process new ticket: {}", emailId);
             }
-        } catch (Exception e) {
-            logger.error("Unexpected error checking processed reply for emailId {}: {}", emailId, e.getMessage(), e);
-            throw new RuntimeException("Unexpected error checking processed reply for emailId " + emailId, e);
         }
     }
 
-    private String getHeaderValue(Message message, String headerName) {
-        return message.getPayload().getHeaders().stream()
-                .filter(h -> headerName.equalsIgnoreCase(h.getName()))
-                .findFirst()
-                .map(MessagePartHeader::getValue)
-                .orElse(null);
+    private boolean checkProcessed(ParsedMessage message, boolean isReply) {
+        DedupeCheckEvent event = new DedupeCheckEvent();
+        String outcome = StageTimer.ERROR;
+        try {
+            boolean processed = isReply
+                    ? processedCheckService.isReplyProcessed(message.id())
+                    : processedCheckService.isEmailProcessed(message.id());
+            outcome = dedupeOutcome(processed);
+            return processed;
+        } finally {
+            event.finish(message.id(), message.threadId(), PipelineEvent.sizeOf(message.message()), outcome);
+        }
+    }
+
+    private Long lookUpTicket(ParsedMessage message) {
+        TicketLookupEvent event = new TicketLookupEvent();
+        String outcome = StageTimer.ERROR;
+        try {
+            Long ticketId = ticketService.getTicketIdByThreadId(message.threadId());
+            outcome = ticketOutcome(ticketId);
+            return ticketId;
+        } finally {
+            event.finish(message.id(), message.threadId(), PipelineEvent.sizeOf(message.message()), outcome);
+        }
+    }
+
+    /**
+     * Finishes the Flight Recorder {@code event} when {@code stage} completes. Arguments are evaluated
+     * left to right, so an event created in the call starts timing before the call producing {@code stage}.
+     */
+    private static <T> CompletableFuture<T> recorded(PipelineEvent event, ParsedMessage message,
+                                                     CompletableFuture<T> stage, Function<T, String> outcome) {
+        return stage.whenComplete((result, e) -> event.finish(message.id(), message.threadId(),
+                PipelineEvent.sizeOf(message.message()), e != null ? StageTimer.ERROR : outcome.apply(result)));
+    }
+
+    private static String dedupeOutcome(Boolean processed) {
+        return Boolean.TRUE.equals(processed) ? PipelineEvent.PROCESSED : PipelineEvent.NEW;
+    }
+
+    private static String ticketOutcome(Long ticketId) {
+        return ticketId != null ? PipelineEvent.FOUND : PipelineEvent.NO_TICKET;
+    }
+
+    private static String postOutcome(Boolean success) {
+        return Boolean.TRUE.equals(success) ? StageTimer.SUCCESS : PipelineEvent.FAILED;
+    }
+
+    private ParsedMessage parse(Message message) {
+        return new ParsedMessage(message, emailParserService);
     }
 
     private String formatDate(Long internalDate) {
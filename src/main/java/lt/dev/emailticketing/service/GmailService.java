@@ -2,14 +2,31 @@ package lt.dev.emailticketing.service;
 
 import com.google.api.client.auth.oauth2.TokenResponseException;
 import com.google.api.services.gmail.model.Message;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.mail.Session;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import lt.dev.emailticketing.client.GmailClientService;
+import lt.dev.emailticketing.dto.ApexBatchItemResultDto;
+import lt.dev.emailticketing.dto.EmailRequestDto;
+import lt.dev.emailticketing.dto.MessageReplyDto;
 import lt.dev.emailticketing.dto.ProcessedEmailIdDto;
 import lt.dev.emailticketing.dto.ProcessedEmailsResponseDto;
+import lt.dev.emailticketing.dto.ProcessedRepliesResponseDto;
 import lt.dev.emailticketing.dto.SendReplyDto;
-import lt.dev.emailticketing.util.ExecutorServiceWrapper;
+import lt.dev.emailticketing.internal.TriagedEmail;
+import lt.dev.emailticketing.jfr.ApexPostEvent;
+import lt.dev.emailticketing.jfr.FetchEvent;
+import lt.dev.emailticketing.jfr.PipelineEvent;
+import lt.dev.emailticketing.jfr.ScanEvent;
+import lt.dev.emailticketing.sender.ApexSenderService;
+import lt.dev.emailticketing.util.ProcessedIdFilter;
+import lt.dev.emailticketing.util.ProcessedIdSet;
+import lt.dev.emailticketing.util.ProcessingExecutor;
+import lt.dev.emailticketing.util.StageTimer;
+import lt.dev.emailticketing.util.TaskGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,11 +35,14 @@ import org.springframework.http.*;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.annotation.PostConstruct;
 import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 @Service
 public class GmailService {
@@ -30,9 +50,23 @@ public class GmailService {
 
     private final GmailClientService gmailClientService;
     private final EmailProcessingService emailProcessingService;
+    private final ApexSenderService apexSenderService;
+    private final InboxSyncService inboxSyncService;
+    private final ProcessingExecutor processingExecutor;
+    private final ProcessedIdFilter processedIdFilter;
     private final RestTemplate restTemplate;
+    private final MeterRegistry meterRegistry;
 
-    private Set<String> processedEmailIds;
+    private final ProcessedIdSet processedEmailIds = new ProcessedIdSet();
+
+    // creation_date watermarks and row counts of the last APEX refresh, used for delta refreshes;
+    // FROM_START stands for a table that was empty, null for no complete load yet
+    private volatile String emailsWatermark;
+    private volatile String repliesWatermark;
+    private long knownEmailCount;
+    private long knownReplyCount;
+
+    private static final String FROM_START = "";
 
     @Value("${apex.processed_emails.endpoint}")
     private String apexProcessedEmailsEndpoint;
@@ -43,18 +77,30 @@ public class GmailService {
     @Value("${apex.api.key}")
     private String apexApiKey;
 
-    @Value("${gmail.thread-pool-size:2}")
-    private int threadPoolSize;
+    @Value("${gmail.batch-size:100}")
+    private int batchSize;
 
     public GmailService(
             GmailClientService gmailClientService,
             EmailProcessingService emailProcessingService,
-            RestTemplate restTemplate
+            ApexSenderService apexSenderService,
+            InboxSyncService inboxSyncService,
+            ProcessingExecutor processingExecutor,
+            ProcessedIdFilter processedIdFilter,
+            RestTemplate restTemplate,
+            MeterRegistry meterRegistry
     ) {
         this.gmailClientService = gmailClientService;
         this.emailProcessingService = emailProcessingService;
+        this.apexSenderService = apexSenderService;
+        this.inboxSyncService = inboxSyncService;
+        this.processingExecutor = processingExecutor;
+        this.processedIdFilter = processedIdFilter;
         this.restTemplate = restTemplate;
-        this.processedEmailIds = new HashSet<>();
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("emailticketing.processed.ids", processedEmailIds, Set::size)
+                .description("Email IDs known to be processed")
+                .register(meterRegistry);
     }
 
     @PostConstruct
@@ -67,30 +113,145 @@ public class GmailService {
     @Scheduled(fixedRate = 60000)
     public void scanInbox() throws Exception {
         logger.info("📥 Scanning Gmail inbox for new messages...");
+        ScanEvent scan = new ScanEvent();
+        String outcome = StageTimer.ERROR;
+        List<String> scannedIds = new ArrayList<>();
         try {
-            List<Message> messages = gmailClientService.fetchInboxMessages();
-            if (messages != null) {
-                Collections.reverse(messages);
-                try (ExecutorServiceWrapper executorWrapper = new ExecutorServiceWrapper(
-                        Executors.newFixedThreadPool(threadPoolSize))) {
-                    for (Message msg : messages) {
-                        String emailId = msg.getId();
-                        executorWrapper.submit(() -> {
-                            emailProcessingService.processEmail(emailId, processedEmailIds);
-                        });
+            Iterator<List<Message>> pages = inboxSyncService.fetchNewMessages(processedEmailIds::contains);
+            try (TaskGroup scanTasks = processingExecutor.newTaskGroup()) {
+                while (pages.hasNext()) {
+                    List<Message> page = pages.next();
+                    List<String> pendingIds = new ArrayList<>(page.size());
+                    for (Message msg : page) {
+                        scannedIds.add(msg.getId());
+                        if (!processedEmailIds.contains(msg.getId())) {
+                            pendingIds.add(msg.getId());
+                        }
+                    }
+                    for (List<String> batch : Lists.partition(pendingIds, batchSize)) {
+                        processBatch(batch, scanTasks);
                     }
                 }
+            }
+            if (!scannedIds.isEmpty()) {
+                logger.debug("📥 Scanned {} messages", scannedIds.size());
             } else {
                 logger.info("No new messages found in inbox.");
             }
-        } catch (TokenResponseException e) {
-            if (e.getDetails() != null && "invalid_grant".equals(e.getDetails().getError())) {
-                logger.warn("⚠️ OAuth token expired or revoked. Reauthorizing...");
-                gmailClientService.reauthorize();
-                logger.info("✅ Reauthorization successful. Will retry inbox scan later.");
+            inboxSyncService.acknowledge(scannedIds, processedEmailIds);
+            outcome = StageTimer.SUCCESS;
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof TokenResponseException tokenError) {
+                handleTokenError(tokenError);
             } else {
                 throw e;
             }
+        } catch (TokenResponseException e) {
+            handleTokenError(e);
+        } finally {
+            scan.finishBulk(scannedIds.size(), 0, outcome);
+        }
+    }
+
+    private void handleTokenError(TokenResponseException e) throws Exception {
+        if (e.getDetails() != null && "invalid_grant".equals(e.getDetails().getError())) {
+            logger.warn("⚠️ OAuth token expired or revoked. Reauthorizing...");
+            gmailClientService.reauthorize();
+            logger.info("✅ Reauthorization successful. Will retry inbox scan later.");
+        } else {
+            throw e;
+        }
+    }
+
+    /**
+     * Triages a batch on headers only, deduplicating it against APEX in one bulk lookup, then downloads
+     * full payloads just for the messages that will actually be posted and posts those in one bulk request.
+     */
+    private void processBatch(List<String> batch, TaskGroup scanTasks) throws Exception {
+        Map<String, Message> metadata = fetch(batch, false);
+
+        List<Message> withHeaders = new ArrayList<>(metadata.size());
+        for (String emailId : batch) {
+            Message headers = metadata.get(emailId);
+            if (headers != null) {
+                withHeaders.add(headers);
+            } else {
+                scanTasks.submit(() -> emailProcessingService.processEmail(emailId, processedEmailIds));
+            }
+        }
+
+        // oldest first, so the batch is posted in arrival order; replies are matched to tickets before any
+        // of it is posted, so a reply to a ticket opened in this same batch is left for a later scan
+        withHeaders.sort(Comparator.comparing(Message::getInternalDate, Comparator.nullsLast(Comparator.naturalOrder())));
+        List<TriagedEmail> toDeliver = emailProcessingService.triageBatch(withHeaders, processedEmailIds);
+        if (toDeliver.isEmpty()) {
+            logger.debug("📦 Batch of {} messages needs no full download", batch.size());
+            return;
+        }
+
+        Map<String, Message> fullMessages = fetch(toDeliver.stream().map(TriagedEmail::emailId).toList(), true);
+        logger.debug("📦 Batch of {} messages, {} downloaded in full", batch.size(), fullMessages.size());
+        List<Future<Object>> parsed = new ArrayList<>();
+        long parsedBytes = 0;
+        for (TriagedEmail triaged : toDeliver) {
+            Message fullMsg = fullMessages.get(triaged.emailId());
+            if (fullMsg == null) {
+                scanTasks.submit(() -> emailProcessingService.processEmail(triaged.emailId(), processedEmailIds));
+            } else if (apexSenderService.isBatchEnabled()) {
+                parsed.add(scanTasks.submit(() -> emailProcessingService.buildDto(triaged, fullMsg)));
+                parsedBytes += PipelineEvent.sizeOf(fullMsg);
+            } else {
+                scanTasks.submit(() -> emailProcessingService.deliver(triaged, fullMsg, processedEmailIds));
+            }
+        }
+        if (!parsed.isEmpty()) {
+            deliverParsed(parsed, parsedBytes, fullMessages);
+        }
+    }
+
+    /**
+     * Downloads metadata or full messages in batch requests, recorded as one {@link FetchEvent}.
+     */
+    private Map<String, Message> fetch(List<String> messageIds, boolean full) throws Exception {
+        FetchEvent event = new FetchEvent();
+        String outcome = StageTimer.ERROR;
+        Map<String, Message> messages = Map.of();
+        try {
+            messages = full
+                    ? gmailClientService.fetchFullMessages(messageIds)
+                    : gmailClientService.fetchMessageMetadata(messageIds);
+            outcome = messages.size() == messageIds.size() ? StageTimer.SUCCESS : PipelineEvent.PARTIAL;
+            return messages;
+        } finally {
+            event.finishBulk(messageIds.size(), PipelineEvent.sizeOf(messages.values()), outcome);
+        }
+    }
+
+    /**
+     * Posts the parsed DTOs of one batch to APEX in a single bulk request.
+     */
+    private void deliverParsed(List<Future<Object>> parsed, long bytes, Map<String, Message> fullMessages)
+            throws InterruptedException {
+        List<Object> dtos = new ArrayList<>(parsed.size());
+        for (Future<Object> dto : parsed) {
+            try {
+                dtos.add(dto.get());
+            } catch (ExecutionException e) {
+                logger.error("Error parsing email: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+        ApexPostEvent post = new ApexPostEvent();
+        Map<String, ApexBatchItemResultDto> results = apexSenderService.sendBatch(dtos);
+        long delivered = results.values().stream().filter(ApexBatchItemResultDto::isDelivered).count();
+        post.finishBulk(dtos.size(), bytes, delivered == dtos.size() ? StageTimer.SUCCESS
+                : delivered == 0 ? PipelineEvent.FAILED : PipelineEvent.PARTIAL);
+        for (Object dto : dtos) {
+            String emailId = dto instanceof MessageReplyDto reply
+                    ? reply.getEmailId()
+                    : ((EmailRequestDto) dto).getEmailId();
+            ApexBatchItemResultDto result = results.get(emailId);
+            emailProcessingService.recordDelivery(dto, fullMessages.get(emailId),
+                    result != null && result.isDelivered(), processedEmailIds);
         }
     }
 
@@ -98,7 +259,15 @@ public class GmailService {
     public void refreshProcessedEmailIds() {
         logger.info("🔄 Refreshing processed email IDs...");
         try {
-            loadProcessedEmailIds();
+            if (emailsWatermark == null || repliesWatermark == null) {
+                loadProcessedEmailIds();
+            } else if (!loadProcessedEmailIdsDelta()) {
+                logger.warn("⚠️ Processed ID counts do not match APEX, doing a full reload");
+                loadProcessedEmailIds();
+            } else if (processedIdFilter.needsRebuild()) {
+                logger.info("🌸 Processed-ID filters are over capacity, doing a full reload to resize them");
+                loadProcessedEmailIds();
+            }
             logger.info("✅ Refreshed processed email IDs, count: {}", processedEmailIds.size());
         } catch (Exception e) {
             logger.error("Failed to refresh processed email IDs: {}", e.getMessage());
@@ -107,7 +276,6 @@ public class GmailService {
 
     private void loadProcessedEmailIdsWithRetries() throws InterruptedException {
         int retries = 3;
-        processedEmailIds = new HashSet<>();
         while (retries > 0) {
             try {
                 loadProcessedEmailIds();
@@ -127,53 +295,152 @@ public class GmailService {
         logger.warn("⚠️ Gave up loading processed emails after 3 retries. Proceeding with empty list.");
     }
 
+    /**
+     * Full reload of both processed ID lists. Also resets the delta-refresh watermarks.
+     */
     private void loadProcessedEmailIds() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("x-api-key", apexApiKey);
-        HttpEntity<String> entity = new HttpEntity<>(headers);
+        processedIdFilter.beginRefresh();
+        ProcessedEmailsResponseDto emails = fetchProcessedEmails(null);
+        ProcessedRepliesResponseDto replies = fetchProcessedReplies(null);
+
+        List<String> emailIds = emails != null ? emailIdsOf(emails) : List.of();
+        List<String> replyIds = replies != null && replies.getItems() != null ? replies.getItems() : List.of();
+        List<String> loadedIds = new ArrayList<>(emailIds.size() + replyIds.size());
+        loadedIds.addAll(emailIds);
+        loadedIds.addAll(replyIds);
+
+        // Swap in a fresh snapshot; after a partial failure keep what we already knew.
+        if (emails != null && replies != null) {
+            processedEmailIds.replaceWith(loadedIds);
+            processedIdFilter.rebuild(emailIds, replyIds);
+            emailsWatermark = watermarkOf(emails.getWatermark());
+            repliesWatermark = watermarkOf(replies.getWatermark());
+            knownEmailCount = emailIds.size();
+            knownReplyCount = replyIds.size();
+        } else {
+            processedIdFilter.endRefresh();
+            processedEmailIds.merge(loadedIds);
+            emailsWatermark = null;
+            repliesWatermark = null;
+        }
+        logger.debug("✅ Loaded total {} processed IDs", processedEmailIds.size());
+    }
 
+    /**
+     * Fetches only the rows created after the last watermarks. Returns false when the row counts
+     * reported by APEX no longer match what we have seen, in which case a full reload is needed.
+     */
+    private boolean loadProcessedEmailIdsDelta() {
+        ProcessedEmailsResponseDto emails = fetchProcessedEmails(emailsWatermark);
+        ProcessedRepliesResponseDto replies = fetchProcessedReplies(repliesWatermark);
+        if (emails == null || replies == null) {
+            // keep the current watermarks and try again next time
+            return true;
+        }
+
+        List<String> emailIds = emailIdsOf(emails);
+        List<String> replyIds = replies.getItems() != null ? replies.getItems() : List.of();
+        knownEmailCount += emailIds.size();
+        knownReplyCount += replyIds.size();
+        if (!Objects.equals(emails.getTotalCount(), knownEmailCount)
+                || !Objects.equals(replies.getTotalCount(), knownReplyCount)) {
+            logger.debug("Processed ID count mismatch: emails {}/{}, replies {}/{}",
+                    knownEmailCount, emails.getTotalCount(), knownReplyCount, replies.getTotalCount());
+            return false;
+        }
+
+        if (!emailIds.isEmpty() || !replyIds.isEmpty()) {
+            List<String> newIds = new ArrayList<>(emailIds);
+            newIds.addAll(replyIds);
+            processedEmailIds.merge(newIds);
+            processedIdFilter.add(emailIds, replyIds);
+        }
+        // an empty delta of a still empty table carries no watermark
+        if (!FROM_START.equals(watermarkOf(emails.getWatermark()))) {
+            emailsWatermark = watermarkOf(emails.getWatermark());
+        }
+        if (!FROM_START.equals(watermarkOf(replies.getWatermark()))) {
+            repliesWatermark = watermarkOf(replies.getWatermark());
+        }
+        logger.debug("🔄 Delta refresh: {} new processed emails, {} new processed replies", emailIds.size(), replyIds.size());
+        return true;
+    }
+
+    private ProcessedEmailsResponseDto fetchProcessedEmails(String since) {
         try {
-            logger.debug("🔍 Fetching processed email IDs from APEX at {}", apexProcessedEmailsEndpoint);
+            String url = UriComponentsBuilder.fromUriString(apexProcessedEmailsEndpoint)
+                    .queryParamIfPresent("since", sinceParam(since))
+                    .build()
+                    .toUriString();
+            logger.debug("🔍 Fetching processed email IDs from APEX at {}", url);
             ResponseEntity<ProcessedEmailsResponseDto> emailResponse = restTemplate.exchange(
-                    apexProcessedEmailsEndpoint,
+                    url,
                     HttpMethod.GET,
-                    entity,
+                    apexEntity(),
                     new ParameterizedTypeReference<>() {}
             );
             if (emailResponse.getStatusCode() == HttpStatus.OK &&
                     emailResponse.getBody() != null &&
                     emailResponse.getBody().getItems() != null) {
-                processedEmailIds.addAll(emailResponse.getBody().getItems().stream()
-                        .map(ProcessedEmailIdDto::getEmailId)
-                        .toList());
+                return emailResponse.getBody();
             }
         } catch (Exception e) {
             logger.error("❌ Error loading processed_emails: {}", e.getMessage());
         }
+        return null;
+    }
 
+    private ProcessedRepliesResponseDto fetchProcessedReplies(String since) {
         try {
-            logger.debug("🔍 Fetching processed reply IDs from APEX at {}", apexProcessedRepliesEndpoint);
-            ResponseEntity<Map<String, List<String>>> replyResponse = restTemplate.exchange(
-                    apexProcessedRepliesEndpoint,
+            String url = UriComponentsBuilder.fromUriString(apexProcessedRepliesEndpoint)
+                    .queryParamIfPresent("since", sinceParam(since))
+                    .build()
+                    .toUriString();
+            logger.debug("🔍 Fetching processed reply IDs from APEX at {}", url);
+            ResponseEntity<ProcessedRepliesResponseDto> replyResponse = restTemplate.exchange(
+                    url,
                     HttpMethod.GET,
-                    entity,
+                    apexEntity(),
                     new ParameterizedTypeReference<>() {}
             );
             if (replyResponse.getStatusCode() == HttpStatus.OK && replyResponse.getBody() != null) {
-                List<String> replyIds = replyResponse.getBody().get("items");
-                if (replyIds != null) {
-                    processedEmailIds.addAll(replyIds);
-                }
+                return replyResponse.getBody();
             }
         } catch (Exception e) {
             logger.error("❌ Error loading processed_replies: {}", e.getMessage());
         }
+        return null;
+    }
 
-        logger.debug("✅ Loaded total {} processed IDs", processedEmailIds.size());
+    private HttpEntity<String> apexEntity() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("x-api-key", apexApiKey);
+        return new HttpEntity<>(headers);
+    }
+
+    private static List<String> emailIdsOf(ProcessedEmailsResponseDto response) {
+        return response.getItems().stream()
+                .map(ProcessedEmailIdDto::getEmailId)
+                .toList();
+    }
+
+    private static String watermarkOf(String watermark) {
+        return watermark == null || watermark.isBlank() ? FROM_START : watermark;
+    }
+
+    private static Optional<String> sinceParam(String watermark) {
+        return Optional.ofNullable(watermark).filter(w -> !w.isEmpty());
     }
 
     public void sendReplyEmail(SendReplyDto dto) throws Exception {
+        StageTimer.time(meterRegistry, StageTimer.GMAIL_SEND_REPLY, () -> {
+            sendReply(dto);
+            return null;
+        });
+    }
+
+    private void sendReply(SendReplyDto dto) throws Exception {
         logger.info("📤 Sending reply email to {}", dto.getTo());
         MimeMessage message = new MimeMessage(Session.getDefaultInstance(new Properties(), null));
         message.setFrom(new InternetAddress(dto.getFrom()));
@@ -0,0 +1,254 @@
+package lt.dev.emailticketing.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.gmail.model.Message;
+import com.google.common.collect.Iterators;
+import lt.dev.emailticketing.client.GmailClientService;
+import lt.dev.emailticketing.client.HistoryCheckpointStore;
+import lt.dev.emailticketing.client.InboxPageIterator;
+import lt.dev.emailticketing.internal.HistoryDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Decides which inbox messages a scan has to look at. In {@code history} mode only the
+ * messages added since the persisted checkpoint are returned; the inbox listing is walked
+ * on the first run or when Gmail reports the checkpoint as expired.
+ * <p>
+ * A listing streams the inbox page by page down to where it catches up with processed or already
+ * queued mail, keeping only the IDs. Those are handed out oldest first, {@code gmail.scan.max-messages}
+ * per scan, so a reply is not handled before the message that opened its ticket; the rest wait in a
+ * backlog. History is capped the same way and resumed from the last record taken. Each scan takes a
+ * chunk of the backlog first, then the new mail: the history delta in history mode, a fresh listing
+ * (which stops at the queued IDs) in listing mode.
+ * <p>
+ * While a backlog is pending the history checkpoint is only kept in memory. A restart then finds no
+ * checkpoint and lists the inbox again, which picks up the rest of the backlog.
+ * <p>
+ * Gmail history can only be filtered by label, so history mode follows INBOX additions. It is used
+ * only while {@code gmail.query} is plain {@code in:inbox}; any other query is answered by listing,
+ * so both modes see the same messages.
+ */
+@Service
+public class InboxSyncService {
+    private static final Logger logger = LoggerFactory.getLogger(InboxSyncService.class);
+
+    private final GmailClientService gmailClientService;
+    private final HistoryCheckpointStore checkpointStore;
+
+    private static final String INBOX_QUERY = "in:inbox";
+
+    // Messages from earlier scans that did not make it into the processed set (e.g. APEX was down),
+    // saved with the checkpoint since history will not list them again.
+    private final Set<String> pendingRetryIds = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    private volatile BigInteger committedHistoryId;
+    private volatile BigInteger uncommittedHistoryId;
+    private volatile boolean queryWarningLogged;
+    // IDs still to scan from earlier listings, oldest first; only touched by the scan thread
+    private final SequencedSet<String> backlog = new LinkedHashSet<>();
+
+    @Value("${gmail.sync.mode:history}")
+    private String syncMode;
+
+    @Value("${gmail.query:in:inbox}")
+    private String gmailQuery;
+
+    @Value("${gmail.sync.max-pending-retries:1000}")
+    private int maxPendingRetries;
+
+    @Value("${gmail.scan.max-messages:500}")
+    private int maxMessagesPerScan;
+
+    public InboxSyncService(GmailClientService gmailClientService, HistoryCheckpointStore checkpointStore) {
+        this.gmailClientService = gmailClientService;
+        this.checkpointStore = checkpointStore;
+        pendingRetryIds.addAll(checkpointStore.loadPendingRetries());
+    }
+
+    /**
+     * Returns the messages to scan as pages, oldest first. {@code alreadyProcessed} lets a listing
+     * stop once it reaches mail that has been ingested.
+     */
+    public Iterator<List<Message>> fetchNewMessages(Predicate<String> alreadyProcessed) throws Exception {
+        if (!isHistoryMode()) {
+            // list before taking the chunk, so the listing stops at the IDs still queued
+            SequencedSet<String> listed = listInbox(alreadyProcessed);
+            Iterator<List<Message>> chunk = nextBacklogChunk();
+            List<Message> fresh = new ArrayList<>(Math.min(maxMessagesPerScan, listed.size()));
+            while (fresh.size() < maxMessagesPerScan && !listed.isEmpty()) {
+                fresh.add(new Message().setId(listed.removeFirst()));
+            }
+            queueBacklog(listed);
+            return fresh.isEmpty() ? chunk : Iterators.concat(chunk, Iterators.singletonIterator(fresh));
+        }
+
+        BigInteger checkpoint = committedHistoryId != null
+                ? committedHistoryId
+                : checkpointStore.load().orElse(null);
+        committedHistoryId = checkpoint;
+        if (checkpoint == null) {
+            logger.info("No history checkpoint yet, listing full inbox");
+            return resync(alreadyProcessed);
+        }
+
+        List<Message> added;
+        try {
+            HistoryDelta delta = gmailClientService.fetchHistorySince(checkpoint, maxMessagesPerScan);
+            uncommittedHistoryId = delta.historyId();
+            logger.debug("📜 History {} -> {}: {} new messages",
+                    checkpoint, delta.historyId(), delta.messages().size());
+            added = withPendingRetries(delta.messages());
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() == 404) {
+                logger.warn("⚠️ History checkpoint {} expired, falling back to full inbox listing", checkpoint);
+                checkpointStore.clear();
+                return resync(alreadyProcessed);
+            }
+            throw e;
+        }
+
+        Iterator<List<Message>> fresh = added.isEmpty()
+                ? Collections.emptyIterator()
+                : Iterators.singletonIterator(added);
+        if (backlog.isEmpty()) {
+            return fresh;
+        }
+        logger.info("📚 Continuing inbox backlog, {} messages left", backlog.size());
+        return Iterators.concat(nextBacklogChunk(), fresh);
+    }
+
+    /**
+     * Called once the messages returned by {@link #fetchNewMessages(Predicate)} have been handled.
+     * Advances the checkpoint and backlog position and saves unprocessed messages with the checkpoint
+     * for the next scan. If they do not all fit under {@code gmail.sync.max-pending-retries}, the
+     * checkpoint stays where it was, so history lists them again. Nothing is saved while a backlog is
+     * pending, so a restart lists the inbox again instead of skipping the rest of it.
+     */
+    public void acknowledge(List<String> scannedIds, Set<String> processedEmailIds) {
+        if (!isHistoryMode()) {
+            return;
+        }
+        boolean overflow = false;
+        List<String> retries;
+        synchronized (pendingRetryIds) {
+            for (String emailId : scannedIds) {
+                if (processedEmailIds.contains(emailId)) {
+                    pendingRetryIds.remove(emailId);
+                } else if (pendingRetryIds.size() < maxPendingRetries || pendingRetryIds.contains(emailId)) {
+                    pendingRetryIds.add(emailId);
+                } else {
+                    overflow = true;
+                }
+            }
+            retries = List.copyOf(pendingRetryIds);
+        }
+        BigInteger historyId = uncommittedHistoryId;
+        uncommittedHistoryId = null;
+        if (overflow) {
+            logger.warn("⚠️ More than {} unprocessed messages, keeping history checkpoint {} so they are listed again",
+                    maxPendingRetries, committedHistoryId);
+            historyId = committedHistoryId;
+        }
+        if (historyId == null) {
+            return;
+        }
+        committedHistoryId = historyId;
+        if (backlog.isEmpty()) {
+            checkpointStore.save(historyId, retries);
+        } else {
+            logger.debug("📚 Holding back history checkpoint {} until the backlog of {} is worked off",
+                    historyId, backlog.size());
+        }
+    }
+
+    private Iterator<List<Message>> resync(Predicate<String> alreadyProcessed) throws Exception {
+        // Take the history id before listing so nothing that arrives in between is missed.
+        // Without a checkpoint there is nothing to keep on overflow: the next scan lists again.
+        committedHistoryId = null;
+        uncommittedHistoryId = gmailClientService.fetchCurrentHistoryId();
+        backlog.clear();
+        queueBacklog(listInbox(alreadyProcessed));
+        return nextBacklogChunk();
+    }
+
+    /**
+     * Streams the inbox down to the first page that holds only processed or queued mail and returns
+     * the other IDs oldest first. Only one page of stubs is held at a time, plus the IDs.
+     */
+    private SequencedSet<String> listInbox(Predicate<String> alreadyProcessed) {
+        Predicate<String> known = alreadyProcessed.or(backlog::contains);
+        SequencedSet<String> listed = new LinkedHashSet<>();
+        InboxPageIterator pages = new InboxPageIterator(gmailClientService, known);
+        while (pages.hasNext()) {
+            // pages come newest first, each ordered oldest first: prepend each page from its newest end
+            List<Message> page = pages.next();
+            for (Message message : page.reversed()) {
+                if (!known.test(message.getId())) {
+                    listed.addFirst(message.getId());
+                }
+            }
+        }
+        return listed;
+    }
+
+    private void queueBacklog(SequencedSet<String> listed) {
+        backlog.addAll(listed);
+        if (!listed.isEmpty() && backlog.size() > maxMessagesPerScan) {
+            logger.info("📚 {} unprocessed messages queued, working them off oldest first over the next scans",
+                    backlog.size());
+        }
+    }
+
+    private Iterator<List<Message>> nextBacklogChunk() {
+        if (backlog.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+        List<Message> chunk = new ArrayList<>(Math.min(maxMessagesPerScan, backlog.size()));
+        while (chunk.size() < maxMessagesPerScan && !backlog.isEmpty()) {
+            chunk.add(new Message().setId(backlog.removeFirst()));
+        }
+        return Iterators.singletonIterator(chunk);
+    }
+
+    private boolean isHistoryMode() {
+        if (!"history".equalsIgnoreCase(syncMode)) {
+            return false;
+        }
+        if (gmailQuery == null || gmailQuery.isBlank() || INBOX_QUERY.equalsIgnoreCase(gmailQuery.strip())) {
+            return true;
+        }
+        if (!queryWarningLogged) {
+            queryWarningLogged = true;
+            logger.warn("⚠️ gmail.query '{}' cannot be applied to Gmail history, listing the inbox instead", gmailQuery);
+        }
+        return false;
+    }
+
+    private List<Message> withPendingRetries(List<Message> added) {
+        List<String> retries;
+        synchronized (pendingRetryIds) {
+            retries = new ArrayList<>(pendingRetryIds);
+        }
+        if (retries.isEmpty()) {
+            return added;
+        }
+        Set<String> addedIds = new HashSet<>();
+        added.forEach(m -> addedIds.add(m.getId()));
+
+        List<Message> combined = new ArrayList<>(retries.size() + added.size());
+        for (String emailId : retries) {
+            if (!addedIds.contains(emailId)) {
+                combined.add(new Message().setId(emailId));
+            }
+        }
+        combined.addAll(added);
+        return combined;
+    }
+}
@@ -0,0 +1,171 @@
+package lt.dev.emailticketing.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.MeterRegistry;
+import lt.dev.emailticketing.dto.ProcessedIdsRequestDto;
+import lt.dev.emailticketing.dto.ProcessedIdsResponseDto;
+import lt.dev.emailticketing.internal.ProcessedIds;
+import lt.dev.emailticketing.util.StageTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.*;
+
+/**
+ * Asks APEX whether a message has already been stored as a ticket or reply.
+ */
+@Service
+public class ProcessedCheckService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessedCheckService.class);
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${apex.api.key}")
+    private String apexApiKey;
+
+    @Value("${apex.processed_emails.endpoint}")
+    private String processedEmailsEndpoint;
+
+    @Value("${apex.processed_replies.endpoint}")
+    private String processedRepliesEndpoint;
+
+    @Value("${apex.processed_ids.endpoint:${apex.root.endpoint}/processed_ids}")
+    private String processedIdsEndpoint;
+
+    @Value("${apex.processed_ids.max-per-request:500}")
+    private int maxIdsPerRequest;
+
+    public ProcessedCheckService(RestTemplate restTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns which of {@code emailIds} APEX already holds, with one request per
+     * {@code apex.processed_ids.max-per-request} IDs. Throws if a lookup fails, so callers can fall
+     * back to the per-message checks instead of treating the IDs as new.
+     */
+    public ProcessedIds findProcessed(Collection<String> emailIds) throws Exception {
+        return StageTimer.time(meterRegistry, StageTimer.PROCESSED_CHECK, () -> lookUpProcessed(emailIds), "type", "bulk");
+    }
+
+    private ProcessedIds lookUpProcessed(Collection<String> emailIds) throws Exception {
+        Set<String> emails = new HashSet<>();
+        Set<String> replies = new HashSet<>();
+        for (List<String> chunk : Lists.partition(List.copyOf(emailIds), Math.max(1, maxIdsPerRequest))) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.set("x-api-key", apexApiKey);
+            String json = objectMapper.writeValueAsString(new ProcessedIdsRequestDto(chunk));
+
+            ResponseEntity<ProcessedIdsResponseDto> response = restTemplate.exchange(
+                    processedIdsEndpoint, HttpMethod.POST, new HttpEntity<>(json, headers), ProcessedIdsResponseDto.class);
+            ProcessedIdsResponseDto body = response.getBody();
+            if (!response.getStatusCode().is2xxSuccessful() || body == null) {
+                throw new IllegalStateException("Processed ID lookup returned " + response.getStatusCode());
+            }
+            Optional.ofNullable(body.getProcessedEmails()).ifPresent(emails::addAll);
+            Optional.ofNullable(body.getProcessedReplies()).ifPresent(replies::addAll);
+        }
+        logger.debug("🔍 Bulk processed lookup: {} IDs, {} processed emails, {} processed replies",
+                emailIds.size(), emails.size(), replies.size());
+        return new ProcessedIds(emails, replies);
+    }
+
+    public boolean isEmailProcessed(String emailId) {
+        return StageTimer.time(meterRegistry, StageTimer.PROCESSED_CHECK, () -> checkEmailProcessed(emailId), "type", "email");
+    }
+
+    /**
+     * Throws if APEX cannot answer, e.g. when no pooled connection frees up in time. Callers skip the
+     * message for this scan rather than guess: counting it as processed would drop a new ticket for good,
+     * counting it as new could post it twice.
+     */
+    private boolean checkEmailProcessed(String emailId) {
+        try {
+            String endpoint = processedEmailsEndpoint + "/" + emailId;
+            HttpHeaders headers = new HttpHeaders();
+            headers.set("x-api-key", apexApiKey);
+            HttpEntity<String> entity = new HttpEntity<>(headers);
+            restTemplate.exchange(endpoint, HttpMethod.GET, entity, String.class);
+            return true;
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return false;
+            }
+            logger.error("Error checking processed email {}: {}", emailId, e.getMessage());
+            throw new IllegalStateException("Failed to check processed email " + emailId, e);
+        } catch (Exception e) {
+            logger.error("Unexpected error checking processed email {}: {}", emailId, e.getMessage());
+            throw new IllegalStateException("Unexpected error checking processed email " + emailId, e);
+        }
+    }
+
+    public boolean isReplyProcessed(String emailId) {
+        return StageTimer.time(meterRegistry, StageTimer.PROCESSED_CHECK, () -> checkReplyProcessed(emailId), "type", "reply");
+    }
+
+    private boolean checkReplyProcessed(String emailId) {
+        try {
+            String endpoint = processedRepliesEndpoint + "/" + emailId;
+            HttpHeaders headers = new HttpHeaders();
+            headers.set("x-api-key", apexApiKey);
+            HttpEntity<String> entity = new HttpEntity<>(headers);
+
+            // Log the request for debugging
+            logger.debug("Calling endpoint: {} with x-api-key: {}", endpoint, apexApiKey);
+
+            // Use exchange to include the HttpEntity with headers
+            ResponseEntity<String> response = restTemplate.exchange(endpoint, HttpMethod.GET, entity, String.class);
+
+            // Log the response status and body
+            logger.debug("Received response for emailId {}: Status={}, Body={}", emailId, response.getStatusCode(), response.getBody());
+
+            // Check the response status and body
+            if (response.getStatusCode() == HttpStatus.OK) {
+                String responseBody = response.getBody();
+                if (responseBody != null && responseBody.contains("\"status\":\"processed\"")) {
+                    logger.debug("Reply processed for emailId {}", emailId);
+                    return true;
+                } else {
+                    logger.warn("Unexpected response body for emailId {}: {}", emailId, responseBody);
+                    return false; // Changed from true to false for consistency
+                }
+            } else {
+                logger.warn("Unexpected status code for emailId {}: {}", emailId, response.getStatusCode());
+                return false; // Fallback for unexpected status codes
+            }
+        } catch (HttpClientErrorException e) {
+            logger.debug("HttpClientErrorException for emailId {}: Status={}, Body={}", emailId, e.getStatusCode(), e.getResponseBodyAsString());
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                String responseBody = e.getResponseBodyAsString();
+                if (responseBody != null && responseBody.contains("\"status\":\"not_processed\"")) {
+                    logger.debug("Reply not processed for emailId {}", emailId);
+                    return false;
+                } else {
+                    logger.warn("Unexpected 404 response body for emailId {}: {}", emailId, responseBody);
+                    return false; // Still return false, but log the anomaly
+                }
+            } else if (e.getStatusCode() == HttpStatus.UNAUTHORIZED) {
+                logger.error("Unauthorized access for emailId {}: {}", emailId, e.getMessage());
+                throw new RuntimeException("Unauthorized access to processed replies API", e);
+            } else {
+                logger.error("HTTP error checking processed reply for emailId {}: {} - {}", emailId, e.getStatusCode(), e.getMessage());
+                throw new RuntimeException("Failed to check processed reply for emailId " + emailId, e);
+            }
+        } catch (Exception e) {
+            logger.error("Unexpected error checking processed reply for emailId {}: {}", emailId, e.getMessage(), e);
+            throw new RuntimeException("Unexpected error checking processed reply for emailId " + emailId, e);
+        }
+    }
+}
@@ -1,6 +1,17 @@
 package lt.dev.emailticketing.service;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.Iterables;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lt.dev.emailticketing.dto.TicketByThreadDto;
+import lt.dev.emailticketing.dto.TicketThreadsRequestDto;
+import lt.dev.emailticketing.dto.TicketThreadsResponseDto;
+import lt.dev.emailticketing.util.StageTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,28 +23,229 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 
+/**
+ * Resolves Gmail thread IDs to APEX ticket IDs through a bounded cache.
+ * <p>
+ * Found tickets are kept for {@code apex.ticket-cache.ttl-minutes}, threads without a ticket for the
+ * much shorter {@code negative-ttl-seconds}. Concurrent lookups of the same thread share one APEX
+ * call, and entries still being read after {@code refresh-minutes} are reloaded in the background
+ * while the old value keeps being served, so hot threads never expire into a miss.
+ * <p>
+ * Threads of a whole inbox page are resolved with one bulk request ({@link #resolveTicketIds}), and the
+ * mappings of all open tickets are loaded at startup so the first scan does not start cold.
+ */
 @Service
 public class TicketService {
     private static final Logger logger = LoggerFactory.getLogger(TicketService.class);
 
     private final RestTemplate restTemplate;
-    private final Map<String, Long> threadIdToTicketIdCache = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final LoadingCache<String, Optional<Long>> threadIdToTicketIdCache;
 
     @Value("${apex.tickets.endpoint}")
     private String apexTicketsEndpoint;
 
+    @Value("${apex.ticket_threads.endpoint}")
+    private String apexTicketThreadsEndpoint;
+
+    @Value("${apex.ticket_threads.max-per-request:500}")
+    private int maxThreadIdsPerRequest;
+
+    @Value("${apex.ticket-cache.preload:true}")
+    private boolean preloadOpenTickets;
+
     @Value("${apex.api.key}")
     private String apexApiKey;
 
-    public TicketService(RestTemplate restTemplate) {
+    private final long maxSize;
+
+    public TicketService(
+            RestTemplate restTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${apex.ticket-cache.max-size:10000}") long maxSize,
+            @Value("${apex.ticket-cache.ttl-minutes:60}") long ttlMinutes,
+            @Value("${apex.ticket-cache.negative-ttl-seconds:120}") long negativeTtlSeconds,
+            @Value("${apex.ticket-cache.refresh-minutes:45}") long refreshMinutes
+    ) {
         this.restTemplate = restTemplate;
+        this.meterRegistry = meterRegistry;
+        this.maxSize = maxSize;
+        Duration ttl = Duration.ofMinutes(ttlMinutes);
+        Duration negativeTtl = Duration.ofSeconds(negativeTtlSeconds);
+        this.threadIdToTicketIdCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Optional<Long>>() {
+                    @Override
+                    public long expireAfterCreate(String threadId, Optional<Long> ticketId, long currentTime) {
+                        return (ticketId.isPresent() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String threadId, Optional<Long> ticketId, long currentTime, long currentDuration) {
+                        return expireAfterCreate(threadId, ticketId, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String threadId, Optional<Long> ticketId, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .refreshAfterWrite(Duration.ofMinutes(refreshMinutes))
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public Optional<Long> load(String threadId) {
+                        return Optional.ofNullable(fetchTicketIdFromApex(threadId));
+                    }
+
+                    @Override
+                    public Map<String, Optional<Long>> loadAll(Set<? extends String> threadIds) {
+                        return fetchTicketIdsFromApex(threadIds);
+                    }
+                });
+        // size, hits, misses, evictions and load times as cache_* meters tagged cache=ticket_threads
+        CaffeineCacheMetrics.monitor(meterRegistry, threadIdToTicketIdCache, "ticket_threads");
+    }
+
+    /**
+     * Loads the thread mappings of all NEW and IN PROGRESS tickets, up to the cache size. A failure
+     * only means replies start with a cold cache, so it is logged and startup goes on.
+     */
+    @PostConstruct
+    public void preloadOpenTickets() {
+        if (!preloadOpenTickets) {
+            return;
+        }
+        int loaded = 0;
+        try {
+            Long afterTicketId = 0L;
+            while (afterTicketId != null && loaded < maxSize) {
+                TicketThreadsResponseDto page = fetchOpenTicketsPage(afterTicketId);
+                List<TicketByThreadDto> tickets = page.getTickets() == null ? List.of() : page.getTickets();
+                afterTicketId = null;
+                for (TicketByThreadDto ticket : tickets) {
+                    if (ticket.getEmailThreadId() != null && ticket.getTicketId() != null) {
+                        threadIdToTicketIdCache.put(ticket.getEmailThreadId(), Optional.of(ticket.getTicketId()));
+                        loaded++;
+                    }
+                    afterTicketId = ticket.getTicketId();
+                }
+                if (!page.isHasMore()) {
+                    break;
+                }
+            }
+            logger.info("🔥 Preloaded {} open ticket thread mappings", loaded);
+        } catch (Exception e) {
+            logger.warn("⚠️ Failed to preload open tickets after {} mappings, continuing with a cold cache: {}",
+                    loaded, e.getMessage());
+        }
     }
 
+    /**
+     * Timed with a {@code cache=hit} or {@code cache=miss} tag; a miss includes the APEX lookup.
+     */
     public Long getTicketIdByThreadId(String threadId) {
-        return threadIdToTicketIdCache.computeIfAbsent(threadId, this::fetchTicketIdFromApex);
+        // asMap() reads do not count towards the cache statistics
+        String cache = threadIdToTicketIdCache.asMap().containsKey(threadId) ? "hit" : "miss";
+        return StageTimer.time(meterRegistry, StageTimer.TICKET_LOOKUP,
+                () -> threadIdToTicketIdCache.get(threadId).orElse(null), "cache", cache);
+    }
+
+    /**
+     * Resolves many threads at once. Cached threads are answered locally and all others are looked
+     * up with one bulk request per {@code apex.ticket_threads.max-per-request} IDs. Threads without a
+     * ticket are absent from the result.
+     */
+    public Map<String, Long> resolveTicketIds(Collection<String> threadIds) {
+        List<String> distinct = threadIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinct.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Optional<Long>> found = StageTimer.time(meterRegistry, StageTimer.TICKET_LOOKUP,
+                () -> threadIdToTicketIdCache.getAll(distinct), "cache", "bulk");
+        Map<String, Long> resolved = new HashMap<>();
+        found.forEach((threadId, ticketId) -> ticketId.ifPresent(id -> resolved.put(threadId, id)));
+        return resolved;
+    }
+
+    /**
+     * Drops a cached lookup, e.g. a "no ticket" entry for a thread that just got its ticket.
+     */
+    public void invalidate(String threadId) {
+        if (threadId != null) {
+            threadIdToTicketIdCache.invalidate(threadId);
+        }
+    }
+
+    public CacheStats getCacheStats() {
+        return threadIdToTicketIdCache.stats();
+    }
+
+    public long getCacheSize() {
+        return threadIdToTicketIdCache.estimatedSize();
+    }
+
+    private Map<String, Optional<Long>> fetchTicketIdsFromApex(Set<? extends String> threadIds) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("x-api-key", apexApiKey);
+
+        Map<String, Optional<Long>> result = new HashMap<>();
+        for (List<? extends String> chunk : Iterables.partition(threadIds, maxThreadIdsPerRequest)) {
+            ResponseEntity<TicketThreadsResponseDto> response = restTemplate.exchange(
+                    apexTicketThreadsEndpoint,
+                    HttpMethod.POST,
+                    new HttpEntity<>(new TicketThreadsRequestDto(List.copyOf(chunk)), headers),
+                    TicketThreadsResponseDto.class
+            );
+            TicketThreadsResponseDto body = response.getBody();
+            if (body == null) {
+                throw new IllegalStateException("Empty response from APEX ticket_threads lookup");
+            }
+            chunk.forEach(threadId -> result.put(threadId, Optional.empty()));
+            if (body.getTickets() != null) {
+                for (TicketByThreadDto ticket : body.getTickets()) {
+                    if (ticket.getEmailThreadId() != null) {
+                        result.put(ticket.getEmailThreadId(), Optional.ofNullable(ticket.getTicketId()));
+                    }
+                }
+            }
+        }
+        logger.debug("Resolved {} thread IDs in bulk, {} with a ticket", threadIds.size(),
+                result.values().stream().filter(Optional::isPresent).count());
+        return result;
+    }
+
+    private TicketThreadsResponseDto fetchOpenTicketsPage(long afterTicketId) {
+        String url = UriComponentsBuilder.fromUriString(apexTicketThreadsEndpoint)
+                .queryParam("after_ticket_id", afterTicketId)
+                .queryParam("limit", maxThreadIdsPerRequest)
+                .build()
+                .toUriString();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("x-api-key", apexApiKey);
+
+        ResponseEntity<TicketThreadsResponseDto> response = restTemplate.exchange(
+                url,
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                TicketThreadsResponseDto.class
+        );
+        if (response.getBody() == null) {
+            throw new IllegalStateException("Empty response from APEX open tickets listing");
+        }
+        return response.getBody();
     }
 
     private Long fetchTicketIdFromApex(String threadId) {
@@ -84,8 +296,11 @@ public class TicketService {
     }
 
     @Scheduled(fixedRate = 3600000)
-    public void refreshCache() {
-        threadIdToTicketIdCache.clear();
-        logger.info("🔄 Cleared ticket ID cache");
+    public void logCacheStats() {
+        CacheStats stats = threadIdToTicketIdCache.stats();
+        logger.info("📊 Ticket ID cache: {} entries, hit rate {}, {} hits, {} misses, {} loads ({} failed), avg load {} ms, {} evictions",
+                threadIdToTicketIdCache.estimatedSize(), String.format("%.2f", stats.hitRate()),
+                stats.hitCount(), stats.missCount(), stats.loadCount(), stats.loadFailureCount(),
+                String.format("%.1f", stats.averageLoadPenalty() / 1_000_000.0), stats.evictionCount());
     }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package lt.dev.emailticketing.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Growable byte buffer that base64url-decodes Gmail part data straight into itself.
+ * <p>
+ * The encoded text is copied in fixed-size chunks into a scratch array and decoded with
+ * {@link Base64#getUrlDecoder()}, so no intermediate padded or re-alphabeted String is built.
+ * One buffer is meant to be reused for every part of a message; it never grows past its limit
+ * and silently drops whatever does not fit.
+ */
+public final class DecodedBodyBuffer {
+
+    // multiple of 4, so every full chunk decodes on its own
+    private static final int CHUNK_CHARS = 8192;
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final int limit;
+    private final byte[] chunk = new byte[CHUNK_CHARS];
+    private final byte[] decoded = new byte[CHUNK_CHARS / 4 * 3];
+    private byte[] buffer;
+    private int length;
+    private boolean truncated;
+
+    public DecodedBodyBuffer(int initialCapacity, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+        this.buffer = new byte[Math.max(0, Math.min(initialCapacity, limit))];
+    }
+
+    /**
+     * Decodes base64url (or standard base64) data and appends it. Padding and whitespace are ignored.
+     *
+     * @return the number of bytes appended, which is short of the decoded size once the limit is hit
+     * @throws IllegalArgumentException if the data is not valid base64; bytes decoded from earlier
+     *                                  chunks of the same data stay in the buffer
+     */
+    public int appendBase64(CharSequence data) {
+        int start = length;
+        int filled = 0;
+        for (int i = 0, n = data.length(); i < n && !truncated; i++) {
+            char c = data.charAt(i);
+            switch (c) {
+                case '=', '\r', '\n', ' ', '\t' -> {
+                    continue;
+                }
+                case '+' -> c = '-';
+                case '/' -> c = '_';
+                default -> {
+                    if (c > 0x7f) {
+                        throw new IllegalArgumentException("Illegal base64 character " + Integer.toHexString(c));
+                    }
+                }
+            }
+            chunk[filled++] = (byte) c;
+            if (filled == CHUNK_CHARS) {
+                write(decoded, DECODER.decode(chunk, decoded));
+                filled = 0;
+            }
+        }
+        if (filled > 0 && !truncated) {
+            byte[] tail = DECODER.decode(Arrays.copyOf(chunk, filled));
+            write(tail, tail.length);
+        }
+        return length - start;
+    }
+
+    /**
+     * Decodes the bytes from {@code offset} to the current end with the given charset.
+     */
+    public String toString(int offset, Charset charset) {
+        return new String(buffer, offset, length - offset, charset);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * True once data had to be dropped because the limit was reached.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void reset() {
+        truncate(0);
+    }
+
+    /**
+     * Drops everything after {@code newLength}, e.g. the partial output of data that failed to decode.
+     */
+    public void truncate(int newLength) {
+        if (newLength < 0 || newLength > length) {
+            throw new IndexOutOfBoundsException("newLength " + newLength + " outside [0, " + length + "]");
+        }
+        length = newLength;
+        truncated = false;
+    }
+
+    private void write(byte[] bytes, int count) {
+        int fits = Math.min(count, limit - length);
+        if (fits < count) {
+            truncated = true;
+        }
+        if (fits <= 0) {
+            return;
+        }
+        if (length + fits > buffer.length) {
+            int grown = Math.max(buffer.length * 2, length + fits);
+            buffer = Arrays.copyOf(buffer, Math.min(grown, limit));
+        }
+        System.arraycopy(bytes, 0, buffer, length, fits);
+        length += fits;
+    }
+}
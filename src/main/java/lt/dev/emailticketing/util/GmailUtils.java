@@ -3,46 +3,95 @@ package lt.dev.emailticketing.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Base64;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 public class GmailUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(GmailUtils.class);
 
     public static String decodeBase64(String encodedData) {
+        return decodeBase64(encodedData, StandardCharsets.UTF_8);
+    }
+
+    public static String decodeBase64(String encodedData, Charset charset) {
         if (encodedData == null) return "";
         try {
-            String standardBase64 = encodedData.replace('-', '+').replace('_', '/');
-            int padding = (4 - standardBase64.length() % 4) % 4;
-            standardBase64 += "=".repeat(padding);
-            return new String(Base64.getDecoder().decode(standardBase64));
+            DecodedBodyBuffer buffer = new DecodedBodyBuffer(encodedData.length() / 4 * 3 + 3, Integer.MAX_VALUE);
+            buffer.appendBase64(encodedData);
+            return buffer.toString(0, charset);
         } catch (IllegalArgumentException e) {
-            logger.error("Failed to decode Base64 data: {}", encodedData, e);
+            logger.error("Failed to decode Base64 data ({} chars): {}", encodedData.length(), e.getMessage());
             return "";
         }
     }
 
-    public static String normalizeParagraphs(String text) {
-        String[] lines = text.split("\r?\n");
-
-        StringBuilder normalized = new StringBuilder();
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i].trim();
+    /**
+     * Joins hard-wrapped lines into paragraphs: every line is trimmed, consecutive non-blank lines
+     * are joined with a space, and each blank line becomes a paragraph break ({@code "\n\n"}).
+     * Lines end at {@code \n} or {@code \r\n}; empty lines at the very end are dropped.
+     */
+    public static String normalizeParagraphs(CharSequence text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        appendNormalizedParagraphs(text, normalized);
+        return normalized.toString();
+    }
 
-            if (line.isEmpty()) {
-                normalized.append("\n\n");
-                continue;
+    /**
+     * Single-pass form of {@link #normalizeParagraphs(CharSequence)} that appends to {@code out}.
+     * Each line is scanned once and copied once, without splitting or trimming into new Strings.
+     */
+    public static void appendNormalizedParagraphs(CharSequence text, StringBuilder out) {
+        int length = text.length();
+        if (length == 0) {
+            // an empty input is a single blank line, as with String.split
+            out.append("\n\n");
+            return;
+        }
+        // empty lines are held back until a later non-empty line shows they are not trailing
+        int pendingEmptyLines = 0;
+        boolean previousHasText = false;
+        int lineStart = 0;
+        while (lineStart <= length) {
+            int newline = lineStart;
+            while (newline < length && text.charAt(newline) != '\n') {
+                newline++;
+            }
+            if (newline == length && lineStart == length) {
+                break;
+            }
+            int lineEnd = newline;
+            if (newline < length && lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r') {
+                lineEnd--;
             }
 
-            normalized.append(line);
-
-            if (i + 1 < lines.length) {
-                String nextLine = lines[i + 1].trim();
-                if (!nextLine.isEmpty()) {
-                    normalized.append(" ");
+            if (lineEnd == lineStart) {
+                pendingEmptyLines++;
+                previousHasText = false;
+            } else {
+                for (; pendingEmptyLines > 0; pendingEmptyLines--) {
+                    out.append("\n\n");
+                }
+                int from = lineStart;
+                int to = lineEnd;
+                while (from < to && text.charAt(from) <= ' ') {
+                    from++;
+                }
+                while (to > from && text.charAt(to - 1) <= ' ') {
+                    to--;
+                }
+                if (from == to) {
+                    out.append("\n\n");
+                    previousHasText = false;
+                } else {
+                    if (previousHasText) {
+                        out.append(' ');
+                    }
+                    out.append(text, from, to);
+                    previousHasText = true;
                 }
             }
+            lineStart = newline + 1;
         }
-        return normalized.toString();
     }
 }
@@ -0,0 +1,173 @@
+package lt.dev.emailticketing.util;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lt.dev.emailticketing.internal.IngestionLagReport;
+import lt.dev.emailticketing.internal.IngestionLagReport.SlowEmail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * End-to-end ingestion lag: the time from Gmail receiving a message ({@code internalDate}) to APEX
+ * acknowledging the ticket or reply posted for it. This is what the "a ticket exists within N minutes"
+ * promise is about, so polling interval and concurrency are tuned against it.
+ * <p>
+ * Lags go into the {@code emailticketing.ingestion.lag} timer, whose p50 and p99 come from an HDR
+ * histogram sliding over the last {@code gmail.ingestion.window-seconds}, with an SLO bucket at
+ * {@code gmail.ingestion.slo-seconds}; lags above it also count as {@code emailticketing.ingestion.slo.breaches}.
+ * At the end of every window the slowest messages are logged by email ID.
+ */
+@Component
+public class IngestionLagTracker {
+    private static final Logger logger = LoggerFactory.getLogger(IngestionLagTracker.class);
+
+    public static final String LAG = "emailticketing.ingestion.lag";
+    public static final String SLO_BREACHES = "emailticketing.ingestion.slo.breaches";
+
+    private final Clock clock;
+    private final Timer lag;
+    private final Counter breaches;
+    private final long sloMillis;
+    private final long windowSeconds;
+    private final int slowestLogged;
+
+    // slowest messages of the current window, the fastest of them on top
+    private final PriorityQueue<SlowEmail> slowest;
+    private long windowDelivered;
+    private long windowBreaches;
+    private volatile List<SlowEmail> lastWindowSlowest = List.of();
+
+    public IngestionLagTracker(
+            MeterRegistry meterRegistry,
+            @Value("${gmail.ingestion.slo-seconds:300}") long sloSeconds,
+            @Value("${gmail.ingestion.window-seconds:60}") long windowSeconds,
+            @Value("${gmail.ingestion.slowest-logged:5}") int slowestLogged
+    ) {
+        this.clock = meterRegistry.config().clock();
+        this.sloMillis = TimeUnit.SECONDS.toMillis(sloSeconds);
+        this.windowSeconds = windowSeconds;
+        this.slowestLogged = slowestLogged;
+        this.slowest = new PriorityQueue<>(Math.max(1, slowestLogged + 1),
+                Comparator.comparingDouble(SlowEmail::lagSeconds));
+        this.lag = Timer.builder(LAG)
+                .description("Time from Gmail receiving a message to APEX acknowledging its ticket or reply")
+                .publishPercentiles(0.5, 0.99)
+                .percentilePrecision(2)
+                .serviceLevelObjectives(Duration.ofSeconds(sloSeconds))
+                .distributionStatisticExpiry(Duration.ofSeconds(windowSeconds))
+                .register(meterRegistry);
+        this.breaches = Counter.builder(SLO_BREACHES)
+                .description("Messages acknowledged by APEX later than the ingestion SLO")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a message APEX has just acknowledged. {@code gmailDate} is the ISO-8601 receipt time
+     * posted with its DTO; without a parseable one the message is not counted.
+     */
+    public void recordDelivered(String emailId, String gmailDate) {
+        if (gmailDate == null) {
+            return;
+        }
+        long receivedAt;
+        try {
+            receivedAt = Instant.parse(gmailDate).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            logger.debug("No ingestion lag for {}, unreadable date {}", emailId, gmailDate);
+            return;
+        }
+        long lagMillis = Math.max(0, clock.wallTime() - receivedAt);
+        boolean breach = lagMillis > sloMillis;
+
+        lag.record(lagMillis, TimeUnit.MILLISECONDS);
+        if (breach) {
+            breaches.increment();
+        }
+        synchronized (slowest) {
+            windowDelivered++;
+            if (breach) {
+                windowBreaches++;
+            }
+            if (slowestLogged > 0) {
+                slowest.add(new SlowEmail(emailId, lagMillis / 1000.0));
+                if (slowest.size() > slowestLogged) {
+                    slowest.poll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Logs the window that just ended, with its slowest messages, and starts a new one.
+     */
+    @Scheduled(fixedRateString = "${gmail.ingestion.window-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void closeWindow() {
+        List<SlowEmail> top;
+        long delivered;
+        long breached;
+        synchronized (slowest) {
+            top = new ArrayList<>(slowest);
+            slowest.clear();
+            delivered = windowDelivered;
+            breached = windowBreaches;
+            windowDelivered = 0;
+            windowBreaches = 0;
+        }
+        top.sort(Comparator.comparingDouble(SlowEmail::lagSeconds).reversed());
+        lastWindowSlowest = List.copyOf(top);
+        if (delivered == 0) {
+            return;
+        }
+
+        IngestionLagReport report = report();
+        String slowestIds = top.stream()
+                .map(s -> s.emailId() + " " + seconds(s.lagSeconds()))
+                .collect(Collectors.joining(", "));
+        if (breached > 0) {
+            logger.warn("⏱️ Ingestion lag over the last {} s: {} delivered, {} over the {} SLO, p50 {}, p99 {}, max {}; slowest: {}",
+                    windowSeconds, delivered, breached, seconds(report.sloSeconds()), seconds(report.p50Seconds()),
+                    seconds(report.p99Seconds()), seconds(report.maxSeconds()), slowestIds);
+        } else {
+            logger.info("⏱️ Ingestion lag over the last {} s: {} delivered, p50 {}, p99 {}, max {}; slowest: {}",
+                    windowSeconds, delivered, seconds(report.p50Seconds()), seconds(report.p99Seconds()),
+                    seconds(report.maxSeconds()), slowestIds);
+        }
+    }
+
+    public IngestionLagReport report() {
+        HistogramSnapshot snapshot = lag.takeSnapshot();
+        double p50 = 0;
+        double p99 = 0;
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == 0.5) {
+                p50 = value.value(TimeUnit.SECONDS);
+            } else if (value.percentile() == 0.99) {
+                p99 = value.value(TimeUnit.SECONDS);
+            }
+        }
+        return new IngestionLagReport(sloMillis / 1000.0, windowSeconds, p50, p99,
+                snapshot.max(TimeUnit.SECONDS), snapshot.count(), (long) breaches.count(), lastWindowSlowest);
+    }
+
+    private static String seconds(double seconds) {
+        return String.format(Locale.ROOT, "%.1f s", seconds);
+    }
+}
@@ -0,0 +1,224 @@
+package lt.dev.emailticketing.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of pending payloads, kept in memory-mapped segment files.
+ * <p>
+ * Each record is {@code [int length][byte state][byte kind][long seq][int crc][payload]}. Acknowledging
+ * a record flips its state byte in place, so a segment never has to be rewritten; once every record in
+ * a segment is acknowledged the file is deleted. On open all segments are replayed, records that are
+ * still pending are returned by {@link #pending()}, and appends go to a fresh segment. A record whose
+ * checksum does not match (a write torn by a crash) ends the replay of its segment.
+ * <p>
+ * Not a general purpose queue: payloads must be non-empty, and ordering is only guaranteed by {@code seq}.
+ */
+public class OutboxJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxJournal.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int HEADER_BYTES = 4 + 1 + 1 + 8 + 4;
+    private static final int STATE_OFFSET = 4;
+    private static final byte STATE_PENDING = 1;
+    private static final byte STATE_ACKED = 2;
+
+    public record Entry(long seq, byte kind, byte[] payload) {
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final List<Segment> segments = new ArrayList<>();
+    // seq -> segment and offset of every record not acknowledged yet
+    private final Map<Long, Location> live = new HashMap<>();
+    private final List<Entry> replayed = new ArrayList<>();
+
+    private Segment active;
+    private long nextSeq = 1;
+
+    public OutboxJournal(Path directory, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        replay();
+    }
+
+    /**
+     * Records that were still pending when the journal was opened, ordered by sequence number.
+     */
+    public synchronized List<Entry> pending() {
+        return List.copyOf(replayed);
+    }
+
+    /**
+     * Appends a payload and forces it to disk before returning its sequence number.
+     */
+    public synchronized long append(byte kind, byte[] payload) throws IOException {
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("Empty payload");
+        }
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (active == null || active.buffer.remaining() < recordBytes) {
+            roll(recordBytes);
+        }
+
+        long seq = nextSeq++;
+        MappedByteBuffer buffer = active.buffer;
+        int offset = buffer.position();
+        buffer.position(offset + 4);
+        buffer.put(STATE_PENDING)
+                .put(kind)
+                .putLong(seq)
+                .putInt(checksum(kind, seq, payload))
+                .put(payload);
+        // the length goes in last: until it is written the record reads as end-of-segment
+        buffer.putInt(offset, payload.length);
+        buffer.force(offset, recordBytes);
+
+        active.liveRecords++;
+        live.put(seq, new Location(active, offset));
+        return seq;
+    }
+
+    /**
+     * Marks a record as delivered. Unknown sequence numbers are ignored.
+     */
+    public synchronized void acknowledge(long seq) {
+        Location location = live.remove(seq);
+        if (location == null) {
+            return;
+        }
+        replayed.removeIf(e -> e.seq() == seq);
+        Segment segment = location.segment();
+        segment.buffer.put(location.offset() + STATE_OFFSET, STATE_ACKED);
+        segment.buffer.force(location.offset() + STATE_OFFSET, 1);
+        segment.liveRecords--;
+        if (segment.liveRecords == 0 && segment != active) {
+            delete(segment);
+        }
+    }
+
+    public synchronized int size() {
+        return live.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        segments.clear();
+        live.clear();
+        active = null;
+    }
+
+    private void replay() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.naturalOrder());
+
+        for (Path file : files) {
+            Segment segment;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                segment = new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            }
+            readRecords(segment);
+            if (segment.liveRecords == 0) {
+                Files.deleteIfExists(file);
+            } else {
+                segments.add(segment);
+            }
+        }
+        replayed.sort(Comparator.comparingLong(Entry::seq));
+        if (!replayed.isEmpty()) {
+            logger.info("📮 Outbox journal {} holds {} pending records in {} segments",
+                    directory, replayed.size(), segments.size());
+        }
+    }
+
+    private void readRecords(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int offset = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - (HEADER_BYTES - 4)) {
+                break;
+            }
+            byte state = buffer.get();
+            byte kind = buffer.get();
+            long seq = buffer.getLong();
+            int crc = buffer.getInt();
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            if (crc != checksum(kind, seq, payload)) {
+                logger.warn("⚠️ Outbox segment {} has a torn record at offset {}, ignoring the rest",
+                        segment.path.getFileName(), offset);
+                break;
+            }
+            nextSeq = Math.max(nextSeq, seq + 1);
+            if (state == STATE_PENDING) {
+                segment.liveRecords++;
+                live.put(seq, new Location(segment, offset));
+                replayed.add(new Entry(seq, kind, payload));
+            }
+        }
+    }
+
+    private void roll(int minBytes) throws IOException {
+        Segment previous = active;
+        Path file = directory.resolve(String.format("%020d%s", nextSeq, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            active = new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, minBytes)));
+        }
+        segments.add(active);
+        if (previous != null && previous.liveRecords == 0) {
+            delete(previous);
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            logger.warn("⚠️ Could not delete drained outbox segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    private static int checksum(byte kind, long seq, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(kind);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (seq >>> shift));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static final class Segment {
+        final Path path;
+        final MappedByteBuffer buffer;
+        int liveRecords;
+
+        Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private record Location(Segment segment, int offset) {
+    }
+}
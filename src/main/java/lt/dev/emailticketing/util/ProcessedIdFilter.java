@@ -0,0 +1,201 @@
+package lt.dev.emailticketing.util;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bloom filters over the {@code processed_emails} and {@code processed_replies} IDs known to APEX.
+ * <p>
+ * A negative answer means "definitely not processed", so the remote APEX check can be skipped; a
+ * positive answer only means "maybe" and the caller still asks APEX. The filters are rebuilt from
+ * every complete refresh and every successful post is recorded in them, so they stay exact on the
+ * negative side as long as this service is the one writing those rows. Until the first complete
+ * refresh every lookup answers "maybe". IDs added between rebuilds fill the filters past what they
+ * were sized for; {@link #needsRebuild()} tells when that has pushed the false positive rate over target.
+ * <p>
+ * The expected false positive rate and the memory taken are published as the
+ * {@code emailticketing.processed.filter.fpp} and {@code emailticketing.processed.filter.memory} gauges.
+ */
+@Component
+public class ProcessedIdFilter implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessedIdFilter.class);
+
+    public static final String FALSE_POSITIVE_RATE = "emailticketing.processed.filter.fpp";
+    public static final String MEMORY = "emailticketing.processed.filter.memory";
+
+    // headroom for posts recorded between refreshes
+    private static final int MIN_EXPECTED_INSERTIONS = 1000;
+
+    private final boolean enabled;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter<CharSequence> emails;
+    private volatile BloomFilter<CharSequence> replies;
+    private volatile long memoryBytes;
+
+    // IDs recorded while a refresh is in flight, so they are not lost when the new filters are swapped in
+    private final Set<String> recordedEmailsSinceRefresh = ConcurrentHashMap.newKeySet();
+    private final Set<String> recordedRepliesSinceRefresh = ConcurrentHashMap.newKeySet();
+    private volatile boolean refreshing;
+
+    public ProcessedIdFilter(
+            @Value("${apex.processed-filter.enabled:true}") boolean enabled,
+            @Value("${apex.processed-filter.fpp:0.01}") double falsePositiveRate
+    ) {
+        this.enabled = enabled;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(FALSE_POSITIVE_RATE, this, ProcessedIdFilter::getFalsePositiveRate)
+                .description("Expected false positive rate of the processed-ID filters, 1 until they are built")
+                .register(registry);
+        Gauge.builder(MEMORY, this, ProcessedIdFilter::getMemoryBytes)
+                .description("Approximate memory taken by the processed-ID filters")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public boolean mightContainEmail(String emailId) {
+        BloomFilter<CharSequence> filter = emails;
+        return filter == null || filter.mightContain(emailId);
+    }
+
+    public boolean mightContainReply(String emailId) {
+        BloomFilter<CharSequence> filter = replies;
+        return filter == null || filter.mightContain(emailId);
+    }
+
+    public void recordEmail(String emailId) {
+        if (refreshing) {
+            recordedEmailsSinceRefresh.add(emailId);
+        }
+        BloomFilter<CharSequence> filter = emails;
+        if (filter != null) {
+            filter.put(emailId);
+        }
+    }
+
+    public void recordReply(String emailId) {
+        if (refreshing) {
+            recordedRepliesSinceRefresh.add(emailId);
+        }
+        BloomFilter<CharSequence> filter = replies;
+        if (filter != null) {
+            filter.put(emailId);
+        }
+    }
+
+    /**
+     * Adds IDs picked up by a delta refresh to the current filters.
+     */
+    public void add(Collection<String> emailIds, Collection<String> replyIds) {
+        BloomFilter<CharSequence> e = emails;
+        BloomFilter<CharSequence> r = replies;
+        if (e != null) {
+            emailIds.forEach(e::put);
+        }
+        if (r != null) {
+            replyIds.forEach(r::put);
+        }
+    }
+
+    /**
+     * Marks the start of a refresh; call before fetching the ID lists from APEX. Until
+     * {@link #rebuild} or {@link #endRefresh()}, recorded IDs are also kept aside for the new filters.
+     */
+    public void beginRefresh() {
+        recordedEmailsSinceRefresh.clear();
+        recordedRepliesSinceRefresh.clear();
+        refreshing = true;
+    }
+
+    /**
+     * Ends a refresh that did not get complete lists, dropping the IDs kept aside for it.
+     */
+    public void endRefresh() {
+        refreshing = false;
+        recordedEmailsSinceRefresh.clear();
+        recordedRepliesSinceRefresh.clear();
+    }
+
+    /**
+     * Replaces both filters, sized for the given lists. Only call this with complete lists.
+     */
+    public void rebuild(Collection<String> emailIds, Collection<String> replyIds) {
+        if (!enabled) {
+            endRefresh();
+            return;
+        }
+        BloomFilter<CharSequence> nextEmails = build(emailIds, recordedEmailsSinceRefresh);
+        BloomFilter<CharSequence> nextReplies = build(replyIds, recordedRepliesSinceRefresh);
+        emails = nextEmails;
+        replies = nextReplies;
+        // a record() that read the old filter after build() copied the set is repeated here
+        recordedEmailsSinceRefresh.forEach(nextEmails::put);
+        recordedRepliesSinceRefresh.forEach(nextReplies::put);
+        endRefresh();
+
+        memoryBytes = bitSize(expectedInsertions(emailIds)) / 8 + bitSize(expectedInsertions(replyIds)) / 8;
+        logger.info("🌸 Rebuilt processed-ID filters: {} emails, {} replies, ~{} KiB, expected false positive rate {}",
+                emailIds.size(), replyIds.size(), memoryBytes / 1024, getFalsePositiveRate());
+    }
+
+    public boolean isReady() {
+        return emails != null && replies != null;
+    }
+
+    /**
+     * True once the filters hold so many more IDs than they were sized for that their false positive
+     * rate is above {@code apex.processed-filter.fpp}; rebuild them from complete lists then.
+     */
+    public boolean needsRebuild() {
+        return isReady() && getFalsePositiveRate() > falsePositiveRate;
+    }
+
+    /**
+     * Current estimated false positive rate, the worse of the two filters.
+     */
+    public double getFalsePositiveRate() {
+        BloomFilter<CharSequence> e = emails;
+        BloomFilter<CharSequence> r = replies;
+        if (e == null || r == null) {
+            return 1.0;
+        }
+        return Math.max(e.expectedFpp(), r.expectedFpp());
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    private BloomFilter<CharSequence> build(Collection<String> ids, Set<String> recorded) {
+        BloomFilter<CharSequence> filter = BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions(ids), falsePositiveRate);
+        ids.forEach(filter::put);
+        recorded.forEach(filter::put);
+        return filter;
+    }
+
+    private static int expectedInsertions(Collection<String> ids) {
+        return Math.max(MIN_EXPECTED_INSERTIONS, ids.size() + ids.size() / 2);
+    }
+
+    private long bitSize(int expectedInsertions) {
+        // same sizing formula Guava uses internally
+        return (long) (-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    }
+}
@@ -0,0 +1,221 @@
+package lt.dev.emailticketing.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe set of processed Gmail message IDs.
+ * <p>
+ * Gmail IDs are 16 lowercase hex digits, so the bulk of the set is kept as primitive {@code long}s in
+ * an immutable open-addressing table (12-24 bytes per ID depending on fill, instead of ~100 for a
+ * boxed String in a HashSet). Anything else, such as the GUIDs APEX stores for its own replies,
+ * goes into a small String overflow set. IDs added between refreshes live in a concurrent delta set.
+ * <p>
+ * Reads never lock: they probe the current snapshot and the delta. {@link #replaceWith(Collection)}
+ * and {@link #merge(Collection)} build a new snapshot off to the side and swap it in atomically.
+ */
+public class ProcessedIdSet extends AbstractSet<String> {
+
+    private static final int GMAIL_ID_LENGTH = 16;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private final Set<String> added = ConcurrentHashMap.newKeySet();
+
+    public ProcessedIdSet() {
+    }
+
+    public ProcessedIdSet(Collection<String> ids) {
+        this.snapshot = Snapshot.build(ids, Snapshot.EMPTY, Set.of());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String id)) {
+            return false;
+        }
+        return snapshot.contains(id) || added.contains(id);
+    }
+
+    @Override
+    public boolean add(String id) {
+        Objects.requireNonNull(id);
+        if (snapshot.contains(id)) {
+            return false;
+        }
+        return added.add(id);
+    }
+
+    /**
+     * Replaces the content with {@code ids}, keeping IDs added since the last refresh.
+     */
+    public void replaceWith(Collection<String> ids) {
+        swap(ids, Snapshot.EMPTY);
+    }
+
+    /**
+     * Adds {@code ids} to the current content in one snapshot swap.
+     */
+    public void merge(Collection<String> ids) {
+        swap(ids, snapshot);
+    }
+
+    private synchronized void swap(Collection<String> ids, Snapshot base) {
+        List<String> pending = new ArrayList<>(added);
+        Snapshot next = Snapshot.build(ids, base, pending);
+        snapshot = next;
+        // only drop what the new snapshot covers; adds that raced with the build stay in the delta
+        pending.forEach(added::remove);
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size() + added.size();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        Snapshot current = snapshot;
+        List<String> ids = new ArrayList<>(current.size() + added.size());
+        current.forEach(ids::add);
+        for (String id : added) {
+            if (!current.contains(id)) {
+                ids.add(id);
+            }
+        }
+        return Collections.unmodifiableList(ids).iterator();
+    }
+
+    static boolean isPackable(String id) {
+        if (id.length() != GMAIL_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < GMAIL_ID_LENGTH; i++) {
+            char c = id.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static long pack(String id) {
+        return Long.parseUnsignedLong(id, 16);
+    }
+
+    static String unpack(long value) {
+        String hex = Long.toHexString(value);
+        return "0".repeat(GMAIL_ID_LENGTH - hex.length()) + hex;
+    }
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new long[0], false, 0, Set.of());
+
+        // 0 marks an empty slot, the all-zero ID is tracked by a flag instead
+        private final long[] table;
+        private final boolean containsZero;
+        private final int packedCount;
+        private final Set<String> overflow;
+
+        private Snapshot(long[] table, boolean containsZero, int packedCount, Set<String> overflow) {
+            this.table = table;
+            this.containsZero = containsZero;
+            this.packedCount = packedCount;
+            this.overflow = overflow;
+        }
+
+        static Snapshot build(Collection<String> ids, Snapshot base, Collection<String> extra) {
+            int expected = base.size() + ids.size() + extra.size();
+            // load factor of 2/3 keeps linear probe chains short
+            int capacity = Integer.highestOneBit(Math.max(4, expected + expected / 2) - 1) << 1;
+            long[] table = new long[capacity];
+            boolean containsZero = base.containsZero;
+            int count = containsZero ? 1 : 0;
+            Set<String> overflow = new HashSet<>(base.overflow);
+
+            for (long value : base.table) {
+                if (value != 0 && insert(table, value)) {
+                    count++;
+                }
+            }
+            for (Collection<String> source : List.of(ids, extra)) {
+                for (String id : source) {
+                    if (id == null) {
+                        continue;
+                    }
+                    if (!isPackable(id)) {
+                        overflow.add(id);
+                        continue;
+                    }
+                    long value = pack(id);
+                    if (value == 0) {
+                        if (!containsZero) {
+                            containsZero = true;
+                            count++;
+                        }
+                    } else if (insert(table, value)) {
+                        count++;
+                    }
+                }
+            }
+            return new Snapshot(table, containsZero, count, Set.copyOf(overflow));
+        }
+
+        private static boolean insert(long[] table, long value) {
+            int mask = table.length - 1;
+            int slot = slot(value, mask);
+            while (table[slot] != 0) {
+                if (table[slot] == value) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+            return true;
+        }
+
+        boolean contains(String id) {
+            if (!isPackable(id)) {
+                return overflow.contains(id);
+            }
+            long value = pack(id);
+            if (value == 0) {
+                return containsZero;
+            }
+            if (table.length == 0) {
+                return false;
+            }
+            int mask = table.length - 1;
+            int slot = slot(value, mask);
+            long current;
+            while ((current = table[slot]) != 0) {
+                if (current == value) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        int size() {
+            return packedCount + overflow.size();
+        }
+
+        void forEach(Consumer<String> action) {
+            if (containsZero) {
+                action.accept(unpack(0));
+            }
+            for (long value : table) {
+                if (value != 0) {
+                    action.accept(unpack(value));
+                }
+            }
+            overflow.forEach(action);
+        }
+
+        private static int slot(long value, int mask) {
+            // Fibonacci hashing spreads the sequential-ish Gmail IDs over the table
+            return (int) ((value * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package lt.dev.emailticketing.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application-wide executor for the blocking Gmail and APEX work of inbox scans.
+ * <p>
+ * In {@code virtual} mode every task gets its own virtual thread and a semaphore caps how many run
+ * at once; in {@code fixed} mode a platform thread pool of {@code gmail.thread-pool-size} is used.
+ * Either way the executor lives as long as the application context and is shut down with it.
+ * Waiting and running tasks are published as gauges.
+ */
+@Component
+public final class ProcessingExecutor implements MeterBinder, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingExecutor.class);
+
+    private final ExecutorService executorService;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    public ProcessingExecutor(
+            @Value("${gmail.executor.mode:virtual}") String mode,
+            @Value("${gmail.executor.max-concurrency:200}") int maxConcurrency,
+            @Value("${gmail.thread-pool-size:2}") int threadPoolSize
+    ) {
+        if ("fixed".equalsIgnoreCase(mode)) {
+            this.executorService = Executors.newFixedThreadPool(threadPoolSize);
+            this.permits = new Semaphore(threadPoolSize);
+        } else {
+            this.executorService = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("email-processing-", 0).factory());
+            this.permits = new Semaphore(maxConcurrency);
+        }
+        this.maxConcurrency = permits.availablePermits();
+        logger.info("Email processing executor started in {} mode, max concurrency {}", mode, this.maxConcurrency);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("emailticketing.executor.queued", this, ProcessingExecutor::getWaitingTasks)
+                .description("Tasks waiting for a free slot")
+                .register(registry);
+        Gauge.builder("emailticketing.executor.active", this, ProcessingExecutor::getActiveTasks)
+                .description("Tasks running")
+                .register(registry);
+    }
+
+    public CompletableFuture<Void> submit(Runnable task) {
+        return submit(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the task once a slot is free. Cancelling the returned future interrupts the task, or
+     * drops it if it has not started, and its slot is given back either way.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> worker = executorService.submit(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+                return;
+            }
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                permits.release();
+            }
+        });
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                worker.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Starts a group of tasks whose {@code close()} waits for all of them, e.g. one inbox scan.
+     */
+    public TaskGroup newTaskGroup() {
+        return new TaskGroup(this);
+    }
+
+    public int getWaitingTasks() {
+        // a fixed pool queues tasks before they ever reach the semaphore
+        int queued = executorService instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0;
+        return queued + permits.getQueueLength();
+    }
+
+    public int getActiveTasks() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
+                executorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
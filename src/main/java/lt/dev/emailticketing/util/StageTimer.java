@@ -0,0 +1,48 @@
+package lt.dev.emailticketing.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Names of the pipeline's Micrometer meters and a helper that times one call of a stage, tagging it
+ * {@code outcome=success} or {@code outcome=error} depending on whether the call threw.
+ * Exposed on {@code /actuator/prometheus} with underscores, e.g. {@code emailticketing_gmail_fetch_seconds}.
+ */
+public final class StageTimer {
+
+    public static final String GMAIL_FETCH = "emailticketing.gmail.fetch";
+    public static final String GMAIL_SEND_REPLY = "emailticketing.gmail.send.reply";
+    public static final String PARSE = "emailticketing.parse";
+    public static final String PROCESSED_CHECK = "emailticketing.apex.processed.check";
+    public static final String TICKET_LOOKUP = "emailticketing.ticket.lookup";
+    public static final String APEX_SEND = "emailticketing.apex.send";
+
+    public static final String OUTCOME = "outcome";
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+
+    private StageTimer() {
+    }
+
+    @FunctionalInterface
+    public interface Stage<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * Runs {@code stage} and records its duration under {@code name} with the given tag pairs plus
+     * the outcome. Exceptions are rethrown unchanged.
+     */
+    public static <T, E extends Exception> T time(MeterRegistry registry, String name, Stage<T, E> stage,
+                                                  String... tags) throws E {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = ERROR;
+        try {
+            T result = stage.call();
+            outcome = SUCCESS;
+            return result;
+        } finally {
+            sample.stop(Timer.builder(name).tags(tags).tag(OUTCOME, outcome).register(registry));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package lt.dev.emailticketing.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tasks submitted to the shared {@link ProcessingExecutor} on behalf of one unit of work.
+ * Closing the group waits (up to 60 seconds) for all of them without shutting the executor down;
+ * tasks still running after that are interrupted.
+ */
+public final class TaskGroup implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TaskGroup.class);
+
+    private final ProcessingExecutor executor;
+    private final List<CompletableFuture<?>> futures = new ArrayList<>();
+
+    TaskGroup(ProcessingExecutor executor) {
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Void> submit(Runnable task) {
+        return track(executor.submit(task));
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        return track(executor.submit(task));
+    }
+
+    private synchronized <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        futures.add(future);
+        return future;
+    }
+
+    @Override
+    public void close() {
+        CompletableFuture<?>[] pending;
+        synchronized (this) {
+            pending = futures.toArray(new CompletableFuture<?>[0]);
+        }
+        try {
+            CompletableFuture.allOf(pending).get(60, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            long unfinished = Arrays.stream(pending).filter(f -> !f.isDone()).count();
+            logger.warn("⚠️ {} tasks still running after 60 s, interrupting them", unfinished);
+            for (CompletableFuture<?> future : pending) {
+                future.cancel(true);
+            }
+        } catch (ExecutionException e) {
+            // individual task failures are reported by the tasks themselves
+            logger.debug("Task in group failed: {}", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
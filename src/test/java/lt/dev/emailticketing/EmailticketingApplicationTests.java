@@ -1,11 +1,17 @@
 package lt.dev.emailticketing;
 
+import lt.dev.emailticketing.client.GmailClientService;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
 @SpringBootTest
 class EmailticketingApplicationTests {
 
+	// startup would otherwise run the interactive Gmail OAuth flow
+	@MockitoBean
+	private GmailClientService gmailClientService;
+
 	@Test
 	void contextLoads() {
 	}
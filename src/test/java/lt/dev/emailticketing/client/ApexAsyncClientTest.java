@@ -0,0 +1,63 @@
+package lt.dev.emailticketing.client;
+
+import lt.dev.emailticketing.sender.ApexSenderService;
+import lt.dev.emailticketing.service.ProcessedCheckService;
+import lt.dev.emailticketing.service.TicketService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ApexAsyncClientTest {
+
+    private ApexSenderService apexSenderService;
+    private ProcessedCheckService processedCheckService;
+    private TicketService ticketService;
+    private ApexAsyncClient client;
+
+    @BeforeEach
+    void setUp() {
+        apexSenderService = mock(ApexSenderService.class);
+        processedCheckService = mock(ProcessedCheckService.class);
+        ticketService = mock(TicketService.class);
+        client = new ApexAsyncClient(apexSenderService, processedCheckService, ticketService, 4, 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+    }
+
+    @Test
+    void calls_shouldCompleteWithBlockingResult() {
+        Object dto = new Object();
+        when(apexSenderService.sendToApex(dto)).thenReturn(true);
+        when(processedCheckService.isEmailProcessed("e1")).thenReturn(false);
+        when(ticketService.getTicketIdByThreadId("t1")).thenReturn(22L);
+
+        assertTrue(client.sendToApex(dto).join());
+        assertFalse(client.isEmailProcessed("e1").join());
+        assertEquals(22L, client.getTicketIdByThreadId("t1").join());
+        assertEquals(0, client.getInFlight());
+    }
+
+    @Test
+    void maxInFlight_shouldNotExceedPooledConnections() {
+        try (ApexAsyncClient wide = new ApexAsyncClient(apexSenderService, processedCheckService, ticketService, 200, 20)) {
+            assertEquals(20, wide.getMaxInFlight());
+        }
+    }
+
+    @Test
+    void calls_shouldCompleteExceptionallyWhenApexCallThrows() {
+        when(processedCheckService.isReplyProcessed("r1")).thenThrow(new RuntimeException("APEX down"));
+
+        CompletionException e = assertThrows(CompletionException.class, () -> client.isReplyProcessed("r1").join());
+        assertEquals("APEX down", e.getCause().getMessage());
+        assertEquals(0, client.getInFlight());
+    }
+}
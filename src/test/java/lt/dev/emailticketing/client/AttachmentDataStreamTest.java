@@ -0,0 +1,46 @@
+package lt.dev.emailticketing.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttachmentDataStreamTest {
+
+    @Test
+    void decode_shouldStreamPaddedAndUnpaddedData() throws IOException {
+        Random random = new Random(19);
+        for (int size : new int[]{0, 1, 2, 3, 100_001}) {
+            byte[] content = new byte[size];
+            random.nextBytes(content);
+            for (Base64.Encoder encoder : new Base64.Encoder[]{Base64.getUrlEncoder(), Base64.getUrlEncoder().withoutPadding()}) {
+                String json = "{\n  \"size\": " + size + ",\n  \"data\" : \"" + encoder.encodeToString(content) + "\"\n}\n";
+                try (InputStream data = AttachmentDataStream.decode(stream(json))) {
+                    assertArrayEquals(content, data.readAllBytes(), "size " + size);
+                }
+            }
+        }
+    }
+
+    @Test
+    void decode_shouldFailWithoutDataField() {
+        assertThrows(IOException.class, () -> AttachmentDataStream.decode(stream("{\"size\": 0}")));
+    }
+
+    @Test
+    void decode_shouldFailOnTruncatedResponse() {
+        assertThrows(IOException.class, () -> AttachmentDataStream.decode(stream("{\"data\": \"QUJD"))
+                .transferTo(OutputStream.nullOutputStream()));
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.US_ASCII));
+    }
+}
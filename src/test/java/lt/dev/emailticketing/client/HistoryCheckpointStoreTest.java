@@ -0,0 +1,79 @@
+package lt.dev.emailticketing.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryCheckpointStoreTest {
+
+    private static final String CHECKPOINT_FILE = "build/test-tokens/history_id";
+
+    private HistoryCheckpointStore store;
+
+    @BeforeEach
+    void setUp() {
+        File file = new File(CHECKPOINT_FILE);
+        if (file.exists()) {
+            assertTrue(file.delete(), "Test setup failed: could not delete existing checkpoint");
+        }
+        store = new HistoryCheckpointStore(CHECKPOINT_FILE);
+    }
+
+    @Test
+    void load_shouldBeEmptyWhenNoCheckpointSaved() {
+        assertTrue(store.load().isEmpty());
+    }
+
+    @Test
+    void save_shouldRoundTripHistoryId() {
+        store.save(new BigInteger("1234567890123"), List.of());
+
+        assertEquals(new BigInteger("1234567890123"), store.load().orElseThrow());
+        assertEquals(new BigInteger("1234567890123"),
+                new HistoryCheckpointStore(CHECKPOINT_FILE).load().orElseThrow());
+    }
+
+    @Test
+    void save_shouldRoundTripPendingRetries() {
+        store.save(BigInteger.TWO, List.of("18f3a1b2c3d4e5f6", "18f3a1b2c3d4e5f7"));
+
+        HistoryCheckpointStore reopened = new HistoryCheckpointStore(CHECKPOINT_FILE);
+        assertEquals(BigInteger.TWO, reopened.load().orElseThrow());
+        assertEquals(List.of("18f3a1b2c3d4e5f6", "18f3a1b2c3d4e5f7"), reopened.loadPendingRetries());
+    }
+
+    @Test
+    void loadPendingRetries_shouldBeEmptyForCheckpointWithoutRetries() throws Exception {
+        Path path = Path.of(CHECKPOINT_FILE);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, "12345");
+
+        assertEquals(BigInteger.valueOf(12345), store.load().orElseThrow());
+        assertEquals(List.of(), store.loadPendingRetries());
+    }
+
+    @Test
+    void load_shouldIgnoreCorruptCheckpoint() throws Exception {
+        Path path = Path.of(CHECKPOINT_FILE);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, "not-a-number");
+
+        assertTrue(store.load().isEmpty());
+    }
+
+    @Test
+    void clear_shouldRemoveCheckpoint() {
+        store.save(BigInteger.TEN, List.of("a"));
+        store.clear();
+
+        assertTrue(store.load().isEmpty());
+        assertFalse(new File(CHECKPOINT_FILE).exists());
+    }
+}
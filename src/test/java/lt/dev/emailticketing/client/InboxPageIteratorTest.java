@@ -0,0 +1,57 @@
+package lt.dev.emailticketing.client;
+
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class InboxPageIteratorTest {
+
+    private GmailClientService gmailClientService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        gmailClientService = mock(GmailClientService.class);
+        when(gmailClientService.fetchInboxPage(null)).thenReturn(page("t2", "3", "2"));
+        when(gmailClientService.fetchInboxPage("t2")).thenReturn(page("t3", "1", "0"));
+        when(gmailClientService.fetchInboxPage("t3")).thenReturn(page(null, "-1"));
+    }
+
+    @Test
+    void shouldWalkAllPagesLazilyOldestFirstWithinPage() throws Exception {
+        InboxPageIterator pages = new InboxPageIterator(gmailClientService, id -> false);
+
+        assertEquals(List.of("2", "3"), ids(pages.next()));
+        verify(gmailClientService, never()).fetchInboxPage("t2");
+        assertEquals(List.of("0", "1"), ids(pages.next()));
+        assertEquals(List.of("-1"), ids(pages.next()));
+        assertFalse(pages.hasNext());
+    }
+
+    @Test
+    void shouldStopOnceAPageIsAlreadyProcessed() throws Exception {
+        Set<String> processed = Set.of("0", "1", "-1");
+        InboxPageIterator pages = new InboxPageIterator(gmailClientService, processed::contains);
+
+        assertEquals(List.of("2", "3"), ids(pages.next()));
+        assertFalse(pages.hasNext());
+        verify(gmailClientService, never()).fetchInboxPage("t3");
+    }
+
+    private static List<String> ids(List<Message> messages) {
+        return messages.stream().map(Message::getId).toList();
+    }
+
+    private static ListMessagesResponse page(String nextPageToken, String... ids) {
+        return new ListMessagesResponse()
+                .setMessages(Arrays.stream(ids).map(id -> new Message().setId(id)).toList())
+                .setNextPageToken(nextPageToken);
+    }
+}
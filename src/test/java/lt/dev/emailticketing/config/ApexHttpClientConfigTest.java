@@ -0,0 +1,29 @@
+package lt.dev.emailticketing.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApexHttpClientConfigTest {
+
+    @Test
+    void apexConnectionPoolMetrics_shouldPublishPoolGauges() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try (PoolingHttpClientConnectionManager manager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(7)
+                .build()) {
+            new ApexHttpClientConfig().apexConnectionPoolMetrics(manager).bindTo(registry);
+
+            assertEquals(7.0, registry.get("httpcomponents.httpclient.pool.total.max")
+                    .tag("httpclient", "apex").gauge().value());
+            assertEquals(0.0, registry.get("httpcomponents.httpclient.pool.total.connections")
+                    .tag("state", "leased").gauge().value());
+            assertEquals(0.0, registry.get("httpcomponents.httpclient.pool.total.connections")
+                    .tag("state", "available").gauge().value());
+            assertEquals(0.0, registry.get("httpcomponents.httpclient.pool.total.pending").gauge().value());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package lt.dev.emailticketing.controller;
+
+import lt.dev.emailticketing.jfr.FlightRecording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecordingEndpointTest {
+
+    @TempDir
+    Path dumpDir;
+
+    @Test
+    void flightRecording_shouldDeleteEachDumpOnceStreamed() throws Exception {
+        try (FlightRecording recording = new FlightRecording(true, "default", 5, 10, dumpDir.toString())) {
+            FlightRecordingEndpoint endpoint = new FlightRecordingEndpoint(recording);
+
+            Resource first = endpoint.flightRecording().getBody();
+            Resource second = endpoint.flightRecording().getBody();
+            assertEquals(2, dumpFileCount());
+
+            try (InputStream in = first.getInputStream()) {
+                assertTrue(in.readAllBytes().length > 0);
+            }
+            assertEquals(1, dumpFileCount());
+            try (InputStream in = second.getInputStream()) {
+                assertTrue(in.readAllBytes().length > 0);
+            }
+            assertEquals(0, dumpFileCount());
+        }
+    }
+
+    @Test
+    void flightRecording_shouldReturnNotFoundWhenRecordingIsDisabled() throws Exception {
+        try (FlightRecording recording = new FlightRecording(false, "default", 5, 10, dumpDir.toString())) {
+            WebEndpointResponse<Resource> response = new FlightRecordingEndpoint(recording).flightRecording();
+
+            assertEquals(WebEndpointResponse.STATUS_NOT_FOUND, response.getStatus());
+        }
+    }
+
+    private long dumpFileCount() throws Exception {
+        try (Stream<Path> files = Files.list(dumpDir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package lt.dev.emailticketing.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecordingTest {
+
+    @TempDir
+    Path dumpDir;
+
+    @Test
+    void dump_shouldContainPipelineEventsWithTheirFields() throws Exception {
+        try (FlightRecording recording = new FlightRecording(true, "default", 5, 10, dumpDir.toString())) {
+            new ParseEvent().finish("email-1", "thread-1", 2048, "success");
+            new ApexPostEvent().finishBulk(3, 4096, PipelineEvent.PARTIAL);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(recording.dump()).stream()
+                    .filter(e -> e.getEventType().getName().startsWith("lt.dev.emailticketing."))
+                    .toList();
+
+            RecordedEvent parse = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("lt.dev.emailticketing.Parse"))
+                    .findFirst().orElseThrow();
+            assertEquals("email-1", parse.getString("emailId"));
+            assertEquals("thread-1", parse.getString("threadId"));
+            assertEquals(1, parse.getInt("messages"));
+            assertEquals(2048, parse.getLong("bytes"));
+            assertEquals("success", parse.getString("outcome"));
+
+            RecordedEvent post = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("lt.dev.emailticketing.ApexPost"))
+                    .findFirst().orElseThrow();
+            assertNull(post.getString("emailId"));
+            assertEquals(3, post.getInt("messages"));
+            assertEquals("partial", post.getString("outcome"));
+        }
+    }
+
+    @Test
+    void dump_shouldLeaveOutEnvironmentAndWriteANewFileEachTime() throws Exception {
+        try (FlightRecording recording = new FlightRecording(true, "default", 5, 10, dumpDir.toString())) {
+            Path first = recording.dump();
+            Path second = recording.dump();
+
+            assertNotEquals(first, second);
+            assertTrue(Files.exists(first));
+            assertTrue(RecordingFile.readAllEvents(second).stream()
+                    .noneMatch(e -> e.getEventType().getName().equals("jdk.InitialEnvironmentVariable")));
+        }
+    }
+
+    @Test
+    void dump_shouldFailWhenRecordingIsDisabled() throws Exception {
+        try (FlightRecording recording = new FlightRecording(false, "default", 5, 10, dumpDir.toString())) {
+            assertFalse(recording.isRecording());
+            assertThrows(IllegalStateException.class, recording::dump);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package lt.dev.emailticketing.parser;
+
+import lt.dev.emailticketing.internal.SenderInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the From headers in {@code addresses/from-headers.tsv} through the parser, then throws
+ * mutated and generated headers at it.
+ */
+class AddressParserTest {
+
+    private static final String NASTY = "<>\"()\\,:;@=?_ \t\r\nabcQBé€";
+
+    private final AddressParser parser = new AddressParser();
+
+    @Test
+    void extractSenderInfo_shouldMatchCorpus() throws IOException {
+        EmailParserService service = new EmailParserService(100);
+        for (String[] row : corpus()) {
+            SenderInfo sender = service.extractSenderInfo(row[0]);
+            assertEquals(new SenderInfo(row[1], row[2]), sender, () -> "From: " + row[0]);
+        }
+    }
+
+    @Test
+    void parse_shouldNeverThrowOnMutatedHeaders() throws IOException {
+        List<String> seeds = corpus().stream().map(row -> row[0]).toList();
+        Random random = new Random(5322);
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder header = new StringBuilder(seeds.get(random.nextInt(seeds.size())));
+            for (int edits = 1 + random.nextInt(4); edits > 0; edits--) {
+                int at = random.nextInt(header.length() + 1);
+                char c = NASTY.charAt(random.nextInt(NASTY.length()));
+                switch (random.nextInt(3)) {
+                    case 0 -> header.insert(at, c);
+                    case 1 -> {
+                        if (at < header.length()) {
+                            header.deleteCharAt(at);
+                        }
+                    }
+                    default -> {
+                        if (at < header.length()) {
+                            header.setCharAt(at, c);
+                        }
+                    }
+                }
+            }
+            String input = header.toString();
+            SenderInfo sender = assertDoesNotThrow(() -> parser.parse(input), () -> "From: " + input);
+            if (sender != null) {
+                assertEquals(sender.name().strip(), sender.name(), () -> "From: " + input);
+                assertFalse(sender.email().chars().anyMatch(Character::isWhitespace), () -> "From: " + input);
+                assertFalse(sender.name().isEmpty() && sender.email().isEmpty(), () -> "From: " + input);
+            }
+        }
+    }
+
+    @Test
+    void parse_shouldRoundTripGeneratedMailboxes() {
+        String alphabet = "abcdefghijklmnopqrstuvwxyzABCXYZ0123456789 .,<>()\"\\:;@=?_-'ąčęėįšųūžÄÖÜßДЖЯ€";
+        Random random = new Random(2047);
+        for (int i = 0; i < 20_000; i++) {
+            String name = randomName(random, alphabet);
+            String email = "user" + random.nextInt(1000) + "@example" + random.nextInt(10) + ".com";
+            String header = switch (random.nextInt(3)) {
+                case 0 -> quoted(name) + " <" + email + ">";
+                case 1 -> encodedWords(name, random, 'B') + " <" + email + ">";
+                default -> encodedWords(name, random, 'Q') + " <" + email + ">";
+            };
+            assertEquals(new SenderInfo(name, email), parser.parse(header), () -> "From: " + header);
+        }
+    }
+
+    @Test
+    void decodeEncodedWords_shouldJoinBytesSplitAcrossWords() {
+        byte[] utf8 = "ė".getBytes(StandardCharsets.UTF_8);
+        String header = "=?UTF-8?B?" + Base64.getEncoder().encodeToString(new byte[]{utf8[0]}) + "?= "
+                + "=?UTF-8?B?" + Base64.getEncoder().encodeToString(new byte[]{utf8[1]}) + "?=";
+
+        assertEquals("ė", AddressParser.decodeEncodedWords(header));
+    }
+
+    @Test
+    void decodeEncodedWords_shouldKeepWhitespaceBeforeInvalidWord() {
+        assertEquals("a =?bogus?Q?b?=", AddressParser.decodeEncodedWords("=?UTF-8?Q?a?= =?bogus?Q?b?="));
+    }
+
+    @Test
+    void extractSenderInfo_shouldServeRepeatSendersFromCache() {
+        EmailParserService service = new EmailParserService(100);
+
+        SenderInfo first = service.extractSenderInfo("Ona <ona@example.lt>");
+
+        assertSame(first, service.extractSenderInfo("Ona <ona@example.lt>"));
+    }
+
+    // single spaces only, no leading or trailing ones: runs of whitespace are folded by the parser
+    private static String randomName(Random random, String alphabet) {
+        StringBuilder name = new StringBuilder();
+        for (int n = 1 + random.nextInt(20); n > 0; n--) {
+            char c = alphabet.charAt(random.nextInt(alphabet.length()));
+            if (c == ' ' && (name.isEmpty() || name.charAt(name.length() - 1) == ' ')) {
+                continue;
+            }
+            name.append(c);
+        }
+        String stripped = name.toString().strip();
+        return stripped.isEmpty() ? "x" : stripped;
+    }
+
+    private static String quoted(String name) {
+        return '"' + name.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    /**
+     * Encodes the name as one or more encoded-words, cutting the UTF-8 bytes at random points, also
+     * inside multi-byte characters.
+     */
+    private static String encodedWords(String name, Random random, char encoding) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        List<String> words = new ArrayList<>();
+        int start = 0;
+        while (start < bytes.length) {
+            int end = Math.min(bytes.length, start + 1 + random.nextInt(12));
+            byte[] chunk = Arrays.copyOfRange(bytes, start, end);
+            String text = encoding == 'B' ? Base64.getEncoder().encodeToString(chunk) : qEncode(chunk);
+            words.add("=?" + (random.nextBoolean() ? "UTF-8" : "utf-8") + "?" + encoding + "?" + text + "?=");
+            start = end;
+        }
+        return String.join(random.nextBoolean() ? " " : "\r\n ", words);
+    }
+
+    private static String qEncode(byte[] bytes) {
+        StringBuilder out = new StringBuilder();
+        for (byte b : bytes) {
+            int c = b & 0xff;
+            if (c == ' ') {
+                out.append('_');
+            } else if (c > 0x20 && c < 0x7f && "=?_\"()<>,;:\\".indexOf(c) < 0) {
+                out.append((char) c);
+            } else {
+                out.append('=').append(String.format("%02X", c));
+            }
+        }
+        return out.toString();
+    }
+
+    private static List<String[]> corpus() throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                AddressParserTest.class.getResourceAsStream("/addresses/from-headers.tsv"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] row = line.split("\t", -1);
+                assertEquals(3, row.length, () -> "Malformed corpus line: " + String.join("|", row));
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
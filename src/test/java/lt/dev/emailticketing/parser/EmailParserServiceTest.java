@@ -1,10 +1,15 @@
 package lt.dev.emailticketing.parser;
 
 import com.google.api.services.gmail.model.*;
+import lt.dev.emailticketing.internal.AttachmentInfo;
 import lt.dev.emailticketing.internal.SenderInfo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -15,7 +20,7 @@ class EmailParserServiceTest {
 
     @BeforeEach
     void setUp() {
-        emailParserService = new EmailParserService();
+        emailParserService = new EmailParserService(100);
     }
 
     @Test
@@ -70,4 +75,107 @@ class EmailParserServiceTest {
         String result = emailParserService.extractBody(message);
         assertEquals("This is a test part", result.trim());
     }
+
+    @Test
+    void extractBody_withNestedMultipart_shouldCollectPlainTextOnly() {
+        MessagePart alternative = multipart("multipart/alternative",
+                textPart("text/plain", "Nested plain text", StandardCharsets.UTF_8),
+                textPart("text/html", "<p>Nested html</p>", StandardCharsets.UTF_8));
+        MessagePart attachment = textPart("text/plain", "attached notes", StandardCharsets.UTF_8);
+        attachment.setFilename("notes.txt");
+        Message message = new Message();
+        message.setPayload(multipart("multipart/mixed", alternative, attachment));
+
+        assertEquals("Nested plain text", emailParserService.extractBody(message).trim());
+    }
+
+    @Test
+    void extractBody_shouldHonourDeclaredCharset() {
+        Charset latin1 = Charset.forName("ISO-8859-1");
+        Message message = new Message();
+        message.setPayload(multipart("multipart/alternative", textPart("text/plain", "Größe: café", latin1)));
+
+        assertEquals("Größe: café", emailParserService.extractBody(message).trim());
+    }
+
+    @Test
+    void extractBody_shouldCapDecodedSize() {
+        ReflectionTestUtils.setField(emailParserService, "maxBodyBytes", 10);
+        Message message = new Message();
+        message.setPayload(multipart("multipart/mixed",
+                textPart("text/plain", "0123456789abcdef", StandardCharsets.UTF_8),
+                textPart("text/plain", "second part", StandardCharsets.UTF_8)));
+
+        assertEquals("0123456789", emailParserService.extractBody(message).trim());
+    }
+
+    @Test
+    void extractBody_shouldSkipUndecodablePart() {
+        MessagePart broken = textPart("text/plain", "ignored", StandardCharsets.UTF_8);
+        broken.getBody().setData("##invalid");
+        Message message = new Message();
+        message.setPayload(multipart("multipart/mixed", broken, textPart("text/plain", "still here", StandardCharsets.UTF_8)));
+
+        assertEquals("still here", emailParserService.extractBody(message).trim());
+    }
+
+    @Test
+    void extractReplyBody_shouldStripQuotedHistory() {
+        Message message = new Message();
+        message.setPayload(textPart("text/plain", "Thanks!\n\nOn Mon, Support wrote:\n> Restart it.\n", StandardCharsets.UTF_8));
+
+        assertEquals("Thanks!", emailParserService.extractReplyBody(message));
+    }
+
+    @Test
+    void extractReplyBody_shouldKeepFullBodyWhenStrippingDisabled() {
+        ReflectionTestUtils.setField(emailParserService, "stripQuotedHistory", false);
+        Message message = new Message();
+        message.setPayload(textPart("text/plain", "Thanks!\n\nOn Mon, Support wrote:\n> Restart it.\n", StandardCharsets.UTF_8));
+
+        assertEquals("Thanks!\n\nOn Mon, Support wrote: > Restart it.", emailParserService.extractReplyBody(message));
+    }
+
+    @Test
+    void findAttachments_shouldListNamedPartsAtAnyDepth() {
+        MessagePart pdf = textPart("application/pdf", "ignored", StandardCharsets.UTF_8);
+        pdf.setPartId("1.1");
+        pdf.setFilename("invoice.pdf");
+        pdf.setBody(new MessagePartBody().setAttachmentId("att-1").setSize(2048));
+        MessagePart inline = textPart("text/plain", "hi", StandardCharsets.UTF_8);
+        inline.setPartId("2");
+        inline.setFilename("note.txt");
+        Message message = new Message();
+        message.setPayload(multipart("multipart/mixed",
+                multipart("multipart/mixed", textPart("text/plain", "body", StandardCharsets.UTF_8), pdf),
+                inline));
+
+        List<AttachmentInfo> attachments = emailParserService.findAttachments(message);
+
+        assertEquals(2, attachments.size());
+        assertEquals(new AttachmentInfo("1.1", "invoice.pdf", "application/pdf", 2048, "att-1", null), attachments.get(0));
+        assertEquals("note.txt", attachments.get(1).filename());
+        assertNull(attachments.get(1).attachmentId());
+        assertNotNull(attachments.get(1).inlineData());
+    }
+
+    private static MessagePart textPart(String mimeType, String text, Charset charset) {
+        MessagePartBody body = new MessagePartBody();
+        body.setData(Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(charset)));
+        MessagePartHeader contentType = new MessagePartHeader();
+        contentType.setName("Content-Type");
+        contentType.setValue(mimeType + "; charset=\"" + charset.name() + "\"");
+        MessagePart part = new MessagePart();
+        part.setMimeType(mimeType);
+        part.setHeaders(List.of(contentType));
+        part.setBody(body);
+        return part;
+    }
+
+    private static MessagePart multipart(String mimeType, MessagePart... parts) {
+        MessagePart part = new MessagePart();
+        part.setMimeType(mimeType);
+        part.setParts(List.of(parts));
+        return part;
+    }
 }
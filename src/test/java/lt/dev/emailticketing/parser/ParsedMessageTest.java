@@ -0,0 +1,83 @@
+package lt.dev.emailticketing.parser;
+
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ParsedMessageTest {
+
+    private EmailParserService parser;
+
+    @BeforeEach
+    void setUp() {
+        parser = mock(EmailParserService.class);
+    }
+
+    @Test
+    void header_shouldMatchNamesCaseInsensitively() {
+        ParsedMessage parsed = new ParsedMessage(message(
+                header("Message-Id", "<abc@example.com>"),
+                header("SUBJECT", "Printer")), parser);
+
+        assertEquals("<abc@example.com>", parsed.header("Message-ID"));
+        assertEquals("Printer", parsed.header("subject"));
+        assertNull(parsed.header("From"));
+    }
+
+    @Test
+    void header_shouldReturnFirstOccurrence() {
+        ParsedMessage parsed = new ParsedMessage(message(
+                header("Received", "by mx1"),
+                header("Received", "by mx2")), parser);
+
+        assertEquals("by mx1", parsed.header("Received"));
+    }
+
+    @Test
+    void isReply_shouldCheckReferencesAndInReplyTo() {
+        assertTrue(new ParsedMessage(message(header("In-Reply-To", "<a@b>")), parser).isReply());
+        assertTrue(new ParsedMessage(message(header("References", "<a@b> <c@d>")), parser).isReply());
+        assertFalse(new ParsedMessage(message(header("References", ""), header("Subject", "Re: hi")), parser).isReply());
+    }
+
+    @Test
+    void header_shouldTolerateMissingPayload() {
+        ParsedMessage parsed = new ParsedMessage(new Message().setId("m1"), parser);
+
+        assertNull(parsed.header("From"));
+        assertFalse(parsed.isReply());
+    }
+
+    @Test
+    void body_shouldBeDecodedLazilyAndOnce() {
+        Message message = message(header("From", "ana@example.com"));
+        when(parser.extractBody(message)).thenReturn("Hello");
+        ParsedMessage parsed = new ParsedMessage(message, parser);
+
+        parsed.isReply();
+        verifyNoInteractions(parser);
+
+        assertEquals("Hello", parsed.body());
+        assertEquals("Hello", parsed.body());
+        verify(parser, times(1)).extractBody(message);
+        verify(parser, never()).extractReplyBody(any());
+    }
+
+    private static Message message(MessagePartHeader... headers) {
+        return new Message()
+                .setId("m1")
+                .setThreadId("t1")
+                .setPayload(new MessagePart().setHeaders(List.of(headers)));
+    }
+
+    private static MessagePartHeader header(String name, String value) {
+        return new MessagePartHeader().setName(name).setValue(value);
+    }
+}
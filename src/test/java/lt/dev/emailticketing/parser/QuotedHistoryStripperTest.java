@@ -0,0 +1,81 @@
+package lt.dev.emailticketing.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuotedHistoryStripperTest {
+
+    private final QuotedHistoryStripper stripper = new QuotedHistoryStripper();
+
+    @Test
+    void strip_shouldRemoveGmailAttributionAndQuote() {
+        String body = "Thanks, that fixed it.\r\n\r\nOn Mon, 3 Mar 2025 at 10:12, Support <support@example.com> wrote:\r\n"
+                + "> Please restart the printer.\r\n>\r\n> > Original question\r\n";
+
+        assertEquals("Thanks, that fixed it.\n", stripper.strip(body));
+    }
+
+    @Test
+    void strip_shouldRemoveWrappedAttribution() {
+        String body = "Works now.\n\nOn Mon, 3 Mar 2025 at 10:12, Support Team <\nsupport@example.com> wrote:\n\n> Try again.\n";
+
+        assertEquals("Works now.\n", stripper.strip(body));
+    }
+
+    @Test
+    void strip_shouldRecogniseLithuanianAttribution() {
+        String body = "Ačiū!\n\n2025-03-03, pr, 10:12 Ana <ana@example.com> rašė:\n> Ar jau veikia?\n";
+
+        assertEquals("Ačiū!\n", stripper.strip(body));
+    }
+
+    @Test
+    void strip_shouldKeepAnswerBelowQuote() {
+        String body = "On Tue, Ana wrote:\n> Which floor?\n\nThe third floor.\n";
+
+        assertEquals("The third floor.\n", stripper.strip(body));
+    }
+
+    @Test
+    void strip_shouldKeepInterleavedQuotes() {
+        String body = "> Which floor?\nThird.\n> Which printer?\nThe color one.\n";
+
+        assertEquals(body, stripper.strip(body));
+    }
+
+    @Test
+    void strip_shouldRemoveTrailingQuoteBlockWithoutAttribution() {
+        String body = "See my answer.\n\n> earlier text\n> more earlier text\n\n";
+
+        assertEquals("See my answer.\n", stripper.strip(body));
+    }
+
+    @Test
+    void strip_shouldCutAtOutlookSeparator() {
+        String body = "Approved.\r\n\r\n-----Original Message-----\r\nFrom: Ana\r\nSent: Monday\r\n\r\nCan you approve?\r\n";
+
+        assertEquals("Approved.\n", stripper.strip(body));
+    }
+
+    @Test
+    void strip_shouldCutAtGmailQuoteDiv() {
+        String body = "<div dir=\"ltr\">Done.</div><br><div class=\"gmail_quote\"><div>On Mon wrote:</div><blockquote>old</blockquote></div>";
+
+        assertEquals("<div dir=\"ltr\">Done.</div><br>\n", stripper.strip(body));
+    }
+
+    @Test
+    void strip_shouldKeepBodyThatIsOnlyQuoted() {
+        String body = "On Mon, Ana wrote:\n> Only the quote\n";
+
+        assertEquals(body, stripper.strip(body));
+    }
+
+    @Test
+    void strip_shouldKeepProseEndingInWrote() {
+        String body = "This is what the customer wrote:\nthe printer is broken.\n";
+
+        assertEquals(body, stripper.strip(body));
+    }
+}
@@ -0,0 +1,100 @@
+package lt.dev.emailticketing.sender;
+
+import lt.dev.emailticketing.dto.ApexAttachmentChunkResponseDto;
+import lt.dev.emailticketing.internal.AttachmentInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ApexAttachmentSenderTest {
+
+    private static final AttachmentInfo ATTACHMENT =
+            new AttachmentInfo("1", "report +final.pdf", "application/pdf", 10, "att-1", null);
+
+    @TempDir
+    Path dir;
+
+    private RestTemplate restTemplate;
+    private ApexAttachmentSender sender;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        restTemplate = mock(RestTemplate.class);
+        sender = new ApexAttachmentSender(restTemplate);
+        ReflectionTestUtils.setField(sender, "apexAttachmentsEndpoint", "http://fake/attachments");
+        ReflectionTestUtils.setField(sender, "chunkBytes", 4);
+        ReflectionTestUtils.setField(sender, "apexApiKey", "fake-api-key");
+        file = Files.write(dir.resolve("spool.part"), "0123456789".getBytes());
+    }
+
+    @Test
+    void upload_shouldSendFileInChunks() throws Exception {
+        List<String> bodies = new ArrayList<>();
+        Iterator<ResponseEntity<ApexAttachmentChunkResponseDto>> responses =
+                List.of(response(4, false), response(8, false), response(10, true)).iterator();
+        when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ApexAttachmentChunkResponseDto.class)))
+                .thenAnswer(invocation -> {
+                    // the chunk buffer is reused, so copy what was sent now
+                    bodies.add(new String((byte[]) invocation.getArgument(2, HttpEntity.class).getBody()));
+                    return responses.next();
+                });
+
+        assertTrue(sender.upload("msg-1", ATTACHMENT, file));
+
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+        verify(restTemplate, times(3)).exchange(uris.capture(), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ApexAttachmentChunkResponseDto.class));
+        assertTrue(uris.getAllValues().get(0).toString().contains("filename=report%20%2Bfinal.pdf"));
+        assertTrue(uris.getAllValues().get(2).toString().contains("offset=8"));
+        assertEquals(List.of("0123", "4567", "89"), bodies);
+    }
+
+    @Test
+    void upload_shouldContinueFromWhatApexReports() throws Exception {
+        when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ApexAttachmentChunkResponseDto.class)))
+                .thenReturn(response(4, false), response(4, false), response(8, false), response(10, true));
+
+        assertTrue(sender.upload("msg-1", ATTACHMENT, file));
+
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+        verify(restTemplate, times(4)).exchange(uris.capture(), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ApexAttachmentChunkResponseDto.class));
+        assertTrue(uris.getAllValues().get(2).toString().contains("offset=4"));
+    }
+
+    @Test
+    void upload_shouldGiveUpWhenApexNeverProgresses() throws Exception {
+        when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ApexAttachmentChunkResponseDto.class)))
+                .thenReturn(response(0, false));
+
+        assertFalse(sender.upload("msg-1", ATTACHMENT, file));
+        verify(restTemplate, times(4)).exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+                eq(ApexAttachmentChunkResponseDto.class));
+    }
+
+    private static ResponseEntity<ApexAttachmentChunkResponseDto> response(long received, boolean complete) {
+        ApexAttachmentChunkResponseDto body = new ApexAttachmentChunkResponseDto();
+        body.setReceived(received);
+        body.setComplete(complete);
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+}
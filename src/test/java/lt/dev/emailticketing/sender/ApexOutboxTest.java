@@ -0,0 +1,176 @@
+package lt.dev.emailticketing.sender;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lt.dev.emailticketing.dto.ApexBatchItemResultDto;
+import lt.dev.emailticketing.dto.EmailRequestDto;
+import lt.dev.emailticketing.internal.AttachmentInfo;
+import lt.dev.emailticketing.service.AttachmentService;
+import lt.dev.emailticketing.util.IngestionLagTracker;
+import lt.dev.emailticketing.util.ProcessedIdFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ApexOutboxTest {
+
+    @TempDir
+    Path dir;
+
+    private ApexSenderService apexSenderService;
+    private AttachmentService attachmentService;
+    private ApexOutbox outbox;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        apexSenderService = mock(ApexSenderService.class);
+        attachmentService = mock(AttachmentService.class);
+        outbox = newOutbox(3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        outbox.close();
+    }
+
+    @Test
+    void drain_shouldDeadLetterRejectedEntryRightAway() throws Exception {
+        outbox.enqueue(ticket("e1"), List.of(attachment()));
+        when(apexSenderService.sendBatch(anyList()))
+                .thenReturn(Map.of("e1", ApexBatchItemResultDto.rejected("e1", "400 unknown thread")));
+
+        outbox.drain();
+
+        assertEquals(0, outbox.size());
+        assertEquals(0, outbox.pendingUploads());
+        verify(attachmentService, never()).uploadAsync(any(), any());
+        assertFalse(outbox.isPending("e1"));
+        String deadLetters = Files.readString(dir.resolve("dead-letter.jsonl"));
+        assertTrue(deadLetters.contains("\"emailId\":\"e1\""));
+        assertTrue(deadLetters.contains("400 unknown thread"));
+
+        assertTrue(deadLetters.contains("invoice.pdf"));
+
+        outbox.close();
+        outbox = newOutbox(3);
+        assertEquals(0, outbox.size());
+        assertEquals(0, outbox.pendingUploads());
+    }
+
+    @Test
+    void drain_shouldDeadLetterAfterMaxAttempts() throws Exception {
+        outbox.close();
+        outbox = newOutbox(2, 0);
+        outbox.enqueue(ticket("e1"));
+        when(apexSenderService.sendBatch(anyList()))
+                .thenReturn(Map.of("e1", ApexBatchItemResultDto.failed("e1", "No result from APEX")));
+
+        outbox.drain();
+        assertTrue(outbox.isPending("e1"));
+        outbox.drain();
+
+        assertFalse(outbox.isPending("e1"));
+        assertTrue(Files.readString(dir.resolve("dead-letter.jsonl")).contains("No result from APEX"));
+    }
+
+    @Test
+    void enqueue_shouldJournalConcurrentDuplicatesOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = IntStream.range(0, 8)
+                    .mapToObj(i -> executor.submit(() -> {
+                        start.await();
+                        return outbox.enqueue(ticket("e1"));
+                    }))
+                    .toList();
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, outbox.size());
+        outbox.close();
+        outbox = newOutbox(3);
+        assertEquals(1, outbox.size());
+    }
+
+    @Test
+    void uploadAttachments_shouldSurviveRestartUntilUploaded() throws Exception {
+        List<AttachmentInfo> attachments = List.of(attachment());
+        when(attachmentService.uploadAsync("e1", attachments))
+                .thenReturn(CompletableFuture.completedFuture(false), CompletableFuture.completedFuture(true));
+
+        outbox.uploadAttachments("e1", attachments);
+        assertEquals(1, outbox.pendingUploads());
+
+        outbox.close();
+        outbox = newOutbox(3);
+        assertEquals(1, outbox.pendingUploads());
+        outbox.drain();
+
+        assertEquals(0, outbox.pendingUploads());
+        verify(attachmentService, times(2)).uploadAsync("e1", attachments);
+        outbox.close();
+        outbox = newOutbox(3);
+        assertEquals(0, outbox.pendingUploads());
+    }
+
+    @Test
+    void enqueue_shouldHoldAttachmentsBackUntilPostIsDelivered() throws Exception {
+        List<AttachmentInfo> attachments = List.of(attachment());
+        when(attachmentService.uploadAsync("e1", attachments)).thenReturn(CompletableFuture.completedFuture(true));
+        when(apexSenderService.sendBatch(anyList()))
+                .thenReturn(Map.of("e1", ApexBatchItemResultDto.failed("e1", "No result from APEX")));
+        outbox.close();
+        outbox = newOutbox(3, 0);
+
+        outbox.enqueue(ticket("e1"), attachments);
+        outbox.drain();
+        verify(attachmentService, never()).uploadAsync(any(), any());
+
+        when(apexSenderService.sendBatch(anyList()))
+                .thenReturn(Map.of("e1", new ApexBatchItemResultDto("e1", ApexBatchItemResultDto.CREATED, 22L, null)));
+        outbox.drain();
+
+        verify(attachmentService).uploadAsync("e1", attachments);
+        assertEquals(0, outbox.size());
+        assertEquals(0, outbox.pendingUploads());
+    }
+
+    private ApexOutbox newOutbox(int maxAttempts) throws Exception {
+        return newOutbox(maxAttempts, 15000);
+    }
+
+    private ApexOutbox newOutbox(int maxAttempts, long initialBackoffMillis) throws Exception {
+        return new ApexOutbox(apexSenderService, attachmentService, mock(ProcessedIdFilter.class), mock(IngestionLagTracker.class),
+                new ObjectMapper(), true, dir.toString(), 4096, initialBackoffMillis, 900000, maxAttempts);
+    }
+
+    private static AttachmentInfo attachment() {
+        return new AttachmentInfo("1", "invoice.pdf", "application/pdf", 2048, "att-1", null);
+    }
+
+    private static EmailRequestDto ticket(String emailId) {
+        return new EmailRequestDto(emailId, "Sender", "sender@example.com", "Subject", "Body",
+                "2024-03-29T16:02:00Z", "<" + emailId + "@example.com>", "thread-" + emailId);
+    }
+}
@@ -1,12 +1,21 @@
 package lt.dev.emailticketing.sender;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lt.dev.emailticketing.dto.ApexBatchItemResultDto;
+import lt.dev.emailticketing.dto.ApexBatchResponseDto;
 import lt.dev.emailticketing.dto.EmailRequestDto;
+import lt.dev.emailticketing.dto.MessageReplyDto;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -22,9 +31,10 @@ class ApexSenderServiceTest {
         restTemplate = mock(RestTemplate.class);
         ObjectMapper objectMapper = new ObjectMapper();
 
-        apexSenderService = new ApexSenderService(restTemplate, objectMapper);
-        apexSenderService.setApexApiKey("fake-api-key");
+        apexSenderService = new ApexSenderService(restTemplate, objectMapper, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(apexSenderService, "apexApiKey", "fake-api-key");
         apexSenderService.setApexTicketsEndpoint("http://fake-endpoint.com");
+        apexSenderService.setApexMessagesEndpoint("http://fake-endpoint.com/messages");
     }
 
     @Test
@@ -35,17 +45,19 @@ class ApexSenderServiceTest {
                 "john@example.com",
                 "Subject",
                 "Body",
-                "2024-03-29T14:00:00Z"
+                "2024-03-29T14:00:00Z",
+                "<m1>",
+                "th1"
         );
 
         ResponseEntity<String> mockResponse = new ResponseEntity<>("OK", HttpStatus.OK);
-        when(restTemplate.postForEntity(anyString(), any(HttpEntity.class), eq(String.class)))
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
                 .thenReturn(mockResponse);
 
         boolean result = apexSenderService.sendToApex(dto);
 
         assertTrue(result);
-        verify(restTemplate, times(1)).postForEntity(anyString(), any(HttpEntity.class), eq(String.class));
+        verify(restTemplate, times(1)).exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class));
     }
 
     @Test
@@ -56,14 +68,98 @@ class ApexSenderServiceTest {
                 "john@example.com",
                 "Subject",
                 "Body",
-                "2024-03-29T14:00:00Z"
+                "2024-03-29T14:00:00Z",
+                "<m1>",
+                "th1"
         );
-        when(restTemplate.postForEntity(anyString(), any(HttpEntity.class), eq(String.class)))
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
                 .thenThrow(new RuntimeException("APEX down"));
 
         boolean result = apexSenderService.sendToApex(dto);
 
         assertFalse(result, "Expected false when APEX sending fails");
-        verify(restTemplate, times(1)).postForEntity(anyString(), any(HttpEntity.class), eq(String.class));
+        verify(restTemplate, times(1)).exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class));
+    }
+
+    @Test
+    void send_shouldTellPermanentRejectionsFromRetryableErrors() {
+        MessageReplyDto reply = new MessageReplyDto(
+                "r1", "john@example.com", "Re: Subject", "Body", "2024-03-29T15:00:00Z", "<m2>", "th1", "22");
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", null, null, null))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.CONFLICT, "Conflict", null, null, null));
+
+        assertTrue(apexSenderService.send(reply).isRejected());
+        ApexBatchItemResultDto throttled = apexSenderService.send(reply);
+        assertFalse(throttled.isRejected());
+        assertFalse(throttled.isDelivered());
+        assertTrue(apexSenderService.send(reply).isDelivered());
+    }
+
+    @Test
+    void sendBatch_shouldReturnPerItemResults() {
+        apexSenderService.setBatchEnabled(true);
+        apexSenderService.setMaxBatchItems(100);
+        apexSenderService.setApexBatchEndpoint("http://fake-endpoint.com/batch");
+        EmailRequestDto ticket = new EmailRequestDto(
+                "t1", "John", "john@example.com", "Subject", "Body", "2024-03-29T14:00:00Z", "<m1>", "th1");
+        MessageReplyDto reply = new MessageReplyDto(
+                "r1", "john@example.com", "Re: Subject", "Body", "2024-03-29T15:00:00Z", "<m2>", "th1", "22");
+
+        ApexBatchResponseDto response = new ApexBatchResponseDto();
+        response.setTickets(List.of(new ApexBatchItemResultDto("t1", ApexBatchItemResultDto.CREATED, 22L, null)));
+        response.setMessages(List.of(ApexBatchItemResultDto.failed("r1", "Invalid ticket_id")));
+        when(restTemplate.exchange(eq("http://fake-endpoint.com/batch"), eq(HttpMethod.POST),
+                any(HttpEntity.class), eq(ApexBatchResponseDto.class)))
+                .thenReturn(new ResponseEntity<>(response, HttpStatus.OK));
+
+        Map<String, ApexBatchItemResultDto> results = apexSenderService.sendBatch(List.of(ticket, reply));
+
+        assertTrue(results.get("t1").isDelivered());
+        assertFalse(results.get("r1").isDelivered());
+        assertEquals("Invalid ticket_id", results.get("r1").getError());
+    }
+
+    @Test
+    void sendBatch_shouldMarkEveryItemFailedWhenRequestFails() {
+        apexSenderService.setBatchEnabled(true);
+        apexSenderService.setMaxBatchItems(100);
+        apexSenderService.setApexBatchEndpoint("http://fake-endpoint.com/batch");
+        EmailRequestDto first = new EmailRequestDto(
+                "t1", "John", "john@example.com", "Subject", "Body", "2024-03-29T14:00:00Z", "<m1>", "th1");
+        EmailRequestDto second = new EmailRequestDto(
+                "t2", "Jane", "jane@example.com", "Subject", "Body", "2024-03-29T14:00:00Z", "<m3>", "th2");
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST),
+                any(HttpEntity.class), eq(ApexBatchResponseDto.class)))
+                .thenThrow(new RuntimeException("APEX down"));
+
+        Map<String, ApexBatchItemResultDto> results = apexSenderService.sendBatch(List.of(first, second));
+
+        assertEquals(2, results.size());
+        assertFalse(results.get("t1").isDelivered());
+        assertFalse(results.get("t2").isDelivered());
+    }
+
+    @Test
+    void sendBatch_shouldPostItemsOneByOneWhenBatchIsRefused() {
+        apexSenderService.setBatchEnabled(true);
+        apexSenderService.setMaxBatchItems(100);
+        apexSenderService.setApexBatchEndpoint("http://fake-endpoint.com/batch");
+        EmailRequestDto good = new EmailRequestDto(
+                "t1", "John", "john@example.com", "Subject", "Body", "2024-03-29T14:00:00Z", "<m1>", "th1");
+        EmailRequestDto bad = new EmailRequestDto(
+                "t2", "Jane", "jane@example.com", "Subject", "Body", "2024-03-29T14:00:00Z", "<m3>", "th2");
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST),
+                any(HttpEntity.class), eq(ApexBatchResponseDto.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.UNPROCESSABLE_ENTITY, "Unprocessable", null, null, null));
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+                .thenReturn(new ResponseEntity<>("OK", HttpStatus.CREATED))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.UNPROCESSABLE_ENTITY, "Unprocessable", null, null, null));
+
+        Map<String, ApexBatchItemResultDto> results = apexSenderService.sendBatch(List.of(good, bad));
+
+        assertTrue(results.get("t1").isDelivered());
+        assertTrue(results.get("t2").isRejected());
     }
 }
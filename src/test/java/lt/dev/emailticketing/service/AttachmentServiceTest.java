@@ -0,0 +1,96 @@
+package lt.dev.emailticketing.service;
+
+import lt.dev.emailticketing.client.GmailClientService;
+import lt.dev.emailticketing.internal.AttachmentInfo;
+import lt.dev.emailticketing.parser.EmailParserService;
+import lt.dev.emailticketing.sender.ApexAttachmentSender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AttachmentServiceTest {
+
+    @TempDir
+    Path spool;
+
+    private GmailClientService gmailClientService;
+    private ApexAttachmentSender apexAttachmentSender;
+    private AttachmentService service;
+
+    @BeforeEach
+    void setUp() {
+        gmailClientService = mock(GmailClientService.class);
+        apexAttachmentSender = mock(ApexAttachmentSender.class);
+        service = new AttachmentService(gmailClientService, new EmailParserService(100), apexAttachmentSender,
+                true, spool.toString(), 1024, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void ingest_shouldStreamDownloadToSpoolFileAndUpload() throws Exception {
+        AttachmentInfo attachment = new AttachmentInfo("2", "scan.pdf", "application/pdf", 5, "att-1", null);
+        when(gmailClientService.downloadAttachment(eq("msg-1"), eq("att-1"), any(OutputStream.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(2, OutputStream.class).write("%PDF-".getBytes());
+                    return 5L;
+                });
+        when(apexAttachmentSender.upload(eq("msg-1"), eq(attachment), any(Path.class)))
+                .thenAnswer(invocation -> {
+                    assertEquals("%PDF-", Files.readString(invocation.getArgument(2, Path.class)));
+                    return true;
+                });
+
+        assertTrue(service.ingest("msg-1", attachment));
+        assertEquals(0, spoolFileCount());
+    }
+
+    @Test
+    void ingest_shouldDecodeInlineData() throws Exception {
+        String inline = Base64.getUrlEncoder().encodeToString("hello".getBytes());
+        AttachmentInfo attachment = new AttachmentInfo("3", "note.txt", "text/plain", 5, null, inline);
+        when(apexAttachmentSender.upload(eq("msg-1"), eq(attachment), any(Path.class)))
+                .thenAnswer(invocation -> "hello".equals(Files.readString(invocation.getArgument(2, Path.class))));
+
+        assertTrue(service.ingest("msg-1", attachment));
+        verifyNoInteractions(gmailClientService);
+    }
+
+    @Test
+    void ingest_shouldSkipAttachmentsOverLimit() {
+        AttachmentInfo attachment = new AttachmentInfo("2", "video.mp4", "video/mp4", 4096, "att-1", null);
+
+        assertFalse(service.ingest("msg-1", attachment));
+        verifyNoInteractions(gmailClientService, apexAttachmentSender);
+    }
+
+    @Test
+    void ingest_shouldDeleteSpoolFileWhenUploadFails() throws Exception {
+        AttachmentInfo attachment = new AttachmentInfo("2", "scan.pdf", "application/pdf", 5, "att-1", null);
+        when(gmailClientService.downloadAttachment(anyString(), anyString(), any(OutputStream.class))).thenReturn(5L);
+        when(apexAttachmentSender.upload(anyString(), any(), any(Path.class))).thenThrow(new IllegalStateException("down"));
+
+        assertFalse(service.ingest("msg-1", attachment));
+        assertEquals(0, spoolFileCount());
+    }
+
+    private long spoolFileCount() throws Exception {
+        try (Stream<Path> files = Files.list(spool)) {
+            return files.count();
+        }
+    }
+}
@@ -3,16 +3,22 @@ package lt.dev.emailticketing.service;
 import com.google.api.services.gmail.model.Message;
 import com.google.api.services.gmail.model.MessagePart;
 import com.google.api.services.gmail.model.MessagePartHeader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lt.dev.emailticketing.client.ApexAsyncClient;
 import lt.dev.emailticketing.client.GmailClientService;
 import lt.dev.emailticketing.internal.SenderInfo;
 import lt.dev.emailticketing.parser.EmailParserService;
+import lt.dev.emailticketing.sender.ApexOutbox;
 import lt.dev.emailticketing.sender.ApexSenderService;
+import lt.dev.emailticketing.util.IngestionLagTracker;
+import lt.dev.emailticketing.util.ProcessedIdFilter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -21,15 +27,22 @@ class EmailProcessingServiceTest {
 
     private GmailClientService gmailClientService;
     private EmailParserService emailParserService;
-    private ApexSenderService apexSenderService;
+    private ApexAsyncClient apexAsyncClient;
+    private ApexOutbox apexOutbox;
     private EmailProcessingService emailProcessingService;
 
     @BeforeEach
     void setup() {
         gmailClientService = mock(GmailClientService.class);
         emailParserService = mock(EmailParserService.class);
-        apexSenderService = mock(ApexSenderService.class);
-        emailProcessingService = new EmailProcessingService(gmailClientService, emailParserService, apexSenderService);
+        apexAsyncClient = mock(ApexAsyncClient.class);
+        apexOutbox = mock(ApexOutbox.class);
+        // the filter has not been built yet, so every message is checked against APEX
+        ProcessedIdFilter processedIdFilter = new ProcessedIdFilter(true, 0.01);
+        emailProcessingService = new EmailProcessingService(gmailClientService, emailParserService,
+                mock(ApexSenderService.class), apexOutbox, mock(TicketService.class), processedIdFilter,
+                mock(ProcessedCheckService.class), apexAsyncClient, mock(AttachmentService.class),
+                new SimpleMeterRegistry(), mock(IngestionLagTracker.class));
     }
 
     @Test
@@ -58,7 +71,8 @@ class EmailProcessingServiceTest {
         when(emailParserService.extractSenderInfo("John <john@example.com>"))
                 .thenReturn(new SenderInfo("John", "john@example.com"));
         when(emailParserService.extractBody(gmailMessage)).thenReturn("Hello, I need help.");
-        when(apexSenderService.sendToApex(any())).thenReturn(true);
+        when(apexAsyncClient.isEmailProcessed(emailId)).thenReturn(CompletableFuture.completedFuture(false));
+        when(apexAsyncClient.sendToApex(any())).thenReturn(CompletableFuture.completedFuture(true));
 
         // when
         emailProcessingService.processEmail(emailId, processedIds);
@@ -68,7 +82,7 @@ class EmailProcessingServiceTest {
         verify(gmailClientService).fetchFullMessage(emailId);
         verify(emailParserService).extractSenderInfo(any());
         verify(emailParserService).extractBody(any());
-        verify(apexSenderService).sendToApex(any());
+        verify(apexAsyncClient).sendToApex(any());
     }
 
     @Test
@@ -97,7 +111,9 @@ class EmailProcessingServiceTest {
         when(emailParserService.extractSenderInfo("Alice <alice@example.com>"))
                 .thenReturn(new SenderInfo("Alice", "alice@example.com"));
         when(emailParserService.extractBody(gmailMessage)).thenReturn("I have a problem with my order.");
-        when(apexSenderService.sendToApex(any())).thenReturn(false); // simulate failure
+        when(apexAsyncClient.isEmailProcessed(emailId)).thenReturn(CompletableFuture.completedFuture(false));
+        when(apexAsyncClient.sendToApex(any())).thenReturn(CompletableFuture.completedFuture(false)); // simulate failure
+        when(apexOutbox.enqueue(any(), anyList())).thenReturn(false); // and a full disk
 
         // when
         emailProcessingService.processEmail(emailId, processedIds);
@@ -107,6 +123,7 @@ class EmailProcessingServiceTest {
         verify(gmailClientService).fetchFullMessage(emailId);
         verify(emailParserService).extractSenderInfo(any());
         verify(emailParserService).extractBody(any());
-        verify(apexSenderService).sendToApex(any());
+        verify(apexAsyncClient).sendToApex(any());
+        verify(apexOutbox).enqueue(any(), anyList());
     }
 }
@@ -1,9 +1,11 @@
 package lt.dev.emailticketing.service;
 
 import lt.dev.emailticketing.EmailticketingApplication;
+import lt.dev.emailticketing.client.GmailClientService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -13,6 +15,10 @@ class GmailServiceIntegrationTest {
     @Autowired
     private GmailService gmailService;
 
+    // startup would otherwise run the interactive Gmail OAuth flow
+    @MockitoBean
+    private GmailClientService gmailClientService;
+
     @Test
     void contextLoads() {
         assertNotNull(gmailService);
@@ -0,0 +1,146 @@
+package lt.dev.emailticketing.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lt.dev.emailticketing.client.GmailClientService;
+import lt.dev.emailticketing.dto.ProcessedEmailIdDto;
+import lt.dev.emailticketing.dto.ProcessedEmailsResponseDto;
+import lt.dev.emailticketing.dto.ProcessedRepliesResponseDto;
+import lt.dev.emailticketing.sender.ApexSenderService;
+import lt.dev.emailticketing.util.ProcessedIdFilter;
+import lt.dev.emailticketing.util.ProcessingExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class GmailServiceTest {
+
+    private static final String EMAILS_URL = "http://apex/processed_emails";
+    private static final String REPLIES_URL = "http://apex/processed_replies";
+
+    private RestTemplate restTemplate;
+    private ProcessedIdFilter processedIdFilter;
+    private GmailService gmailService;
+
+    @BeforeEach
+    void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        processedIdFilter = new ProcessedIdFilter(true, 0.01);
+        gmailService = new GmailService(mock(GmailClientService.class), mock(EmailProcessingService.class),
+                mock(ApexSenderService.class), mock(InboxSyncService.class), mock(ProcessingExecutor.class),
+                processedIdFilter, restTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(gmailService, "apexProcessedEmailsEndpoint", EMAILS_URL);
+        ReflectionTestUtils.setField(gmailService, "apexProcessedRepliesEndpoint", REPLIES_URL);
+        ReflectionTestUtils.setField(gmailService, "apexApiKey", "test");
+    }
+
+    @Test
+    void refresh_shouldMergeDeltaSinceWatermark() {
+        respond(EMAILS_URL, emails("2024-03-01T10:00:00.000000", 1, "00000000000000a1"));
+        respond(EMAILS_URL + "?since=2024-03-01T10:00:00.000000",
+                emails("2024-03-01T10:05:00.000000", 2, "00000000000000a2"));
+        // processed_replies is empty, so it has no watermark yet and is asked for in full
+        respond(REPLIES_URL, replies(null, 0), replies("2024-03-01T10:04:00.000000", 1, "00000000000000b1"));
+
+        gmailService.refreshProcessedEmailIds();
+        gmailService.refreshProcessedEmailIds();
+
+        assertTrue(processedIds().containsAll(Set.of("00000000000000a1", "00000000000000a2", "00000000000000b1")));
+        assertTrue(processedIdFilter.mightContainEmail("00000000000000a2"));
+        assertTrue(processedIdFilter.mightContainReply("00000000000000b1"));
+        verifyFetched(EMAILS_URL, 1);
+        verifyFetched(EMAILS_URL + "?since=2024-03-01T10:00:00.000000", 1);
+    }
+
+    @Test
+    void refresh_shouldFallBackToFullReloadOnCountMismatch() {
+        respond(EMAILS_URL,
+                emails("2024-03-01T10:00:00.000000", 1, "00000000000000a1"),
+                emails("2024-03-01T10:00:00.000000", 2, "00000000000000a1", "00000000000000a0"));
+        // a row committed with an older creation_date than the watermark
+        respond(EMAILS_URL + "?since=2024-03-01T10:00:00.000000", emails(null, 2));
+        respond(REPLIES_URL, replies(null, 0));
+
+        gmailService.refreshProcessedEmailIds();
+        gmailService.refreshProcessedEmailIds();
+
+        assertTrue(processedIds().contains("00000000000000a0"));
+        verifyFetched(EMAILS_URL, 2);
+    }
+
+    @Test
+    void refresh_shouldReloadInFullOnceFiltersAreOverCapacity() {
+        String[] delta = IntStream.range(0, 3_000).mapToObj(i -> String.format("%016x", 0x1000L + i))
+                .toArray(String[]::new);
+        respond(EMAILS_URL, emails("2024-03-01T10:00:00.000000", 1, "00000000000000a1"),
+                emails("2024-03-01T10:05:00.000000", 3_001, concat("00000000000000a1", delta)));
+        respond(EMAILS_URL + "?since=2024-03-01T10:00:00.000000",
+                emails("2024-03-01T10:05:00.000000", 3_001, delta));
+        respond(REPLIES_URL, replies(null, 0));
+
+        gmailService.refreshProcessedEmailIds();
+        gmailService.refreshProcessedEmailIds();
+
+        verifyFetched(EMAILS_URL, 2);
+        assertFalse(processedIdFilter.needsRebuild());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> processedIds() {
+        return (Set<String>) ReflectionTestUtils.getField(gmailService, "processedEmailIds");
+    }
+
+    private void respond(String url, Object body, Object... more) {
+        ResponseEntity<?>[] next = new ResponseEntity<?>[more.length];
+        for (int i = 0; i < more.length; i++) {
+            next[i] = ResponseEntity.ok(more[i]);
+        }
+        doReturn(ResponseEntity.ok(body), (Object[]) next).when(restTemplate)
+                .exchange(eq(url), eq(HttpMethod.GET), any(HttpEntity.class), any(ParameterizedTypeReference.class));
+    }
+
+    private void verifyFetched(String url, int times) {
+        verify(restTemplate, times(times))
+                .exchange(eq(url), eq(HttpMethod.GET), any(HttpEntity.class), any(ParameterizedTypeReference.class));
+    }
+
+    private static ProcessedEmailsResponseDto emails(String watermark, long totalCount, String... ids) {
+        ProcessedEmailsResponseDto response = new ProcessedEmailsResponseDto();
+        response.setItems(Arrays.stream(ids).map(id -> {
+            ProcessedEmailIdDto dto = new ProcessedEmailIdDto();
+            dto.setEmailId(id);
+            return dto;
+        }).toList());
+        response.setWatermark(watermark);
+        response.setTotalCount(totalCount);
+        return response;
+    }
+
+    private static ProcessedRepliesResponseDto replies(String watermark, long totalCount, String... ids) {
+        ProcessedRepliesResponseDto response = new ProcessedRepliesResponseDto();
+        response.setItems(List.of(ids));
+        response.setWatermark(watermark);
+        response.setTotalCount(totalCount);
+        return response;
+    }
+
+    private static String[] concat(String first, String[] rest) {
+        String[] all = new String[rest.length + 1];
+        all[0] = first;
+        System.arraycopy(rest, 0, all, 1, rest.length);
+        return all;
+    }
+}
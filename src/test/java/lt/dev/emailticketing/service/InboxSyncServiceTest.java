@@ -0,0 +1,217 @@
+package lt.dev.emailticketing.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.Message;
+import lt.dev.emailticketing.client.GmailClientService;
+import lt.dev.emailticketing.client.HistoryCheckpointStore;
+import lt.dev.emailticketing.internal.HistoryDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InboxSyncServiceTest {
+
+    private GmailClientService gmailClientService;
+    private HistoryCheckpointStore checkpointStore;
+    private InboxSyncService inboxSyncService;
+
+    @BeforeEach
+    void setUp() {
+        gmailClientService = mock(GmailClientService.class);
+        checkpointStore = mock(HistoryCheckpointStore.class);
+        inboxSyncService = new InboxSyncService(gmailClientService, checkpointStore);
+        ReflectionTestUtils.setField(inboxSyncService, "syncMode", "history");
+        ReflectionTestUtils.setField(inboxSyncService, "maxPendingRetries", 100);
+        ReflectionTestUtils.setField(inboxSyncService, "maxMessagesPerScan", 500);
+    }
+
+    @Test
+    void fetchNewMessages_withoutCheckpoint_shouldListFullInboxAndSaveHistoryId() throws Exception {
+        when(checkpointStore.load()).thenReturn(Optional.empty());
+        when(gmailClientService.fetchCurrentHistoryId()).thenReturn(BigInteger.valueOf(500));
+        when(gmailClientService.fetchInboxPage(null)).thenReturn(page(null, "b", "a"));
+
+        List<String> ids = drain(inboxSyncService.fetchNewMessages(id -> false));
+        inboxSyncService.acknowledge(ids, Set.of("a", "b"));
+
+        assertEquals(List.of("a", "b"), ids);
+        verify(checkpointStore).save(BigInteger.valueOf(500), List.of());
+        verify(gmailClientService, never()).fetchHistorySince(any(), anyInt());
+    }
+
+    @Test
+    void fetchNewMessages_withCheckpoint_shouldOnlyReturnHistoryDelta() throws Exception {
+        when(checkpointStore.load()).thenReturn(Optional.of(BigInteger.valueOf(500)));
+        when(gmailClientService.fetchHistorySince(BigInteger.valueOf(500), 500))
+                .thenReturn(new HistoryDelta(List.of(message("c")), BigInteger.valueOf(510)));
+
+        List<String> ids = drain(inboxSyncService.fetchNewMessages(id -> false));
+        inboxSyncService.acknowledge(ids, Set.of("c"));
+
+        assertEquals(List.of("c"), ids);
+        verify(gmailClientService, never()).fetchInboxPage(any());
+        verify(checkpointStore).save(BigInteger.valueOf(510), List.of());
+    }
+
+    @Test
+    void fetchNewMessages_withExpiredCheckpoint_shouldFallBackToFullListing() throws Exception {
+        when(checkpointStore.load()).thenReturn(Optional.of(BigInteger.ONE));
+        when(gmailClientService.fetchHistorySince(BigInteger.ONE, 500)).thenThrow(
+                new GoogleJsonResponseException(new HttpResponseException.Builder(404, "Not Found", new HttpHeaders()), null));
+        when(gmailClientService.fetchCurrentHistoryId()).thenReturn(BigInteger.valueOf(900));
+        when(gmailClientService.fetchInboxPage(null)).thenReturn(page(null, "x"));
+
+        List<String> ids = drain(inboxSyncService.fetchNewMessages(id -> false));
+
+        assertEquals(List.of("x"), ids);
+        verify(checkpointStore).clear();
+    }
+
+    @Test
+    void fetchNewMessages_shouldRetryMessagesThatWereNotProcessed() throws Exception {
+        when(checkpointStore.load()).thenReturn(Optional.of(BigInteger.valueOf(500)));
+        when(gmailClientService.fetchHistorySince(any(), anyInt()))
+                .thenReturn(new HistoryDelta(List.of(message("failed")), BigInteger.valueOf(510)))
+                .thenReturn(new HistoryDelta(List.of(message("new")), BigInteger.valueOf(520)));
+
+        inboxSyncService.acknowledge(drain(inboxSyncService.fetchNewMessages(id -> false)), Set.of());
+        List<String> secondScan = drain(inboxSyncService.fetchNewMessages(id -> false));
+
+        assertEquals(List.of("failed", "new"), secondScan);
+        verify(checkpointStore).save(BigInteger.valueOf(510), List.of("failed"));
+    }
+
+    @Test
+    void fetchNewMessages_shouldRetryMessagesSavedWithCheckpointBeforeRestart() throws Exception {
+        when(checkpointStore.loadPendingRetries()).thenReturn(List.of("failed"));
+        when(checkpointStore.load()).thenReturn(Optional.of(BigInteger.valueOf(510)));
+        when(gmailClientService.fetchHistorySince(any(), anyInt()))
+                .thenReturn(new HistoryDelta(List.of(message("new")), BigInteger.valueOf(520)));
+        InboxSyncService restarted = new InboxSyncService(gmailClientService, checkpointStore);
+        ReflectionTestUtils.setField(restarted, "syncMode", "history");
+        ReflectionTestUtils.setField(restarted, "maxPendingRetries", 100);
+        ReflectionTestUtils.setField(restarted, "maxMessagesPerScan", 500);
+
+        assertEquals(List.of("failed", "new"), drain(restarted.fetchNewMessages(id -> false)));
+    }
+
+    @Test
+    void acknowledge_shouldKeepCheckpointWhenRetriesOverflow() throws Exception {
+        ReflectionTestUtils.setField(inboxSyncService, "maxPendingRetries", 1);
+        when(checkpointStore.load()).thenReturn(Optional.of(BigInteger.valueOf(500)));
+        when(gmailClientService.fetchHistorySince(any(), anyInt()))
+                .thenReturn(new HistoryDelta(List.of(message("a"), message("b")), BigInteger.valueOf(510)));
+
+        inboxSyncService.acknowledge(drain(inboxSyncService.fetchNewMessages(id -> false)), Set.of());
+
+        verify(checkpointStore).save(BigInteger.valueOf(500), List.of("a"));
+        verify(checkpointStore, never()).save(eq(BigInteger.valueOf(510)), any());
+    }
+
+    @Test
+    void fetchNewMessages_shouldListInboxWhenQueryCannotBeAppliedToHistory() throws Exception {
+        ReflectionTestUtils.setField(inboxSyncService, "gmailQuery", "in:inbox -category:promotions");
+        when(gmailClientService.fetchInboxPage(null)).thenReturn(page(null, "x"));
+
+        assertEquals(List.of("x"), drain(inboxSyncService.fetchNewMessages(id -> false)));
+        verify(gmailClientService, never()).fetchHistorySince(any(), anyInt());
+    }
+
+    @Test
+    void fetchNewMessages_shouldWorkOffListedBacklogOldestFirst() throws Exception {
+        ReflectionTestUtils.setField(inboxSyncService, "maxMessagesPerScan", 2);
+        when(checkpointStore.load()).thenReturn(Optional.empty(), Optional.of(BigInteger.valueOf(500)));
+        when(gmailClientService.fetchCurrentHistoryId()).thenReturn(BigInteger.valueOf(500));
+        when(gmailClientService.fetchInboxPage(null)).thenReturn(page("p2", "d", "c"));
+        when(gmailClientService.fetchInboxPage("p2")).thenReturn(page(null, "b", "a"));
+        when(gmailClientService.fetchHistorySince(BigInteger.valueOf(500), 2))
+                .thenReturn(new HistoryDelta(List.of(), BigInteger.valueOf(500)));
+
+        List<String> firstScan = drain(inboxSyncService.fetchNewMessages(id -> false));
+        inboxSyncService.acknowledge(firstScan, Set.copyOf(firstScan));
+        List<String> secondScan = drain(inboxSyncService.fetchNewMessages(id -> false));
+        inboxSyncService.acknowledge(secondScan, Set.copyOf(secondScan));
+
+        assertEquals(List.of("a", "b"), firstScan);
+        assertEquals(List.of("c", "d"), secondScan);
+        verify(gmailClientService, times(1)).fetchInboxPage(null);
+        verify(gmailClientService, times(1)).fetchInboxPage("p2");
+        verify(checkpointStore, times(1)).save(any(), any());
+        verify(checkpointStore).save(BigInteger.valueOf(500), List.of());
+    }
+
+    @Test
+    void fetchNewMessages_afterRestartPartwayThroughBacklog_shouldListTheRestAgain() throws Exception {
+        ReflectionTestUtils.setField(inboxSyncService, "maxMessagesPerScan", 2);
+        when(checkpointStore.load()).thenReturn(Optional.empty());
+        when(gmailClientService.fetchCurrentHistoryId()).thenReturn(BigInteger.valueOf(500));
+        when(gmailClientService.fetchInboxPage(null)).thenReturn(page("p2", "d", "c"));
+        when(gmailClientService.fetchInboxPage("p2")).thenReturn(page(null, "b", "a"));
+
+        List<String> firstScan = drain(inboxSyncService.fetchNewMessages(id -> false));
+        inboxSyncService.acknowledge(firstScan, Set.copyOf(firstScan));
+        verify(checkpointStore, never()).save(any(), any());
+
+        InboxSyncService restarted = new InboxSyncService(gmailClientService, checkpointStore);
+        ReflectionTestUtils.setField(restarted, "syncMode", "history");
+        ReflectionTestUtils.setField(restarted, "maxPendingRetries", 100);
+        ReflectionTestUtils.setField(restarted, "maxMessagesPerScan", 2);
+        Set<String> processed = Set.copyOf(firstScan);
+        List<String> afterRestart = drain(restarted.fetchNewMessages(processed::contains));
+        restarted.acknowledge(afterRestart, Set.of("c", "d"));
+
+        assertEquals(List.of("a", "b"), firstScan);
+        assertEquals(List.of("c", "d"), afterRestart);
+        verify(checkpointStore).save(BigInteger.valueOf(500), List.of());
+    }
+
+    @Test
+    void fetchNewMessages_inFullMode_shouldPickUpNewMailWhileWorkingOffBacklog() throws Exception {
+        ReflectionTestUtils.setField(inboxSyncService, "syncMode", "full");
+        ReflectionTestUtils.setField(inboxSyncService, "maxMessagesPerScan", 2);
+        when(gmailClientService.fetchInboxPage(null)).thenReturn(page(null, "c", "b", "a"), page(null, "d", "c"));
+
+        assertEquals(List.of("a", "b"), drain(inboxSyncService.fetchNewMessages(id -> false)));
+        assertEquals(List.of("c", "d"), drain(inboxSyncService.fetchNewMessages(id -> false)));
+        verify(gmailClientService, times(2)).fetchInboxPage(null);
+    }
+
+    @Test
+    void fetchNewMessages_inFullMode_shouldStopListingAtQueuedMessages() throws Exception {
+        ReflectionTestUtils.setField(inboxSyncService, "syncMode", "full");
+        ReflectionTestUtils.setField(inboxSyncService, "maxMessagesPerScan", 1);
+        when(gmailClientService.fetchInboxPage(null)).thenReturn(page("p2", "d", "c"), page("q2", "e", "d"));
+        when(gmailClientService.fetchInboxPage("p2")).thenReturn(page(null, "b", "a"));
+        when(gmailClientService.fetchInboxPage("q2")).thenReturn(page("q3", "c", "b"));
+
+        assertEquals(List.of("a"), drain(inboxSyncService.fetchNewMessages(id -> false)));
+        assertEquals(List.of("b", "e"), drain(inboxSyncService.fetchNewMessages("a"::equals)));
+        verify(gmailClientService, never()).fetchInboxPage("q3");
+    }
+
+    private static List<String> drain(Iterator<List<Message>> pages) {
+        List<String> ids = new ArrayList<>();
+        pages.forEachRemaining(page -> page.forEach(m -> ids.add(m.getId())));
+        return ids;
+    }
+
+    private static ListMessagesResponse page(String nextPageToken, String... ids) {
+        return new ListMessagesResponse()
+                .setMessages(Arrays.stream(ids).map(InboxSyncServiceTest::message).toList())
+                .setNextPageToken(nextPageToken);
+    }
+
+    private static Message message(String id) {
+        return new Message().setId(id);
+    }
+}
@@ -0,0 +1,83 @@
+package lt.dev.emailticketing.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lt.dev.emailticketing.dto.ProcessedIdsResponseDto;
+import lt.dev.emailticketing.internal.ProcessedIds;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ProcessedCheckServiceTest {
+
+    private RestTemplate restTemplate;
+    private ProcessedCheckService service;
+
+    @BeforeEach
+    void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        service = new ProcessedCheckService(restTemplate, new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "apexApiKey", "fake-api-key");
+        ReflectionTestUtils.setField(service, "processedEmailsEndpoint", "http://fake/processed_emails");
+        ReflectionTestUtils.setField(service, "processedIdsEndpoint", "http://fake/processed_ids");
+        ReflectionTestUtils.setField(service, "maxIdsPerRequest", 2);
+    }
+
+    @Test
+    void findProcessed_shouldMergeChunkedLookups() throws Exception {
+        ProcessedIdsResponseDto first = new ProcessedIdsResponseDto();
+        first.setProcessedEmails(List.of("a"));
+        first.setProcessedReplies(List.of());
+        ProcessedIdsResponseDto second = new ProcessedIdsResponseDto();
+        second.setProcessedEmails(List.of());
+        second.setProcessedReplies(List.of("c"));
+        when(restTemplate.exchange(eq("http://fake/processed_ids"), eq(HttpMethod.POST),
+                any(HttpEntity.class), eq(ProcessedIdsResponseDto.class)))
+                .thenReturn(new ResponseEntity<>(first, HttpStatus.OK))
+                .thenReturn(new ResponseEntity<>(second, HttpStatus.OK));
+
+        ProcessedIds processed = service.findProcessed(List.of("a", "b", "c"));
+
+        assertEquals(Set.of("a"), processed.emails());
+        assertEquals(Set.of("c"), processed.replies());
+        verify(restTemplate, times(2)).exchange(anyString(), eq(HttpMethod.POST),
+                any(HttpEntity.class), eq(ProcessedIdsResponseDto.class));
+    }
+
+    @Test
+    void findProcessed_shouldThrowWhenLookupFails() {
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST),
+                any(HttpEntity.class), eq(ProcessedIdsResponseDto.class)))
+                .thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+
+        assertThrows(HttpClientErrorException.class, () -> service.findProcessed(List.of("a")));
+    }
+
+    @Test
+    void isEmailProcessed_shouldUseConfiguredEndpoint() {
+        when(restTemplate.exchange(eq("http://fake/processed_emails/abc"), eq(HttpMethod.GET),
+                any(HttpEntity.class), eq(String.class)))
+                .thenReturn(new ResponseEntity<>("{\"status\":\"processed\"}", HttpStatus.OK));
+
+        assertTrue(service.isEmailProcessed("abc"));
+    }
+
+    @Test
+    void isEmailProcessed_shouldThrowInsteadOfReportingProcessedWhenLookupFails() {
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)))
+                .thenThrow(new ResourceAccessException("Timeout waiting for connection from pool"));
+
+        assertThrows(IllegalStateException.class, () -> service.isEmailProcessed("abc"));
+    }
+}
@@ -0,0 +1,179 @@
+package lt.dev.emailticketing.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lt.dev.emailticketing.dto.TicketByThreadDto;
+import lt.dev.emailticketing.dto.TicketThreadsRequestDto;
+import lt.dev.emailticketing.dto.TicketThreadsResponseDto;
+import lt.dev.emailticketing.util.StageTimer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TicketServiceTest {
+
+    private RestTemplate restTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private TicketService service;
+
+    @BeforeEach
+    void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new TicketService(restTemplate, meterRegistry, 100, 60, 120, 45);
+        ReflectionTestUtils.setField(service, "apexTicketsEndpoint", "http://fake/tickets");
+        ReflectionTestUtils.setField(service, "apexTicketThreadsEndpoint", "http://fake/ticket_threads");
+        ReflectionTestUtils.setField(service, "maxThreadIdsPerRequest", 500);
+        ReflectionTestUtils.setField(service, "preloadOpenTickets", true);
+        ReflectionTestUtils.setField(service, "apexApiKey", "fake-api-key");
+    }
+
+    @Test
+    void getTicketIdByThreadId_shouldServeRepeatLookupsFromCache() {
+        TicketByThreadDto ticket = new TicketByThreadDto();
+        ticket.setTicketId(42L);
+        stubLookup().thenReturn(new ResponseEntity<>(ticket, HttpStatus.OK));
+
+        assertEquals(42L, service.getTicketIdByThreadId("thread-1"));
+        assertEquals(42L, service.getTicketIdByThreadId("thread-1"));
+
+        verifyLookups(1);
+        assertEquals(1, service.getCacheStats().hitCount());
+        assertEquals(1, service.getCacheStats().missCount());
+    }
+
+    @Test
+    void getTicketIdByThreadId_shouldTimeHitsAndMissesSeparately() {
+        TicketByThreadDto ticket = new TicketByThreadDto();
+        ticket.setTicketId(42L);
+        stubLookup().thenReturn(new ResponseEntity<>(ticket, HttpStatus.OK));
+
+        service.getTicketIdByThreadId("thread-1");
+        service.getTicketIdByThreadId("thread-1");
+        service.getTicketIdByThreadId("thread-1");
+
+        assertEquals(1, meterRegistry.get(StageTimer.TICKET_LOOKUP).tag("cache", "miss").timer().count());
+        assertEquals(2, meterRegistry.get(StageTimer.TICKET_LOOKUP).tag("cache", "hit").timer().count());
+        assertEquals(1, meterRegistry.get("cache.size").tag("cache", "ticket_threads").gauge().value());
+    }
+
+    @Test
+    void getTicketIdByThreadId_shouldCacheMissingTicket() {
+        stubLookup().thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+
+        assertNull(service.getTicketIdByThreadId("thread-1"));
+        assertNull(service.getTicketIdByThreadId("thread-1"));
+
+        verifyLookups(1);
+    }
+
+    @Test
+    void invalidate_shouldForceFreshLookup() {
+        TicketByThreadDto ticket = new TicketByThreadDto();
+        ticket.setTicketId(7L);
+        stubLookup()
+                .thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND))
+                .thenReturn(new ResponseEntity<>(ticket, HttpStatus.OK));
+
+        assertNull(service.getTicketIdByThreadId("thread-1"));
+        service.invalidate("thread-1");
+
+        assertEquals(7L, service.getTicketIdByThreadId("thread-1"));
+        verifyLookups(2);
+    }
+
+    @Test
+    void getTicketIdByThreadId_shouldNotCacheFailures() {
+        TicketByThreadDto ticket = new TicketByThreadDto();
+        ticket.setTicketId(3L);
+        stubLookup()
+                .thenThrow(new HttpClientErrorException(HttpStatus.UNAUTHORIZED))
+                .thenReturn(new ResponseEntity<>(ticket, HttpStatus.OK));
+
+        assertThrows(HttpClientErrorException.class, () -> service.getTicketIdByThreadId("thread-1"));
+        assertEquals(3L, service.getTicketIdByThreadId("thread-1"));
+        assertEquals(1, service.getCacheSize());
+    }
+
+    @Test
+    void resolveTicketIds_shouldLookUpUncachedThreadsInOneRequest() {
+        when(restTemplate.exchange(eq("http://fake/ticket_threads"), eq(HttpMethod.POST),
+                any(HttpEntity.class), eq(TicketThreadsResponseDto.class)))
+                .thenReturn(new ResponseEntity<>(threads(mapping("t1", 1L), mapping("t2", 2L)), HttpStatus.OK));
+
+        Map<String, Long> resolved = service.resolveTicketIds(List.of("t1", "t2", "t3", "t1"));
+
+        assertEquals(Map.of("t1", 1L, "t2", 2L), resolved);
+        verify(restTemplate, times(1)).exchange(anyString(), eq(HttpMethod.POST),
+                argThat((HttpEntity<?> entity) -> ((TicketThreadsRequestDto) entity.getBody()).getEmailThreadIds().size() == 3),
+                eq(TicketThreadsResponseDto.class));
+
+        // every thread, including the one without a ticket, is now answered from the cache
+        assertEquals(Map.of("t1", 1L, "t2", 2L), service.resolveTicketIds(List.of("t1", "t2", "t3")));
+        assertNull(service.getTicketIdByThreadId("t3"));
+        verifyNoMoreInteractions(restTemplate);
+    }
+
+    @Test
+    void preloadOpenTickets_shouldPageThroughOpenTickets() {
+        TicketThreadsResponseDto first = threads(mapping("t1", 1L), mapping("t2", 5L));
+        first.setHasMore(true);
+        when(restTemplate.exchange(eq("http://fake/ticket_threads?after_ticket_id=0&limit=500"), eq(HttpMethod.GET),
+                any(HttpEntity.class), eq(TicketThreadsResponseDto.class)))
+                .thenReturn(new ResponseEntity<>(first, HttpStatus.OK));
+        when(restTemplate.exchange(eq("http://fake/ticket_threads?after_ticket_id=5&limit=500"), eq(HttpMethod.GET),
+                any(HttpEntity.class), eq(TicketThreadsResponseDto.class)))
+                .thenReturn(new ResponseEntity<>(threads(mapping("t3", 9L)), HttpStatus.OK));
+
+        service.preloadOpenTickets();
+
+        assertEquals(3, service.getCacheSize());
+        assertEquals(9L, service.getTicketIdByThreadId("t3"));
+        verify(restTemplate, never()).exchange(anyString(), any(HttpMethod.class),
+                any(HttpEntity.class), any(ParameterizedTypeReference.class));
+    }
+
+    @Test
+    void preloadOpenTickets_shouldNotFailStartup() {
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(TicketThreadsResponseDto.class)))
+                .thenThrow(new HttpClientErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        assertDoesNotThrow(() -> service.preloadOpenTickets());
+        assertEquals(0, service.getCacheSize());
+    }
+
+    private static TicketThreadsResponseDto threads(TicketByThreadDto... tickets) {
+        TicketThreadsResponseDto response = new TicketThreadsResponseDto();
+        response.setTickets(List.of(tickets));
+        return response;
+    }
+
+    private static TicketByThreadDto mapping(String threadId, Long ticketId) {
+        TicketByThreadDto ticket = new TicketByThreadDto();
+        ticket.setEmailThreadId(threadId);
+        ticket.setTicketId(ticketId);
+        return ticket;
+    }
+
+    @SuppressWarnings("unchecked")
+    private org.mockito.stubbing.OngoingStubbing<ResponseEntity<TicketByThreadDto>> stubLookup() {
+        return when(restTemplate.exchange(eq("http://fake/tickets?email_thread_id=thread-1"), eq(HttpMethod.GET),
+                any(HttpEntity.class), any(ParameterizedTypeReference.class)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void verifyLookups(int times) {
+        verify(restTemplate, times(times)).exchange(anyString(), eq(HttpMethod.GET),
+                any(HttpEntity.class), any(ParameterizedTypeReference.class));
+    }
+}
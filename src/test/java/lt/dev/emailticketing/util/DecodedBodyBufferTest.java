@@ -0,0 +1,68 @@
+package lt.dev.emailticketing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecodedBodyBufferTest {
+
+    @Test
+    void appendBase64_shouldDecodeAcrossChunkBoundaries() {
+        Random random = new Random(42);
+        for (int size : new int[]{0, 1, 2, 3, 6143, 6144, 6145, 50_000}) {
+            byte[] original = new byte[size];
+            random.nextBytes(original);
+            String encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(original);
+
+            DecodedBodyBuffer buffer = new DecodedBodyBuffer(16, Integer.MAX_VALUE);
+            assertEquals(size, buffer.appendBase64(encoded));
+            byte[] decoded = buffer.toString(0, StandardCharsets.ISO_8859_1).getBytes(StandardCharsets.ISO_8859_1);
+            assertTrue(Arrays.equals(original, decoded), "size " + size);
+        }
+    }
+
+    @Test
+    void appendBase64_shouldAcceptStandardAlphabetAndPadding() {
+        DecodedBodyBuffer buffer = new DecodedBodyBuffer(16, 1024);
+        buffer.appendBase64("Pz8/Pw==");
+        assertEquals("????", buffer.toString(0, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void appendBase64_shouldStopAtLimit() {
+        DecodedBodyBuffer buffer = new DecodedBodyBuffer(4, 5);
+        assertEquals(5, buffer.appendBase64(encode("Hello World")));
+        assertTrue(buffer.isTruncated());
+        assertEquals(0, buffer.appendBase64(encode("more")));
+        assertEquals("Hello", buffer.toString(0, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void buffer_shouldBeReusableAcrossParts() {
+        DecodedBodyBuffer buffer = new DecodedBodyBuffer(4, 1024);
+        buffer.appendBase64(encode("first "));
+        int second = buffer.length();
+        buffer.appendBase64(encode("second"));
+        assertEquals("second", buffer.toString(second, StandardCharsets.UTF_8));
+
+        buffer.truncate(second);
+        assertEquals("first ", buffer.toString(0, StandardCharsets.UTF_8));
+        buffer.reset();
+        assertEquals(0, buffer.length());
+    }
+
+    @Test
+    void appendBase64_shouldRejectInvalidData() {
+        DecodedBodyBuffer buffer = new DecodedBodyBuffer(4, 1024);
+        assertThrows(IllegalArgumentException.class, () -> buffer.appendBase64("##invalid"));
+    }
+
+    private static String encode(String text) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,71 @@
+package lt.dev.emailticketing.util;
+
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lt.dev.emailticketing.internal.IngestionLagReport;
+import lt.dev.emailticketing.internal.IngestionLagReport.SlowEmail;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionLagTrackerTest {
+
+    private MockClock clock;
+    private SimpleMeterRegistry meterRegistry;
+    private IngestionLagTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MockClock();
+        meterRegistry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+        tracker = new IngestionLagTracker(meterRegistry, 300, 60, 2);
+    }
+
+    @Test
+    void recordDelivered_shouldMeasureLagFromGmailDateAndCountBreaches() {
+        tracker.recordDelivered("a", receivedSecondsAgo(10));
+        tracker.recordDelivered("b", receivedSecondsAgo(20));
+        tracker.recordDelivered("c", receivedSecondsAgo(400));
+
+        IngestionLagReport report = tracker.report();
+
+        assertEquals(3, report.delivered());
+        assertEquals(1, report.breaches());
+        assertEquals(1, meterRegistry.get(IngestionLagTracker.SLO_BREACHES).counter().count());
+        assertEquals(400, report.maxSeconds(), 0.001);
+        assertEquals(20, report.p50Seconds(), 1);
+        assertEquals(400, report.p99Seconds(), 10);
+        assertEquals(300, report.sloSeconds());
+    }
+
+    @Test
+    void closeWindow_shouldKeepOnlyTheSlowestMessagesOfTheWindow() {
+        tracker.recordDelivered("fast", receivedSecondsAgo(5));
+        tracker.recordDelivered("slowest", receivedSecondsAgo(90));
+        tracker.recordDelivered("slow", receivedSecondsAgo(30));
+
+        assertEquals(List.of(), tracker.report().slowest());
+        tracker.closeWindow();
+        assertEquals(List.of(new SlowEmail("slowest", 90), new SlowEmail("slow", 30)), tracker.report().slowest());
+
+        tracker.closeWindow();
+        assertEquals(List.of(), tracker.report().slowest());
+    }
+
+    @Test
+    void recordDelivered_shouldSkipMessagesWithoutReadableDate() {
+        tracker.recordDelivered("a", null);
+        tracker.recordDelivered("b", "yesterday");
+
+        assertEquals(0, tracker.report().delivered());
+    }
+
+    private String receivedSecondsAgo(long seconds) {
+        return Instant.ofEpochMilli(clock.wallTime()).minusSeconds(seconds).toString();
+    }
+}
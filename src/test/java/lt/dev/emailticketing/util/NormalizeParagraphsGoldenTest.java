@@ -0,0 +1,112 @@
+package lt.dev.emailticketing.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pins the output of {@link GmailUtils#normalizeParagraphs} to that of the original
+ * {@code split("\r?\n")} implementation, kept below as {@link #splitBased}.
+ */
+class NormalizeParagraphsGoldenTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"crlf-reply", "wrapped-newsletter", "forwarded-thread", "blank-lead"})
+    void normalizeParagraphs_shouldMatchGoldenFile(String name) throws IOException {
+        String input = resource(name + ".txt");
+        String expected = resource(name + ".expected");
+
+        assertEquals(expected, GmailUtils.normalizeParagraphs(input));
+        assertEquals(expected, GmailUtils.normalizeParagraphs(CharBuffer.wrap(input)));
+        assertEquals(expected, GmailUtils.normalizeParagraphs(new StringBuilder(input)));
+    }
+
+    // '|' stands for \n and '~' for \r, so line endings stay readable
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+            "'';'||'",
+            "'|';''",
+            "'||';''",
+            "'~|';''",
+            "'a';'a'",
+            "'a|';'a'",
+            "'a~|~|';'a'",
+            "'a|~';'a||'",
+            "'~';'||'",
+            "'a~b';'a~b'",
+            "' a | b ';'a b'",
+            "'|a';'||a'",
+            "'||a||b||';'||||a||b'",
+            "'a| |b';'a||b'",
+            "'a||||b';'a||||||b'",
+            "' ';'||'"
+    })
+    void normalizeParagraphs_shouldHandleLineEndingEdgeCases(String input, String expected) {
+        assertEquals(decode(expected), GmailUtils.normalizeParagraphs(decode(input)));
+    }
+
+    @Test
+    void normalizeParagraphs_shouldMatchSplitBasedImplementation() {
+        String alphabet = "ab \t\r\n\u0001.";
+        Random random = new Random(17);
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int n = random.nextInt(16); n > 0; n--) {
+                input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String text = input.toString();
+            assertEquals(splitBased(text), GmailUtils.normalizeParagraphs(text), () -> "input: " + text.replace("\r", "\\r").replace("\n", "\\n"));
+        }
+    }
+
+    @Test
+    void appendNormalizedParagraphs_shouldAppendToExistingContent() {
+        StringBuilder out = new StringBuilder("> ");
+        GmailUtils.appendNormalizedParagraphs("one\ntwo", out);
+        assertEquals("> one two", out.toString());
+    }
+
+    private static String splitBased(String text) {
+        String[] lines = text.split("\r?\n");
+
+        StringBuilder normalized = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+
+            if (line.isEmpty()) {
+                normalized.append("\n\n");
+                continue;
+            }
+
+            normalized.append(line);
+
+            if (i + 1 < lines.length) {
+                String nextLine = lines[i + 1].trim();
+                if (!nextLine.isEmpty()) {
+                    normalized.append(" ");
+                }
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static String decode(String escaped) {
+        return escaped.replace('|', '\n').replace('~', '\r');
+    }
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = NormalizeParagraphsGoldenTest.class.getResourceAsStream("/paragraphs/" + name)) {
+            assertNotNull(in, "missing test resource " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package lt.dev.emailticketing.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pending_shouldSurviveReopen() throws Exception {
+        try (OutboxJournal journal = new OutboxJournal(dir, 4096)) {
+            journal.append((byte) 1, bytes("first"));
+            journal.append((byte) 2, bytes("second"));
+        }
+
+        try (OutboxJournal reopened = new OutboxJournal(dir, 4096)) {
+            List<OutboxJournal.Entry> pending = reopened.pending();
+            assertEquals(2, pending.size());
+            assertEquals(1, pending.get(0).kind());
+            assertEquals("first", new String(pending.get(0).payload(), StandardCharsets.UTF_8));
+            assertEquals(2, pending.get(1).kind());
+            assertEquals("second", new String(pending.get(1).payload(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void acknowledge_shouldNotBeReplayed() throws Exception {
+        try (OutboxJournal journal = new OutboxJournal(dir, 4096)) {
+            long first = journal.append((byte) 1, bytes("first"));
+            journal.append((byte) 1, bytes("second"));
+            journal.acknowledge(first);
+            assertEquals(1, journal.size());
+        }
+
+        try (OutboxJournal reopened = new OutboxJournal(dir, 4096)) {
+            assertEquals(List.of("second"), payloads(reopened));
+        }
+    }
+
+    @Test
+    void append_shouldContinueSequenceAfterReopen() throws Exception {
+        long last;
+        try (OutboxJournal journal = new OutboxJournal(dir, 4096)) {
+            journal.append((byte) 1, bytes("a"));
+            last = journal.append((byte) 1, bytes("b"));
+        }
+        try (OutboxJournal reopened = new OutboxJournal(dir, 4096)) {
+            assertTrue(reopened.append((byte) 1, bytes("c")) > last);
+        }
+    }
+
+    @Test
+    void drainedSegments_shouldBeDeleted() throws Exception {
+        try (OutboxJournal journal = new OutboxJournal(dir, 64)) {
+            long first = journal.append((byte) 1, bytes("x".repeat(40)));
+            long second = journal.append((byte) 1, bytes("y".repeat(40)));
+            assertEquals(2, segmentCount());
+
+            journal.acknowledge(first);
+            assertEquals(1, segmentCount());
+            journal.acknowledge(second);
+            // the active segment stays until the next roll or reopen
+            assertEquals(1, segmentCount());
+        }
+        try (OutboxJournal reopened = new OutboxJournal(dir, 64)) {
+            assertTrue(reopened.pending().isEmpty());
+            assertEquals(0, segmentCount());
+        }
+    }
+
+    @Test
+    void append_shouldFitRecordsLargerThanSegment() throws Exception {
+        String large = "z".repeat(1000);
+        try (OutboxJournal journal = new OutboxJournal(dir, 64)) {
+            journal.append((byte) 1, bytes(large));
+        }
+        try (OutboxJournal reopened = new OutboxJournal(dir, 64)) {
+            assertEquals(List.of(large), payloads(reopened));
+        }
+    }
+
+    @Test
+    void replay_shouldStopAtCorruptRecord() throws Exception {
+        try (OutboxJournal journal = new OutboxJournal(dir, 4096)) {
+            journal.append((byte) 1, bytes("good"));
+            journal.append((byte) 1, bytes("torn"));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] content = Files.readAllBytes(segment);
+        // flip a payload byte of the second record: 18 byte header + 4 byte payload per record
+        content[22 + 18] ^= 0x7f;
+        Files.write(segment, content);
+
+        try (OutboxJournal reopened = new OutboxJournal(dir, 4096)) {
+            assertEquals(List.of("good"), payloads(reopened));
+        }
+    }
+
+    @Test
+    void append_shouldRejectEmptyPayload() throws Exception {
+        try (OutboxJournal journal = new OutboxJournal(dir, 4096)) {
+            assertThrows(IllegalArgumentException.class, () -> journal.append((byte) 1, new byte[0]));
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static List<String> payloads(OutboxJournal journal) {
+        return journal.pending().stream()
+                .map(e -> new String(e.payload(), StandardCharsets.UTF_8))
+                .toList();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,103 @@
+package lt.dev.emailticketing.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessedIdFilterTest {
+
+    @Test
+    void beforeFirstRebuild_shouldAnswerMaybe() {
+        ProcessedIdFilter filter = new ProcessedIdFilter(true, 0.01);
+
+        assertFalse(filter.isReady());
+        assertTrue(filter.mightContainEmail("19611f43bf2d1d93"));
+        assertTrue(filter.mightContainReply("19611f43bf2d1d93"));
+    }
+
+    @Test
+    void afterRebuild_shouldNeverMissKnownIds() {
+        ProcessedIdFilter filter = new ProcessedIdFilter(true, 0.01);
+        List<String> emailIds = ids(0, 5_000);
+        List<String> replyIds = ids(5_000, 6_000);
+
+        filter.beginRefresh();
+        filter.rebuild(emailIds, replyIds);
+
+        assertTrue(filter.isReady());
+        emailIds.forEach(id -> assertTrue(filter.mightContainEmail(id)));
+        replyIds.forEach(id -> assertTrue(filter.mightContainReply(id)));
+        assertTrue(filter.getMemoryBytes() > 0);
+    }
+
+    @Test
+    void afterRebuild_shouldRejectMostUnknownIds() {
+        ProcessedIdFilter filter = new ProcessedIdFilter(true, 0.01);
+        filter.rebuild(ids(0, 5_000), List.of());
+
+        long falsePositives = ids(100_000, 110_000).stream().filter(filter::mightContainEmail).count();
+
+        assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+    }
+
+    @Test
+    void recordDuringRefresh_shouldSurviveRebuild() {
+        ProcessedIdFilter filter = new ProcessedIdFilter(true, 0.01);
+        filter.rebuild(List.of(), List.of());
+
+        filter.beginRefresh();
+        filter.recordEmail("00000000000000aa");
+        filter.recordReply("00000000000000bb");
+        filter.rebuild(List.of(), List.of());
+
+        assertTrue(filter.mightContainEmail("00000000000000aa"));
+        assertTrue(filter.mightContainReply("00000000000000bb"));
+    }
+
+    @Test
+    void needsRebuild_shouldTurnTrueOnceAddedIdsOutgrowTheFilters() {
+        ProcessedIdFilter filter = new ProcessedIdFilter(true, 0.01);
+        filter.rebuild(ids(0, 100), List.of());
+
+        filter.add(ids(100, 900), List.of());
+        assertFalse(filter.needsRebuild());
+
+        filter.add(ids(900, 3_000), List.of());
+        assertTrue(filter.needsRebuild());
+
+        filter.beginRefresh();
+        filter.rebuild(ids(0, 3_000), List.of());
+        assertFalse(filter.needsRebuild());
+    }
+
+    @Test
+    void gauges_shouldFollowRebuilds() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProcessedIdFilter filter = new ProcessedIdFilter(true, 0.01);
+        filter.bindTo(registry);
+
+        assertEquals(1.0, registry.get(ProcessedIdFilter.FALSE_POSITIVE_RATE).gauge().value());
+        assertEquals(0.0, registry.get(ProcessedIdFilter.MEMORY).gauge().value());
+
+        filter.rebuild(ids(0, 5_000), List.of());
+
+        assertTrue(registry.get(ProcessedIdFilter.FALSE_POSITIVE_RATE).gauge().value() < 0.01);
+        assertEquals(filter.getMemoryBytes(), registry.get(ProcessedIdFilter.MEMORY).gauge().value());
+    }
+
+    @Test
+    void disabled_shouldAlwaysAnswerMaybe() {
+        ProcessedIdFilter filter = new ProcessedIdFilter(false, 0.01);
+        filter.rebuild(List.of(), List.of());
+
+        assertTrue(filter.mightContainEmail("00000000000000aa"));
+    }
+
+    private static List<String> ids(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> String.format("%016x", 0x19611f43bf2d0000L + i)).toList();
+    }
+}
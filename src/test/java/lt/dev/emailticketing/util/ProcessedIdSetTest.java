@@ -0,0 +1,83 @@
+package lt.dev.emailticketing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessedIdSetTest {
+
+    @Test
+    void shouldContainGmailAndNonGmailIds() {
+        ProcessedIdSet ids = new ProcessedIdSet(List.of("19611f43bf2d1d93", "0000000000000000", "2F1A7C0E9B8D4E6F2F1A7C0E9B8D4E6F"));
+
+        assertTrue(ids.contains("19611f43bf2d1d93"));
+        assertTrue(ids.contains("0000000000000000"));
+        assertTrue(ids.contains("2F1A7C0E9B8D4E6F2F1A7C0E9B8D4E6F"));
+        assertFalse(ids.contains("19611f43bf2d1d94"));
+        assertFalse(ids.contains("19611F43BF2D1D93"), "Upper-case IDs are not Gmail IDs and must not alias");
+        assertEquals(3, ids.size());
+    }
+
+    @Test
+    void add_shouldReportWhetherIdWasNew() {
+        ProcessedIdSet ids = new ProcessedIdSet(List.of("19611f43bf2d1d93"));
+
+        assertFalse(ids.add("19611f43bf2d1d93"));
+        assertTrue(ids.add("195be0b38ae4bd49"));
+        assertFalse(ids.add("195be0b38ae4bd49"));
+        assertTrue(ids.contains("195be0b38ae4bd49"));
+    }
+
+    @Test
+    void replaceWith_shouldKeepIdsAddedSinceLastRefresh() {
+        ProcessedIdSet ids = new ProcessedIdSet(List.of("00000000000000aa"));
+        ids.add("00000000000000bb");
+
+        ids.replaceWith(List.of("00000000000000cc"));
+
+        assertFalse(ids.contains("00000000000000aa"));
+        assertTrue(ids.contains("00000000000000bb"));
+        assertTrue(ids.contains("00000000000000cc"));
+        assertEquals(2, ids.size());
+    }
+
+    @Test
+    void merge_shouldKeepExistingSnapshot() {
+        ProcessedIdSet ids = new ProcessedIdSet(List.of("00000000000000aa", "reply-guid"));
+
+        ids.merge(List.of("00000000000000cc"));
+
+        assertEquals(Set.of("00000000000000aa", "reply-guid", "00000000000000cc"), new HashSet<>(ids));
+    }
+
+    @Test
+    void shouldHandleLargeSnapshotsAndConcurrentAdds() throws Exception {
+        List<String> loaded = IntStream.range(0, 100_000)
+                .mapToObj(i -> String.format("%016x", 0x19611f43bf2d0000L + i * 7L))
+                .toList();
+        ProcessedIdSet ids = new ProcessedIdSet();
+
+        try (var executor = Executors.newFixedThreadPool(4)) {
+            for (int t = 0; t < 4; t++) {
+                int offset = t;
+                executor.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        ids.add(String.format("%016x", 0x7000000000000000L + i * 4L + offset));
+                    }
+                });
+            }
+            ids.replaceWith(loaded);
+        }
+
+        for (String id : loaded) {
+            assertTrue(ids.contains(id), id);
+        }
+        assertEquals(104_000, ids.size());
+    }
+}
@@ -0,0 +1,111 @@
+package lt.dev.emailticketing.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessingExecutorTest {
+
+    @Test
+    void taskGroup_shouldWaitForAllTasksOnClose() {
+        AtomicInteger counter = new AtomicInteger(0);
+
+        try (ProcessingExecutor executor = new ProcessingExecutor("virtual", 10, 2)) {
+            try (TaskGroup tasks = executor.newTaskGroup()) {
+                for (int i = 0; i < 20; i++) {
+                    tasks.submit(() -> {
+                        try {
+                            Thread.sleep(50);
+                            counter.incrementAndGet();
+                        } catch (InterruptedException ignored) {}
+                    });
+                }
+            }
+
+            assertEquals(20, counter.get());
+        }
+    }
+
+    @Test
+    void submit_shouldNotRunMoreTasksThanMaxConcurrency() {
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger maxRunning = new AtomicInteger(0);
+
+        try (ProcessingExecutor executor = new ProcessingExecutor("virtual", 3, 2);
+             TaskGroup tasks = executor.newTaskGroup()) {
+            for (int i = 0; i < 30; i++) {
+                tasks.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException ignored) {}
+                    running.decrementAndGet();
+                });
+            }
+        }
+
+        assertTrue(maxRunning.get() <= 3, "Ran " + maxRunning.get() + " tasks at once");
+    }
+
+    @Test
+    void cancel_shouldInterruptRunningTaskAndFreeItsSlot() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        try (ProcessingExecutor executor = new ProcessingExecutor("virtual", 1, 2)) {
+            CompletableFuture<Void> stuck = executor.submit(() -> {
+                started.countDown();
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            stuck.cancel(true);
+
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+            assertEquals("done", executor.submit(() -> "done").get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void gauges_shouldCountActiveAndWaitingTasks() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        try (ProcessingExecutor executor = new ProcessingExecutor("virtual", 1, 2)) {
+            executor.bindTo(registry);
+            executor.submit(() -> {
+                started.countDown();
+                release.await();
+                return null;
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> waiting = executor.submit(() -> "done");
+            while (executor.getWaitingTasks() == 0) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(1, registry.get("emailticketing.executor.active").gauge().value());
+            assertEquals(1, registry.get("emailticketing.executor.queued").gauge().value());
+            release.countDown();
+            assertEquals("done", waiting.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void submit_shouldReturnTaskResult() throws Exception {
+        try (ProcessingExecutor executor = new ProcessingExecutor("fixed", 10, 2)) {
+            assertEquals("done", executor.submit(() -> "done").get());
+        }
+    }
+}